@@ -11,9 +11,24 @@ import '../styles/components/rag.css';
 type UploadSummary = {
   fileName: string;
   chunksStored: number;
-  embeddingDims: number;
+  embeddingDims?: number;
+  chunksReused?: number;
+  unchanged?: boolean;
 };
 
+type IngestionJob = {
+  jobId: string;
+  fileName: string;
+  status: 'QUEUED' | 'RUNNING' | 'COMPLETED' | 'FAILED';
+  chunksTotal: number;
+  chunksEmbedded: number;
+  chunksStored: number;
+  error?: string;
+  result?: UploadSummary;
+};
+
+const JOB_POLL_INTERVAL_MS = 1500;
+
 type UploadState = 'idle' | 'uploading' | 'success' | 'error';
 
 const RagUpload: React.FC = () => {
@@ -31,6 +46,9 @@ const RagUpload: React.FC = () => {
   const [chatAnswer, setChatAnswer] = useState('');
   const [chatLoading, setChatLoading] = useState(false);
   const [chatError, setChatError] = useState('');
+  // Proyecto opcional: etiqueta las cargas y limita las búsquedas a sus documentos.
+  const [proyectoId, setProyectoId] = useState('');
+  const scopeParams = proyectoId.trim() ? { proyectoId: proyectoId.trim() } : {};
 
   const handleFile = (file: File) => {
     setSelectedFile(file);
@@ -47,6 +65,22 @@ const RagUpload: React.FC = () => {
     }
   };
 
+  // La carga se procesa en segundo plano; se consulta el avance hasta que termine.
+  const waitForJob = async (jobId: string): Promise<IngestionJob> => {
+    for (;;) {
+      const { data } = await axios.get<IngestionJob>(`/rag/jobs/${jobId}`);
+      if (data.status === 'COMPLETED' || data.status === 'FAILED') {
+        return data;
+      }
+      if (data.chunksTotal > 0) {
+        setUploadMessage(
+          `Procesando ${data.fileName}: ${data.chunksEmbedded}/${data.chunksTotal} fragmentos con embeddings, ${data.chunksStored} guardados...`
+        );
+      }
+      await new Promise((resolve) => setTimeout(resolve, JOB_POLL_INTERVAL_MS));
+    }
+  };
+
   const handleUpload = async () => {
     if (!selectedFile) return;
     setUploadState('uploading');
@@ -54,13 +88,23 @@ const RagUpload: React.FC = () => {
     try {
       const formData = new FormData();
       formData.append('file', selectedFile);
-      const response = await axios.post<UploadSummary>('/rag/upload', formData, {
+      const response = await axios.post<IngestionJob>('/rag/upload', formData, {
         headers: { 'Content-Type': 'multipart/form-data' },
+        params: scopeParams,
       });
-      setSummary(response.data);
+      const job = await waitForJob(response.data.jobId);
+      if (job.status === 'FAILED' || !job.result) {
+        setUploadState('error');
+        setUploadMessage(job.error || 'La carga del documento falló.');
+        return;
+      }
+      setSummary(job.result);
       setUploadState('success');
       setUploadMessage(
-        `Se indexaron ${response.data.chunksStored} fragmentos del archivo ${response.data.fileName}`
+        job.result.unchanged
+          ? `El archivo ${job.result.fileName} ya estaba indexado y no tiene cambios`
+          : `Se indexaron ${job.result.chunksStored} fragmentos del archivo ${job.result.fileName}` +
+              (job.result.chunksReused ? ` (${job.result.chunksReused} reutilizados)` : '')
       );
       setSelectedFile(null);
     } catch (error: any) {
@@ -78,7 +122,7 @@ const RagUpload: React.FC = () => {
     setContextPreview('');
     try {
       const response = await axios.get<{ context: string }>('/rag/context', {
-        params: { q: contextQuery },
+        params: { q: contextQuery, ...scopeParams },
       });
       setContextPreview(response.data.context || 'No se encontraron fragmentos relevantes.');
     } catch (error) {
@@ -95,13 +139,54 @@ const RagUpload: React.FC = () => {
     setChatError('');
     setChatAnswer('');
     try {
-      const response = await axios.post<{ answer: string }>('/rag/chat', { question: chatQuestion });
-      setChatAnswer(response.data.answer || 'Sin respuesta del modelo.');
+      // La respuesta llega por SSE: se muestra cada fragmento en cuanto llega.
+      const authorization = axios.defaults.headers.common['Authorization'];
+      const response = await fetch('/rag/chat?stream=true', {
+        method: 'POST',
+        headers: {
+          'Content-Type': 'application/json',
+          Accept: 'text/event-stream',
+          ...(authorization ? { Authorization: String(authorization) } : {}),
+        },
+        body: JSON.stringify({ question: chatQuestion, ...scopeParams }),
+      });
+      if (!response.ok || !response.body) {
+        setChatError((await response.text()) || 'No se pudo obtener respuesta.');
+        return;
+      }
+      const reader = response.body.getReader();
+      const decoder = new TextDecoder();
+      let buffer = '';
+      let answer = '';
+      for (;;) {
+        const { done, value } = await reader.read();
+        if (done) break;
+        buffer += decoder.decode(value, { stream: true });
+        const events = buffer.split('\n\n');
+        buffer = events.pop() ?? '';
+        for (const rawEvent of events) {
+          const lines = rawEvent.split('\n');
+          const name = lines.find((line) => line.startsWith('event:'))?.slice(6).trim();
+          const data = lines
+            .filter((line) => line.startsWith('data:'))
+            .map((line) => line.slice(5))
+            .join('\n');
+          if (!data) continue;
+          const parsed = JSON.parse(data);
+          if (name === 'delta') {
+            answer += parsed.text;
+            setChatAnswer(answer);
+            setChatLoading(false);
+          } else if (name === 'done') {
+            setChatAnswer(parsed.answer || 'Sin respuesta del modelo.');
+          } else if (name === 'error') {
+            setChatError(parsed.message || 'La respuesta se interrumpió.');
+          }
+        }
+      }
     } catch (error: any) {
       console.error('No se pudo obtener respuesta del chat', error);
-      const message =
-        error?.response?.data || 'Ocurrió un problema al consultar el chat con contexto.';
-      setChatError(typeof message === 'string' ? message : 'No se pudo obtener respuesta.');
+      setChatError('Ocurrió un problema al consultar el chat con contexto.');
     } finally {
       setChatLoading(false);
     }
@@ -249,6 +334,16 @@ const RagUpload: React.FC = () => {
             )}
           </div>
 
+          <div className="context-form">
+            <input
+              type="number"
+              min={1}
+              placeholder="ID de proyecto (opcional, aplica a carga y búsquedas)"
+              value={proyectoId}
+              onChange={(e) => setProyectoId(e.target.value)}
+            />
+          </div>
+
           <div className="upload-actions">
             <input
               ref={fileInputRef}
@@ -276,7 +371,7 @@ const RagUpload: React.FC = () => {
             {statusIcon()}
             <div>
               <p className="status-label">{uploadMessage}</p>
-              {summary && uploadState === 'success' && (
+              {summary && uploadState === 'success' && !summary.unchanged && (
                 <p className="status-meta">
                   Dimensión del embedding: {summary.embeddingDims} • Fragmentos guardados: {summary.chunksStored}
                 </p>
@@ -3,6 +3,7 @@ package com.springboot.MyTodoList.config;
 import java.time.LocalDate;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
@@ -14,8 +15,14 @@ import java.nio.charset.StandardCharsets;
 import org.springframework.core.io.ClassPathResource;
 import java.util.Scanner;
 import jakarta.persistence.EntityManager;
+import java.sql.Clob;
 import java.sql.Connection;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.MyTodoList.util.EmbeddingCodec;
 
 @Component
 public class DataInitializer implements CommandLineRunner {
@@ -50,9 +57,21 @@ public class DataInitializer implements CommandLineRunner {
     @Autowired
     private EntityManager entityManager;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private RagVectorStore ragVectorStore;
+
     @Override
     public void run(String... args) throws Exception {
         createVectorTable();
+        createSprintPlanCacheTable();
+        migrateEmbeddingsToBinary();
+        if (ragVectorStore.isOracle()) {
+            createNativeVectorColumn();
+            ragVectorStore.checkNativeColumn();
+        }
         
 
         boolean datosYaExisten = usuarioRepository.count() > 0 || 
@@ -272,7 +291,13 @@ public class DataInitializer implements CommandLineRunner {
                 "            chunk_index NUMBER NOT NULL,\n" +
                 "            chunk_text CLOB,\n" +
                 "            embedding_json CLOB,\n" +
+                "            embedding_bin BLOB,\n" +
                 "            embedding_dims NUMBER,\n" +
+                "            embedding_model VARCHAR2(100),\n" +
+                "            content_hash VARCHAR2(64),\n" +
+                "            document_hash VARCHAR2(64),\n" +
+                "            proyecto_id NUMBER,\n" +
+                "            sprint_id NUMBER,\n" +
                 "            created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP\n" +
                 "        )';\n" +
                 "EXCEPTION\n" +
@@ -293,15 +318,246 @@ public class DataInitializer implements CommandLineRunner {
                 "        END IF;\n" +
                 "END;";
 
+        String createHashIndex =
+                "BEGIN\n" +
+                "    EXECUTE IMMEDIATE '\n" +
+                "        CREATE INDEX idx_rag_chunks_hash ON rag_document_chunk(content_hash, embedding_model)';\n" +
+                "EXCEPTION\n" +
+                "    WHEN OTHERS THEN\n" +
+                "        IF SQLCODE != -955 THEN\n" +
+                "            RAISE;\n" +
+                "        END IF;\n" +
+                "END;";
+
+        String createScopeIndex =
+                "BEGIN\n" +
+                "    EXECUTE IMMEDIATE '\n" +
+                "        CREATE INDEX idx_rag_chunks_scope ON rag_document_chunk(proyecto_id, sprint_id)';\n" +
+                "EXCEPTION\n" +
+                "    WHEN OTHERS THEN\n" +
+                "        IF SQLCODE != -955 THEN\n" +
+                "            RAISE;\n" +
+                "        END IF;\n" +
+                "END;";
+
+        // Secuencia para insertar por lotes; arranca después del id más alto ya guardado
+        String createSequence =
+                "DECLARE\n" +
+                "    next_id NUMBER;\n" +
+                "BEGIN\n" +
+                "    SELECT NVL(MAX(id), 0) + 1 INTO next_id FROM rag_document_chunk;\n" +
+                "    EXECUTE IMMEDIATE 'CREATE SEQUENCE rag_document_chunk_seq START WITH ' || next_id || ' INCREMENT BY 1 CACHE 100';\n" +
+                "EXCEPTION\n" +
+                "    WHEN OTHERS THEN\n" +
+                "        IF SQLCODE != -955 THEN\n" +
+                "            RAISE;\n" +
+                "        END IF;\n" +
+                "END;";
+
         try {
             jdbcTemplate.execute(createTable);
+            // Tablas creadas con versiones anteriores: se agregan las columnas nuevas
+            addVectorTableColumn("embedding_bin BLOB");
+            addVectorTableColumn("embedding_model VARCHAR2(100)");
+            addVectorTableColumn("content_hash VARCHAR2(64)");
+            addVectorTableColumn("document_hash VARCHAR2(64)");
+            addVectorTableColumn("proyecto_id NUMBER");
+            addVectorTableColumn("sprint_id NUMBER");
+            jdbcTemplate.execute(createSequence);
             jdbcTemplate.execute(createIndex);
+            jdbcTemplate.execute(createHashIndex);
+            jdbcTemplate.execute(createScopeIndex);
             System.out.println("✓ Tabla vectorial 'rag_document_chunk' lista para embeddings.");
         } catch (Exception e) {
             System.err.println("⚠️ No se pudo crear la tabla de vectores: " + e.getMessage());
         }
     }
 
+    private void createSprintPlanCacheTable() {
+        String createTable =
+                "BEGIN\n" +
+                "    EXECUTE IMMEDIATE '\n" +
+                "        CREATE TABLE sprint_plan_cache (\n" +
+                "            cache_key VARCHAR2(64) PRIMARY KEY,\n" +
+                "            model VARCHAR2(100),\n" +
+                "            result_json CLOB,\n" +
+                "            hit_count NUMBER DEFAULT 0,\n" +
+                "            created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,\n" +
+                "            expires_at TIMESTAMP NOT NULL\n" +
+                "        )';\n" +
+                "EXCEPTION\n" +
+                "    WHEN OTHERS THEN\n" +
+                "        IF SQLCODE != -955 THEN\n" +
+                "            RAISE;\n" +
+                "        END IF;\n" +
+                "END;";
+
+        String createExpiresIndex =
+                "BEGIN\n" +
+                "    EXECUTE IMMEDIATE '\n" +
+                "        CREATE INDEX idx_sprint_plan_cache_expires ON sprint_plan_cache(expires_at)';\n" +
+                "EXCEPTION\n" +
+                "    WHEN OTHERS THEN\n" +
+                "        IF SQLCODE != -955 THEN\n" +
+                "            RAISE;\n" +
+                "        END IF;\n" +
+                "END;";
+
+        try {
+            jdbcTemplate.execute(createTable);
+            jdbcTemplate.execute(createExpiresIndex);
+            System.out.println("✓ Tabla 'sprint_plan_cache' lista para guardar planeaciones.");
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudo crear la tabla de caché de planeación: " + e.getMessage());
+        }
+    }
+
+    // ORA-01430: la columna ya existe
+    private void addVectorTableColumn(String columnDefinition) {
+        jdbcTemplate.execute(
+                "BEGIN\n" +
+                "    EXECUTE IMMEDIATE 'ALTER TABLE rag_document_chunk ADD (" + columnDefinition + ")';\n" +
+                "EXCEPTION\n" +
+                "    WHEN OTHERS THEN\n" +
+                "        IF SQLCODE != -1430 THEN\n" +
+                "            RAISE;\n" +
+                "        END IF;\n" +
+                "END;");
+    }
+
+    // Convierte por lotes los embeddings guardados como JSON al formato binario y libera el CLOB.
+    // Las filas con JSON inválido se reportan y se dejan como están; el resto sigue migrándose.
+    private void migrateEmbeddingsToBinary() {
+        String selectPending =
+                "SELECT id, embedding_json FROM rag_document_chunk " +
+                "WHERE embedding_bin IS NULL AND embedding_json IS NOT NULL AND id > ? " +
+                "ORDER BY id FETCH FIRST 200 ROWS ONLY";
+        try {
+            int migrated = 0;
+            int skipped = 0;
+            long lastId = Long.MIN_VALUE;
+            while (true) {
+                List<Map<String, Object>> rows = jdbcTemplate.queryForList(selectPending, lastId);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                List<Object[]> updates = new ArrayList<>(rows.size());
+                for (Map<String, Object> row : rows) {
+                    long id = ((Number) row.get("ID")).longValue();
+                    lastId = id;
+                    try {
+                        Object json = row.get("EMBEDDING_JSON");
+                        String text = json instanceof Clob
+                                ? ((Clob) json).getSubString(1, (int) ((Clob) json).length())
+                                : String.valueOf(json);
+                        float[] vector = objectMapper.readValue(text, float[].class);
+                        if (vector == null || vector.length == 0) {
+                            throw new IllegalArgumentException("el embedding está vacío");
+                        }
+                        updates.add(new Object[] { EmbeddingCodec.encode(vector), vector.length, id });
+                    } catch (Exception e) {
+                        skipped++;
+                        System.err.println("⚠️ Embedding del fragmento " + id + " no migrado: " + e.getMessage());
+                    }
+                }
+                if (!updates.isEmpty()) {
+                    jdbcTemplate.batchUpdate(
+                            "UPDATE rag_document_chunk SET embedding_bin = ?, embedding_dims = ?, embedding_json = NULL WHERE id = ?",
+                            updates);
+                }
+                migrated += updates.size();
+            }
+            if (migrated > 0) {
+                System.out.println("✓ " + migrated + " embeddings migrados de JSON a formato binario.");
+            }
+            if (skipped > 0) {
+                System.err.println("⚠️ " + skipped + " embeddings con JSON inválido se dejaron sin migrar.");
+            }
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudieron migrar los embeddings a formato binario: " + e.getMessage());
+        }
+    }
+
+    // rag.vector-store=oracle: columna VECTOR nativa (Oracle 23ai) con índice vectorial para VECTOR_DISTANCE.
+    private void createNativeVectorColumn() {
+        String createVectorIndex =
+                "BEGIN\n" +
+                "    EXECUTE IMMEDIATE '\n" +
+                "        CREATE VECTOR INDEX idx_rag_chunks_vec ON rag_document_chunk(embedding_vec)\n" +
+                "        ORGANIZATION NEIGHBOR PARTITIONS DISTANCE COSINE WITH TARGET ACCURACY 95';\n" +
+                "EXCEPTION\n" +
+                "    WHEN OTHERS THEN\n" +
+                "        IF SQLCODE != -955 THEN\n" +
+                "            RAISE;\n" +
+                "        END IF;\n" +
+                "END;";
+        try {
+            addVectorTableColumn("embedding_vec VECTOR(*, FLOAT32)");
+            backfillNativeVectors();
+            jdbcTemplate.execute(createVectorIndex);
+            System.out.println("✓ Columna VECTOR e índice vectorial de 'rag_document_chunk' listos.");
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudo preparar la columna VECTOR (requiere Oracle 23ai): " + e.getMessage());
+        }
+    }
+
+    // Copia a embedding_vec los embeddings binarios que todavía no la tienen, por lotes.
+    // Las filas que no se pueden decodificar o actualizar se reportan y se saltan, para que
+    // el resto se copie y el índice vectorial se cree de todos modos.
+    private void backfillNativeVectors() {
+        String selectPending =
+                "SELECT id, embedding_bin FROM rag_document_chunk " +
+                "WHERE embedding_vec IS NULL AND embedding_bin IS NOT NULL AND id > ? " +
+                "ORDER BY id FETCH FIRST 200 ROWS ONLY";
+        String updateVector = "UPDATE rag_document_chunk SET embedding_vec = TO_VECTOR(?, *, FLOAT32) WHERE id = ?";
+        int copied = 0;
+        int skipped = 0;
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(selectPending, lastId);
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                long id = ((Number) row.get("ID")).longValue();
+                lastId = id;
+                try {
+                    float[] vector = EmbeddingCodec.decode((byte[]) row.get("EMBEDDING_BIN"));
+                    updates.add(new Object[] { EmbeddingCodec.toVectorText(vector), id });
+                } catch (Exception e) {
+                    skipped++;
+                    System.err.println("⚠️ Embedding del fragmento " + id + " no copiado a VECTOR: " + e.getMessage());
+                }
+            }
+            if (updates.isEmpty()) {
+                continue;
+            }
+            try {
+                jdbcTemplate.batchUpdate(updateVector, updates);
+                copied += updates.size();
+            } catch (Exception batchError) {
+                // El lote se rechaza completo por una fila: se repite fila por fila para aislarla.
+                for (Object[] update : updates) {
+                    try {
+                        jdbcTemplate.update(updateVector, update);
+                        copied++;
+                    } catch (Exception e) {
+                        skipped++;
+                        System.err.println("⚠️ Embedding del fragmento " + update[1] + " no copiado a VECTOR: "
+                                + e.getMessage());
+                    }
+                }
+            }
+        }
+        if (copied > 0) {
+            System.out.println("✓ " + copied + " embeddings copiados a la columna VECTOR.");
+        }
+        if (skipped > 0) {
+            System.err.println("⚠️ " + skipped + " embeddings no se pudieron copiar a la columna VECTOR.");
+        }
+    }
+
     private void createKpiProceduresFromFile() {
         try {
             ClassPathResource resource = new ClassPathResource("db/kpi_procedures.sql");
@@ -0,0 +1,52 @@
+package com.springboot.MyTodoList.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+import com.springboot.MyTodoList.service.EmbeddingProvider;
+import com.springboot.MyTodoList.service.HashingEmbeddingProvider;
+import com.springboot.MyTodoList.service.LlmCallGuard;
+import com.springboot.MyTodoList.service.OpenAiEmbeddingProvider;
+
+/**
+ * Elige el backend de embeddings con embedding.provider: openai (por defecto) llama al
+ * endpoint de OpenAI; hashing-dev los calcula en la CPU sin red, solo para desarrollo y
+ * pruebas (ver {@link HashingEmbeddingProvider}).
+ */
+@Configuration
+public class EmbeddingProviderConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingProviderConfig.class);
+
+    @Bean
+    public EmbeddingProvider embeddingProvider(
+            @Value("${embedding.provider:openai}") String provider,
+            @Qualifier("llmRestTemplate") RestTemplate restTemplate,
+            ObjectMapper objectMapper,
+            LlmCallGuard callGuard,
+            @Value("${openai.api.key:}") String apiKey,
+            @Value("${openai.embedding.model:text-embedding-3-small}") String embeddingModel,
+            @Value("${openai.embedding.url:https://api.openai.com/v1/embeddings}") String embeddingUrl,
+            @Value("${openai.embedding.batch-size:96}") int maxBatchInputs,
+            @Value("${openai.embedding.max-batch-tokens:250000}") int maxBatchTokens,
+            @Value("${embedding.hashing.dims:384}") int hashingDims,
+            @Value("${embedding.hashing.threads:0}") int hashingThreads) {
+        String selected = provider.trim().toLowerCase();
+        if (selected.equals("hashing-dev")) {
+            HashingEmbeddingProvider hashing = new HashingEmbeddingProvider(hashingDims, hashingThreads);
+            logger.warn("Embeddings por hashing ({}): solo para desarrollo y pruebas, sin búsqueda semántica",
+                    hashing.getModel());
+            return hashing;
+        }
+        if (!selected.equals("openai")) {
+            throw new IllegalArgumentException("embedding.provider debe ser openai o hashing-dev: " + provider);
+        }
+        return new OpenAiEmbeddingProvider(restTemplate, objectMapper, callGuard, apiKey,
+                embeddingModel, embeddingUrl, maxBatchInputs, maxBatchTokens);
+    }
+}
@@ -0,0 +1,98 @@
+package com.springboot.MyTodoList.config;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Cliente HTTP compartido para las llamadas a OpenAI (embeddings, chat y planeación).
+ *
+ * Por defecto usa Apache HttpClient 5 con un pool de conexiones persistentes, así que
+ * las peticiones reutilizan la conexión TLS en lugar de negociarla cada vez; pide y
+ * descomprime gzip de forma transparente. Con llm.http.version=HTTP_2 usa el cliente
+ * del JDK, que negocia HTTP/2 por ALPN y multiplexa las peticiones en una conexión
+ * (sin gzip). El cliente clásico de HttpClient 5 solo habla HTTP/1.1.
+ *
+ * Los timeouts evitan que un proveedor lento deje hilos de petición colgados: connect
+ * para abrir la conexión, read entre bytes de la respuesta (en streaming, entre
+ * fragmentos) y pool para esperar una conexión libre.
+ */
+@Configuration
+public class LlmHttpClientConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmHttpClientConfig.class);
+
+    @Bean
+    public ClientHttpRequestFactory llmRequestFactory(
+            @Value("${llm.http.version:HTTP_1_1}") String version,
+            @Value("${llm.http.max-connections:50}") int maxConnections,
+            @Value("${llm.http.max-connections-per-route:20}") int maxConnectionsPerRoute,
+            @Value("${llm.http.connect-timeout-ms:5000}") long connectTimeoutMs,
+            @Value("${llm.http.read-timeout-ms:60000}") long readTimeoutMs,
+            @Value("${llm.http.pool-timeout-ms:5000}") long poolTimeoutMs,
+            @Value("${llm.http.idle-evict-seconds:30}") long idleEvictSeconds,
+            @Value("${llm.http.connection-ttl-seconds:300}") long connectionTtlSeconds) {
+        if ("HTTP_2".equalsIgnoreCase(version.trim())) {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                    .build();
+            JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(client);
+            factory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+            logger.info("Cliente HTTP para OpenAI: JDK HttpClient (HTTP/2), read timeout {} ms", readTimeoutMs);
+            return factory;
+        }
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .setTimeToLive(TimeValue.ofSeconds(connectionTtlSeconds))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+        CloseableHttpClient client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                // Los reintentos (429, 5xx, E/S) los decide LlmCallGuard; si el cliente también
+                // reintentara, cada falla se repetiría dos veces y se ignoraría el backoff.
+                .disableAutomaticRetries()
+                .evictIdleConnections(TimeValue.ofSeconds(idleEvictSeconds))
+                .evictExpiredConnections()
+                .build();
+        logger.info("Cliente HTTP para OpenAI: pool de {} conexiones ({} por host), read timeout {} ms",
+                maxConnections, maxConnectionsPerRoute, readTimeoutMs);
+        // HttpComponentsClientHttpRequestFactory cierra el cliente y el pool al apagar la aplicación.
+        return new HttpComponentsClientHttpRequestFactory(client);
+    }
+
+    @Bean
+    public RestTemplate llmRestTemplate(
+            RestTemplateBuilder restTemplateBuilder,
+            @Qualifier("llmRequestFactory") ClientHttpRequestFactory llmRequestFactory) {
+        return restTemplateBuilder.requestFactory(() -> llmRequestFactory).build();
+    }
+}
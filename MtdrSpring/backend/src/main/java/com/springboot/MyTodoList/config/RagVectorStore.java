@@ -0,0 +1,65 @@
+package com.springboot.MyTodoList.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Dónde viven los vectores del RAG: "memory" (índice en memoria, por defecto) u "oracle"
+ * (columna VECTOR de Oracle 23ai con VECTOR_DISTANCE), según rag.vector-store.
+ *
+ * Con oracle, DataInitializer intenta crear la columna embedding_vec y luego llama a
+ * {@link #checkNativeColumn()}. Si la base no la tiene (por ejemplo, no es 23ai) se
+ * regresa a memory antes de que se construya el índice, en lugar de fallar en cada
+ * inserción y búsqueda.
+ */
+@Component
+public class RagVectorStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(RagVectorStore.class);
+
+    private static final String NATIVE_COLUMN_SQL =
+            "SELECT COUNT(*) FROM user_tab_columns "
+            + "WHERE table_name = 'RAG_DOCUMENT_CHUNK' AND column_name = 'EMBEDDING_VEC'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile boolean oracle;
+
+    public RagVectorStore(
+            @Value("${rag.vector-store:memory}") String vectorStore,
+            JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.oracle = "oracle".equalsIgnoreCase(vectorStore.trim());
+    }
+
+    public boolean isOracle() {
+        return oracle;
+    }
+
+    /**
+     * Confirma que existe la columna VECTOR; si no existe o no se puede consultar, cambia a
+     * memory.
+     *
+     * @return true si se sigue usando oracle
+     */
+    public boolean checkNativeColumn() {
+        if (!oracle) {
+            return false;
+        }
+        try {
+            Integer columns = jdbcTemplate.queryForObject(NATIVE_COLUMN_SQL, Integer.class);
+            if (columns != null && columns > 0) {
+                return true;
+            }
+            logger.warn("rag.vector-store=oracle pero rag_document_chunk no tiene la columna embedding_vec; "
+                    + "se usa el índice en memoria");
+        } catch (DataAccessException e) {
+            logger.warn("No se pudo verificar la columna VECTOR ({}); se usa el índice en memoria", e.getMessage());
+        }
+        oracle = false;
+        return false;
+    }
+}
@@ -1,39 +1,83 @@
 package com.springboot.MyTodoList.controller;
 
+import com.springboot.MyTodoList.service.EmbeddingService;
+import com.springboot.MyTodoList.service.LlmCallGuard;
+import com.springboot.MyTodoList.service.RagAnswerCache;
 import com.springboot.MyTodoList.service.RagChatService;
+import com.springboot.MyTodoList.service.RagIndexService;
+import com.springboot.MyTodoList.service.RagIngestionJob;
+import com.springboot.MyTodoList.service.RagIngestionJobService;
+import com.springboot.MyTodoList.service.RagScope;
 import com.springboot.MyTodoList.service.RagService;
+import com.springboot.MyTodoList.service.SprintPlanCacheService;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/rag")
 public class RagController {
 
+    private static final long CHAT_STREAM_TIMEOUT_MS = 120_000;
+    private static final int MAX_EVALUATE_K = 100;
+    private static final int MAX_EVALUATE_QUERIES = 1000;
+
     private final RagService ragService;
     private final RagChatService ragChatService;
+    private final RagIngestionJobService ingestionJobService;
+    private final RagIndexService indexService;
+    private final EmbeddingService embeddingService;
+    private final RagAnswerCache answerCache;
+    private final LlmCallGuard callGuard;
+    private final SprintPlanCacheService planCache;
 
-    public RagController(RagService ragService, RagChatService ragChatService) {
+    public RagController(
+            RagService ragService,
+            RagChatService ragChatService,
+            RagIngestionJobService ingestionJobService,
+            RagIndexService indexService,
+            EmbeddingService embeddingService,
+            RagAnswerCache answerCache,
+            LlmCallGuard callGuard,
+            SprintPlanCacheService planCache) {
         this.ragService = ragService;
         this.ragChatService = ragChatService;
+        this.ingestionJobService = ingestionJobService;
+        this.indexService = indexService;
+        this.embeddingService = embeddingService;
+        this.answerCache = answerCache;
+        this.callGuard = callGuard;
+        this.planCache = planCache;
     }
 
+    // La carga se procesa en segundo plano; el avance se consulta en /rag/jobs/{id}
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<?> uploadKnowledge(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<?> uploadKnowledge(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "proyectoId", required = false) Long proyectoId,
+            @RequestParam(value = "sprintId", required = false) Long sprintId) {
         try {
-            Map<String, Object> summary = ragService.ingestFile(file);
-            return ResponseEntity.ok(summary);
+            RagIngestionJob job = ingestionJobService.submit(file, RagScope.of(proyectoId, sprintId));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.toSummary());
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
         } catch (IOException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body("No se pudo leer el archivo: " + e.getMessage());
@@ -43,9 +87,65 @@ public class RagController {
         }
     }
 
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<?> getIngestionJob(@PathVariable String id) {
+        return ingestionJobService.find(id)
+                .<ResponseEntity<?>>map(job -> ResponseEntity.ok(job.toSummary()))
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body("No existe el trabajo de carga " + id));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<?> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("indexReady", indexService.isReady());
+        stats.put("indexSize", indexService.size());
+        stats.put("indexPartitions", indexService.partitionCount());
+        stats.put("indexQuantization", indexService.getQuantization());
+        stats.put("lexicalIndexReady", indexService.isLexicalReady());
+        stats.put("lexicalIndexSize", indexService.lexicalSize());
+        stats.put("queryEmbeddingCache", embeddingService.getQueryCacheStats());
+        stats.put("answerCache", answerCache.stats());
+        stats.put("sprintPlanCache", planCache.stats());
+        stats.put("llmCalls", callGuard.stats());
+        return ResponseEntity.ok(stats);
+    }
+
+    // Recall@k de HNSW, int8 y PQ contra la búsqueda exacta sobre los embeddings cargados.
+    // Corre fuera del hilo de la petición y solo una a la vez. Sin maxVectors se usa el tope
+    // configurado en rag.index.evaluate.max-vectors.
+    @GetMapping("/index/evaluate")
+    public CompletableFuture<ResponseEntity<?>> evaluateIndex(
+            @RequestParam(value = "k", defaultValue = "10") int k,
+            @RequestParam(value = "queries", defaultValue = "100") int queries,
+            @RequestParam(value = "maxVectors", required = false) Integer requestedMaxVectors) {
+        int maxVectors = requestedMaxVectors != null ? requestedMaxVectors : indexService.getEvaluateMaxVectors();
+        if (k <= 0 || queries <= 0 || maxVectors <= 0) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body("k, queries y maxVectors deben ser positivos."));
+        }
+        if (k > MAX_EVALUATE_K || queries > MAX_EVALUATE_QUERIES) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(
+                    "k no puede pasar de " + MAX_EVALUATE_K + " ni queries de " + MAX_EVALUATE_QUERIES + "."));
+        }
+        try {
+            return indexService.evaluateQuantization(k, queries, maxVectors)
+                    .thenApply(results -> ResponseEntity.ok(results));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(e.getMessage()));
+        } catch (IllegalStateException e) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage()));
+        }
+    }
+
     @GetMapping("/context")
-    public ResponseEntity<?> previewContext(@RequestParam("q") String query) {
-        String context = ragService.buildContextForPrompt(query, 3);
+    public ResponseEntity<?> previewContext(
+            @RequestParam("q") String query,
+            @RequestParam(value = "proyectoId", required = false) Long proyectoId,
+            @RequestParam(value = "sprintId", required = false) Long sprintId,
+            @RequestParam(value = "fileName", required = false) String fileName) {
+        String context = ragService.buildContextForPrompt(query, 3, RagScope.of(proyectoId, sprintId, fileName));
         return ResponseEntity.ok(Map.of("context", context));
     }
 
@@ -55,7 +155,75 @@ public class RagController {
         if (question == null || question.trim().isEmpty()) {
             return ResponseEntity.badRequest().body("La pregunta no puede estar vacía.");
         }
-        String answer = ragChatService.chatWithContext(question);
+        RagScope scope;
+        try {
+            scope = parseScope(payload);
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body("proyectoId y sprintId deben ser numéricos.");
+        }
+        String answer = ragChatService.chatWithContext(question, scope);
         return ResponseEntity.ok(Map.of("answer", answer));
     }
+
+    // Con ?stream=true la respuesta llega por SSE: eventos "delta" con cada fragmento de
+    // texto y un "done" con la respuesta completa (o "error" si se cortó).
+    @PostMapping(value = "/chat", params = "stream=true", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<?> streamChatWithContext(@RequestBody Map<String, String> payload) {
+        String question = payload != null ? payload.get("question") : null;
+        if (question == null || question.trim().isEmpty()) {
+            return ResponseEntity.badRequest().body("La pregunta no puede estar vacía.");
+        }
+        RagScope scope;
+        try {
+            scope = parseScope(payload);
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body("proyectoId y sprintId deben ser numéricos.");
+        }
+        SseEmitter emitter = new SseEmitter(CHAT_STREAM_TIMEOUT_MS);
+        CompletableFuture<String> response;
+        try {
+            response = ragChatService.streamChatWithContext(question, scope, delta -> {
+                try {
+                    emitter.send(SseEmitter.event().name("delta").data(Map.of("text", delta)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+        // Si el cliente se va, falla la conexión o se agota el tiempo, se corta también la
+        // respuesta del modelo para no seguir ocupando un hilo y una conexión.
+        emitter.onTimeout(() -> {
+            response.cancel(true);
+            emitter.complete();
+        });
+        emitter.onError(error -> response.cancel(true));
+        emitter.onCompletion(() -> response.cancel(true));
+        response.whenComplete((answer, error) -> {
+            if (error instanceof CancellationException) {
+                return;
+            }
+            try {
+                if (error == null) {
+                    emitter.send(SseEmitter.event().name("done").data(Map.of("answer", answer)));
+                } else {
+                    emitter.send(SseEmitter.event().name("error").data(Map.of("message", "La respuesta se interrumpió.")));
+                }
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // El cliente ya cerró la conexión.
+                emitter.completeWithError(e);
+            }
+        });
+        return ResponseEntity.ok(emitter);
+    }
+
+    private static RagScope parseScope(Map<String, String> payload) {
+        return RagScope.of(parseId(payload.get("proyectoId")), parseId(payload.get("sprintId")), payload.get("fileName"));
+    }
+
+    private static Long parseId(String value) {
+        return value == null || value.trim().isEmpty() ? null : Long.valueOf(value.trim());
+    }
 }
@@ -35,6 +35,7 @@ import com.springboot.MyTodoList.repository.ProyectoRepository;
 import com.springboot.MyTodoList.repository.SprintRepository;
 import com.springboot.MyTodoList.repository.TareaRepository;
 import com.springboot.MyTodoList.repository.UsuarioRepository;
+import com.springboot.MyTodoList.service.LlmCallGuard;
 import com.springboot.MyTodoList.service.TareaService;
 import com.springboot.MyTodoList.service.SprintPlanningService;
 
@@ -94,7 +95,9 @@ public class TareaController {
 
     @CrossOrigin(origins = "*")
     @PostMapping(value = "/plan-sprint", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<?> sugerirTareasParaSprint(@RequestParam("archivo") MultipartFile archivoTxt) {
+    public ResponseEntity<?> sugerirTareasParaSprint(
+            @RequestParam("archivo") MultipartFile archivoTxt,
+            @RequestParam(value = "refresh", defaultValue = "false") boolean refresh) {
         if (archivoTxt == null || archivoTxt.isEmpty()) {
             return ResponseEntity.badRequest().body("Debes adjuntar un archivo .txt con la descripción del sprint.");
         }
@@ -110,12 +113,14 @@ public class TareaController {
                 return ResponseEntity.badRequest().body("El archivo está vacío, agrega la descripción del sprint.");
             }
 
-            List<TareaDTO> tareas = sprintPlanningService.generarTareas(descripcion);
+            List<TareaDTO> tareas = sprintPlanningService.generarTareas(descripcion, refresh);
             return ResponseEntity.ok(tareas);
         } catch (IOException e) {
             return ResponseEntity.badRequest().body("No se pudo leer el archivo proporcionado.");
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (LlmCallGuard.LlmUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
         } catch (IllegalStateException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
         }
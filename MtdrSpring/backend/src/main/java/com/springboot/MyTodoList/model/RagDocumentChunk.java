@@ -7,6 +7,7 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Lob;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 import java.time.LocalDateTime;
 
@@ -14,8 +15,10 @@ import java.time.LocalDateTime;
 @Table(name = "rag_document_chunk")
 public class RagDocumentChunk {
 
+    // Misma secuencia que usa RagDocumentChunkBatchWriter para reservar ids por lote.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rag_chunk_seq")
+    @SequenceGenerator(name = "rag_chunk_seq", sequenceName = "rag_document_chunk_seq", allocationSize = 1)
     private Long id;
 
     @Column(name = "file_name", nullable = false, length = 255)
@@ -31,10 +34,34 @@ public class RagDocumentChunk {
     @Column(name = "chunk_text", columnDefinition = "CLOB")
     private String chunkText;
 
+    // Formato anterior (JSON en CLOB); solo se lee para filas aún no migradas a embedding_bin.
     @Lob
     @Column(name = "embedding_json", columnDefinition = "CLOB")
     private String embeddingJson;
 
+    // Embedding en float32 little-endian con encabezado, ver EmbeddingCodec.
+    @Lob
+    @Column(name = "embedding_bin", columnDefinition = "BLOB")
+    private byte[] embedding;
+
+    @Column(name = "embedding_model", length = 100)
+    private String embeddingModel;
+
+    // SHA-256 del texto del fragmento; permite reutilizar embeddings ya calculados.
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // SHA-256 del archivo completo del que salió el fragmento.
+    @Column(name = "document_hash", length = 64)
+    private String documentHash;
+
+    // Alcance del fragmento; null cuando el documento se cargó sin proyecto o sin sprint.
+    @Column(name = "proyecto_id")
+    private Long proyectoId;
+
+    @Column(name = "sprint_id")
+    private Long sprintId;
+
     @Column(name = "embedding_dims")
     private Integer embeddingDims;
 
@@ -96,6 +123,38 @@ public class RagDocumentChunk {
         this.embeddingJson = embeddingJson;
     }
 
+    public byte[] getEmbedding() {
+        return embedding;
+    }
+
+    public void setEmbedding(byte[] embedding) {
+        this.embedding = embedding;
+    }
+
+    public String getEmbeddingModel() {
+        return embeddingModel;
+    }
+
+    public void setEmbeddingModel(String embeddingModel) {
+        this.embeddingModel = embeddingModel;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getDocumentHash() {
+        return documentHash;
+    }
+
+    public void setDocumentHash(String documentHash) {
+        this.documentHash = documentHash;
+    }
+
     public Integer getEmbeddingDims() {
         return embeddingDims;
     }
@@ -111,4 +170,20 @@ public class RagDocumentChunk {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    public Long getProyectoId() {
+        return proyectoId;
+    }
+
+    public void setProyectoId(Long proyectoId) {
+        this.proyectoId = proyectoId;
+    }
+
+    public Long getSprintId() {
+        return sprintId;
+    }
+
+    public void setSprintId(Long sprintId) {
+        this.sprintId = sprintId;
+    }
 }
@@ -0,0 +1,133 @@
+package com.springboot.MyTodoList.repository;
+
+import com.springboot.MyTodoList.config.RagVectorStore;
+import com.springboot.MyTodoList.model.RagDocumentChunk;
+import com.springboot.MyTodoList.util.EmbeddingCodec;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Inserta fragmentos del RAG con lotes JDBC en lugar de un save() por fila.
+ *
+ * Los ids se reservan de rag_document_chunk_seq en un solo viaje a la base y luego
+ * las filas se envían en lotes de rag.ingest.jdbc-batch-size, así que un documento
+ * de N fragmentos cuesta 1 + N / batchSize viajes en vez de N. Los métodos devuelven
+ * los viajes que de verdad se ejecutaron (la consulta de ids más un lote por cada
+ * executeBatch).
+ */
+@Repository
+public class RagDocumentChunkBatchWriter {
+
+    private static final String RESERVE_IDS_SQL =
+            "SELECT rag_document_chunk_seq.NEXTVAL FROM dual CONNECT BY LEVEL <= ?";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO rag_document_chunk "
+            + "(id, file_name, mime_type, chunk_index, chunk_text, embedding_bin, embedding_dims, "
+            + "embedding_model, content_hash, document_hash, created_at, proyecto_id, sprint_id) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Con rag.vector-store=oracle también se llena la columna VECTOR nativa.
+    private static final String INSERT_WITH_VECTOR_SQL =
+            "INSERT INTO rag_document_chunk "
+            + "(id, file_name, mime_type, chunk_index, chunk_text, embedding_bin, embedding_dims, "
+            + "embedding_model, content_hash, document_hash, created_at, proyecto_id, sprint_id, embedding_vec) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, TO_VECTOR(?, *, FLOAT32))";
+
+    private static final String DELETE_SQL = "DELETE FROM rag_document_chunk WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final RagVectorStore vectorStore;
+
+    public RagDocumentChunkBatchWriter(
+            JdbcTemplate jdbcTemplate,
+            @Value("${rag.ingest.jdbc-batch-size:100}") int batchSize,
+            RagVectorStore vectorStore) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = Math.max(1, batchSize);
+        this.vectorStore = vectorStore;
+    }
+
+    /**
+     * Inserta los fragmentos en una sola transacción y les asigna su id.
+     *
+     * @return número de viajes a la base de datos que costó la inserción
+     */
+    @Transactional
+    public int insertAll(List<RagDocumentChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = jdbcTemplate.queryForList(RESERVE_IDS_SQL, Long.class, chunks.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < chunks.size(); i++) {
+            RagDocumentChunk chunk = chunks.get(i);
+            chunk.setId(ids.get(i));
+            if (chunk.getCreatedAt() == null) {
+                chunk.setCreatedAt(now);
+            }
+        }
+
+        boolean nativeVectors = vectorStore.isOracle();
+        int[][] batches = jdbcTemplate.batchUpdate(nativeVectors ? INSERT_WITH_VECTOR_SQL : INSERT_SQL, chunks,
+                batchSize, (ps, chunk) -> bind(ps, chunk, nativeVectors));
+        return 1 + batches.length;
+    }
+
+    /**
+     * Borra los fragmentos indicados en lotes.
+     *
+     * @return número de viajes a la base de datos
+     */
+    @Transactional
+    public int deleteAll(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.batchUpdate(DELETE_SQL, ids, batchSize, (ps, id) -> ps.setLong(1, id)).length;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    private void bind(PreparedStatement ps, RagDocumentChunk chunk, boolean nativeVectors) throws SQLException {
+        ps.setLong(1, chunk.getId());
+        ps.setString(2, chunk.getFileName());
+        ps.setString(3, chunk.getMimeType());
+        ps.setInt(4, chunk.getChunkIndex());
+        ps.setString(5, chunk.getChunkText());
+        ps.setBytes(6, chunk.getEmbedding());
+        if (chunk.getEmbeddingDims() != null) {
+            ps.setInt(7, chunk.getEmbeddingDims());
+        } else {
+            ps.setNull(7, Types.INTEGER);
+        }
+        ps.setString(8, chunk.getEmbeddingModel());
+        ps.setString(9, chunk.getContentHash());
+        ps.setString(10, chunk.getDocumentHash());
+        ps.setTimestamp(11, Timestamp.valueOf(chunk.getCreatedAt()));
+        setNullableLong(ps, 12, chunk.getProyectoId());
+        setNullableLong(ps, 13, chunk.getSprintId());
+        if (nativeVectors) {
+            ps.setString(14, EmbeddingCodec.toVectorText(EmbeddingCodec.decode(chunk.getEmbedding())));
+        }
+    }
+
+    private static void setNullableLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.NUMERIC);
+        }
+    }
+}
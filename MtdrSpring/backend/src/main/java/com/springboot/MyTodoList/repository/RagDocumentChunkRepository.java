@@ -1,9 +1,81 @@
 package com.springboot.MyTodoList.repository;
 
 import com.springboot.MyTodoList.model.RagDocumentChunk;
+import java.util.Collection;
 import java.util.List;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface RagDocumentChunkRepository extends JpaRepository<RagDocumentChunk, Long> {
     List<RagDocumentChunk> findByFileNameOrderByChunkIndexAsc(String fileName);
+
+    // Un parámetro null se compara con IS NULL, así que el alcance también debe coincidir.
+    boolean existsByFileNameAndDocumentHashAndEmbeddingModelAndProyectoIdAndSprintId(
+            String fileName, String documentHash, String embeddingModel, Long proyectoId, Long sprintId);
+
+    // Versión anterior del archivo dentro del mismo alcance: proyecto o sprint en null solo coincide con NULL.
+    @Query("SELECT c.id FROM RagDocumentChunk c WHERE c.fileName = :fileName "
+            + "AND ((:proyectoId IS NULL AND c.proyectoId IS NULL) OR c.proyectoId = :proyectoId) "
+            + "AND ((:sprintId IS NULL AND c.sprintId IS NULL) OR c.sprintId = :sprintId)")
+    List<Long> findIdsByFileNameAndProyectoIdAndSprintId(
+            @Param("fileName") String fileName,
+            @Param("proyectoId") Long proyectoId,
+            @Param("sprintId") Long sprintId);
+
+    /**
+     * Búsqueda en la base con la columna VECTOR de Oracle 23ai (rag.vector-store=oracle).
+     * Devuelve [id, distancia coseno] de los k más cercanos usando el índice vectorial.
+     * Solo compara filas del mismo modelo y dimensiones que la consulta: VECTOR(*) acepta
+     * cualquier tamaño y VECTOR_DISTANCE falla con dimensiones distintas. Los filtros de
+     * alcance en null no restringen.
+     */
+    @Query(value = "SELECT id, VECTOR_DISTANCE(embedding_vec, TO_VECTOR(:query, *, FLOAT32), COSINE) AS distance "
+            + "FROM rag_document_chunk WHERE embedding_vec IS NOT NULL "
+            + "AND embedding_dims = :dims AND embedding_model = :model "
+            + "AND (:proyectoId IS NULL OR proyecto_id = :proyectoId) "
+            + "AND (:sprintId IS NULL OR sprint_id = :sprintId) "
+            + "AND (:fileName IS NULL OR file_name = :fileName) "
+            + "ORDER BY distance FETCH APPROX FIRST :k ROWS ONLY", nativeQuery = true)
+    List<Object[]> findNearestByVectorDistance(
+            @Param("query") String query,
+            @Param("dims") int dims,
+            @Param("model") String model,
+            @Param("k") int k,
+            @Param("proyectoId") Long proyectoId,
+            @Param("sprintId") Long sprintId,
+            @Param("fileName") String fileName);
+
+    // Solo id y embeddings del alcance, para puntuar las filas sin leer el texto.
+    @Query("SELECT c.id, c.embedding, c.embeddingJson FROM RagDocumentChunk c "
+            + "WHERE (:proyectoId IS NULL OR c.proyectoId = :proyectoId) "
+            + "AND (:sprintId IS NULL OR c.sprintId = :sprintId) "
+            + "AND (:fileName IS NULL OR c.fileName = :fileName)")
+    List<Object[]> findEmbeddingsInScope(
+            @Param("proyectoId") Long proyectoId,
+            @Param("sprintId") Long sprintId,
+            @Param("fileName") String fileName);
+
+    // Página de id y embeddings ordenada por id a partir de afterId, sin leer el texto.
+    @Query("SELECT c.id, c.embedding, c.embeddingJson FROM RagDocumentChunk c WHERE c.id > :afterId ORDER BY c.id")
+    List<Object[]> findEmbeddingsAfterId(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Filas posteriores a la marca de agua de la copia del índice.
+    Page<RagDocumentChunk> findByIdGreaterThan(Long id, Pageable pageable);
+
+    @Query("SELECT c.id FROM RagDocumentChunk c ORDER BY c.id")
+    List<Long> findAllIdsOrderById();
+
+    // Embeddings completos de unos pocos ids, para reordenar candidatos de un índice cuantizado.
+    @Query("SELECT c.id, c.embedding, c.embeddingJson FROM RagDocumentChunk c WHERE c.id IN :ids")
+    List<Object[]> findEmbeddingsByIds(@Param("ids") Collection<Long> ids);
+
+    // Solo hash y embedding: evita leer el texto de los fragmentos que se reutilizan.
+    @Query("SELECT c.contentHash, c.embedding FROM RagDocumentChunk c "
+            + "WHERE c.contentHash IN :hashes AND c.embeddingModel = :model AND c.embedding IS NOT NULL")
+    List<Object[]> findEmbeddingsByContentHash(
+            @Param("hashes") Collection<String> hashes,
+            @Param("model") String model);
 }
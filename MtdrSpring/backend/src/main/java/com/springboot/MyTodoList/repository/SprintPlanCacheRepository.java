@@ -0,0 +1,22 @@
+package com.springboot.MyTodoList.repository;
+
+import com.springboot.MyTodoList.model.SprintPlanCache;
+import java.time.LocalDateTime;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface SprintPlanCacheRepository extends JpaRepository<SprintPlanCache, String> {
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SprintPlanCache c WHERE c.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SprintPlanCache c SET c.hitCount = c.hitCount + 1 WHERE c.cacheKey = :cacheKey")
+    int incrementHits(@Param("cacheKey") String cacheKey);
+}
@@ -0,0 +1,33 @@
+package com.springboot.MyTodoList.service;
+
+import java.util.List;
+
+/**
+ * Backend que calcula los embeddings. {@link EmbeddingService} se encarga de validar,
+ * agrupar en lotes y cachear; el proveedor solo recibe lotes que respetan sus límites.
+ *
+ * Cambiar de proveedor cambia el espacio de los vectores: los documentos se deben volver
+ * a cargar (el modelo forma parte de la llave con la que se reutilizan embeddings).
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * Nombre del modelo; se guarda con cada fragmento.
+     */
+    String getModel();
+
+    int getMaxBatchInputs();
+
+    int getMaxBatchTokens();
+
+    /**
+     * Falla con IllegalStateException si al proveedor le falta configuración.
+     */
+    default void checkConfigured() {
+    }
+
+    /**
+     * Embeddings de los textos recibidos, en el mismo orden.
+     */
+    List<float[]> embed(List<String> inputs);
+}
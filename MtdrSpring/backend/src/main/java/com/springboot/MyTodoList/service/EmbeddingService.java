@@ -1,88 +1,113 @@
 package com.springboot.MyTodoList.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.IOException;
+import com.springboot.MyTodoList.util.ContentHash;
+import com.springboot.MyTodoList.util.TtlLruCache;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 
 @Service
 public class EmbeddingService {
 
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
-    private final String apiKey;
-    private final String embeddingModel;
-    private final String embeddingUrl;
+    private final EmbeddingProvider provider;
+    private final int maxBatchInputs;
+    private final int maxBatchTokens;
+    private final TtlLruCache<String, float[]> queryCache;
 
     public EmbeddingService(
-            RestTemplateBuilder restTemplateBuilder,
-            ObjectMapper objectMapper,
-            @Value("${openai.api.key:}") String apiKey,
-            @Value("${openai.embedding.model:text-embedding-3-small}") String embeddingModel,
-            @Value("${openai.embedding.url:https://api.openai.com/v1/embeddings}") String embeddingUrl) {
-        this.restTemplate = restTemplateBuilder.build();
-        this.objectMapper = objectMapper;
-        this.apiKey = apiKey;
-        this.embeddingModel = embeddingModel;
-        this.embeddingUrl = embeddingUrl;
+            EmbeddingProvider provider,
+            @Value("${openai.embedding.cache.max-entries:1000}") int cacheMaxEntries,
+            @Value("${openai.embedding.cache.ttl-minutes:60}") long cacheTtlMinutes) {
+        this.provider = provider;
+        this.maxBatchInputs = Math.max(1, provider.getMaxBatchInputs());
+        this.maxBatchTokens = Math.max(1, provider.getMaxBatchTokens());
+        this.queryCache = new TtlLruCache<>(cacheMaxEntries, cacheTtlMinutes * 60_000L);
+    }
+
+    public String getModel() {
+        return provider.getModel();
+    }
+
+    public int getMaxBatchInputs() {
+        return maxBatchInputs;
     }
 
     public float[] embedText(String text) {
-        if (!StringUtils.hasText(apiKey)) {
-            throw new IllegalStateException("La llave de OpenAI (openai.api.key) no está configurada.");
-        }
         if (!StringUtils.hasText(text)) {
             throw new IllegalArgumentException("El texto para generar embeddings no puede estar vacío.");
         }
+        return embedBatch(List.of(text)).get(0);
+    }
 
-        try {
-            Map<String, Object> payload = Map.of(
-                    "model", embeddingModel,
-                    "input", text);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(apiKey);
+    /**
+     * Embedding para consultas (chat, planeación, vista previa de contexto). Las preguntas
+     * repetidas se responden desde una caché LRU con expiración en lugar de llamar al servicio.
+     * El arreglo devuelto es compartido: no se debe modificar.
+     */
+    public float[] embedQuery(String text) {
+        if (!StringUtils.hasText(text)) {
+            throw new IllegalArgumentException("El texto para generar embeddings no puede estar vacío.");
+        }
+        return queryCache.computeIfAbsent(cacheKey(text), key -> embedText(text));
+    }
 
-            ResponseEntity<String> response = restTemplate.postForEntity(
-                    embeddingUrl, new HttpEntity<>(payload, headers), String.class);
+    public Map<String, Object> getQueryCacheStats() {
+        return queryCache.stats();
+    }
 
-            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
-                throw new IllegalStateException("No se pudo obtener una respuesta del servicio de embeddings.");
+    /**
+     * Genera los embeddings de varios textos agrupándolos en el menor número de peticiones
+     * posible, respetando el máximo de entradas y de tokens por petición. El resultado
+     * conserva el orden de la lista recibida.
+     */
+    public List<float[]> embedBatch(List<String> texts) {
+        provider.checkConfigured();
+        if (texts == null || texts.isEmpty()) {
+            return new ArrayList<>();
+        }
+        for (String text : texts) {
+            if (!StringUtils.hasText(text)) {
+                throw new IllegalArgumentException("El texto para generar embeddings no puede estar vacío.");
             }
+        }
 
-            return parseEmbedding(response.getBody());
-        } catch (RestClientException e) {
-            throw new IllegalStateException("Error al invocar el servicio de embeddings.", e);
-        } catch (IOException e) {
-            throw new IllegalStateException("Error al procesar la respuesta del servicio de embeddings.", e);
+        float[][] results = new float[texts.size()][];
+        int batchStart = 0;
+        int batchTokens = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            int tokens = estimateTokens(texts.get(i));
+            boolean full = i - batchStart >= maxBatchInputs || batchTokens + tokens > maxBatchTokens;
+            if (full && i > batchStart) {
+                embedRange(texts, batchStart, i, results);
+                batchStart = i;
+                batchTokens = 0;
+            }
+            batchTokens += tokens;
         }
+        embedRange(texts, batchStart, texts.size(), results);
+        return Arrays.asList(results);
     }
 
-    private float[] parseEmbedding(String rawResponse) throws IOException {
-        JsonNode root = objectMapper.readTree(rawResponse);
-        JsonNode data = root.path("data");
-        if (!data.isArray() || data.isEmpty()) {
-            throw new IllegalStateException("La respuesta de embeddings no contiene datos.");
-        }
-        JsonNode embeddingNode = data.get(0).path("embedding");
-        if (!embeddingNode.isArray()) {
-            throw new IllegalStateException("El vector de embeddings llegó vacío.");
+    private void embedRange(List<String> texts, int from, int to, float[][] results) {
+        List<float[]> embeddings = provider.embed(texts.subList(from, to));
+        for (int i = 0; i < embeddings.size(); i++) {
+            results[from + i] = embeddings.get(i);
         }
-        float[] result = new float[embeddingNode.size()];
-        for (int i = 0; i < embeddingNode.size(); i++) {
-            result[i] = (float) embeddingNode.get(i).asDouble();
-        }
-        return result;
+    }
+
+    // La llave combina el modelo con un hash del texto normalizado (espacios y mayúsculas).
+    private String cacheKey(String text) {
+        String normalized = text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return provider.getModel() + ":" + ContentHash.sha256Hex(normalized);
+    }
+
+    // Aproximación conservadora (~3 caracteres por token) para no rebasar el límite por petición.
+    private static int estimateTokens(String text) {
+        return text.length() / 3 + 1;
     }
 }
@@ -0,0 +1,67 @@
+package com.springboot.MyTodoList.service;
+
+import com.springboot.MyTodoList.util.HashingEmbedder;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Embeddings calculados en la CPU con {@link HashingEmbedder}, solo para desarrollo y
+ * pruebas (embedding.provider=hashing-dev): no hay llamadas de red, así que funciona sin
+ * conexión y sin API key.
+ *
+ * No es un modelo semántico. Compara palabras y n-gramas de caracteres, igual que el
+ * índice BM25, así que no acerca sinónimos ni paráfrasis; con este backend la búsqueda
+ * vectorial no aporta sobre la léxica. No se debe usar en producción.
+ *
+ * Cada lote se reparte entre los hilos de un ForkJoinPool propio para no competir con el
+ * pool común que usan otros streams paralelos de la aplicación.
+ */
+public class HashingEmbeddingProvider implements EmbeddingProvider {
+
+    private static final int MAX_BATCH_INPUTS = 256;
+
+    private final HashingEmbedder embedder;
+    private final ForkJoinPool pool;
+
+    public HashingEmbeddingProvider(int dims, int threads) {
+        this.embedder = new HashingEmbedder(dims);
+        this.pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public String getModel() {
+        return "dev-hashing-" + embedder.getDims();
+    }
+
+    @Override
+    public int getMaxBatchInputs() {
+        return MAX_BATCH_INPUTS;
+    }
+
+    @Override
+    public int getMaxBatchTokens() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public List<float[]> embed(List<String> inputs) {
+        if (inputs.size() == 1) {
+            return List.of(embedder.embed(inputs.get(0)));
+        }
+        try {
+            return pool.submit(() -> inputs.parallelStream().map(embedder::embed).collect(Collectors.toList())).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Se interrumpió el cálculo de embeddings.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error al calcular los embeddings locales.", e.getCause());
+        }
+    }
+
+    // Spring la invoca al cerrar el contexto (método shutdown inferido en el @Bean).
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,257 @@
+package com.springboot.MyTodoList.service;
+
+import com.springboot.MyTodoList.util.CircuitBreaker;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Protege las llamadas a OpenAI (embeddings, chat y planeación) para que un proveedor
+ * lento o saturado no acabe con los hilos de Tomcat.
+ *
+ * - Bulkhead: como máximo max-concurrent llamadas a la vez; las demás esperan
+ *   bulkhead-wait-ms y, si no hay lugar, fallan de inmediato. Mientras espera el backoff
+ *   entre intentos, una llamada no ocupa lugar.
+ * - Reintentos ante 429, 5xx y errores de E/S (timeouts, conexión rechazada), con
+ *   backoff exponencial con jitter completo. Si la respuesta trae Retry-After (o
+ *   retry-after-ms) se espera eso; si pide esperar más de max-retry-after-ms se
+ *   falla sin reintentar. Es la única capa que reintenta: el cliente HTTP de
+ *   LlmHttpClientConfig tiene los reintentos automáticos apagados.
+ * - Circuit breaker por operación: tras varios fallos seguidos las llamadas fallan de
+ *   inmediato durante open-seconds, y luego se deja pasar una de prueba.
+ *
+ * Cuando la llamada no se puede completar se lanza {@link LlmUnavailableException}
+ * para que cada servicio responda en modo degradado. Los demás errores (400, 401...)
+ * se propagan tal cual y no cuentan como fallo del proveedor.
+ */
+@Service
+public class LlmCallGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmCallGuard.class);
+
+    private final boolean enabled;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long maxRetryAfterMillis;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final long bulkheadWaitMillis;
+    private final int maxConcurrent;
+    private final Semaphore bulkhead;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong unavailable = new AtomicLong();
+    private final AtomicLong bulkheadRejected = new AtomicLong();
+
+    public LlmCallGuard(
+            @Value("${llm.resilience.enabled:true}") boolean enabled,
+            @Value("${llm.resilience.max-attempts:3}") int maxAttempts,
+            @Value("${llm.resilience.base-backoff-ms:500}") long baseBackoffMillis,
+            @Value("${llm.resilience.max-backoff-ms:8000}") long maxBackoffMillis,
+            @Value("${llm.resilience.max-retry-after-ms:20000}") long maxRetryAfterMillis,
+            @Value("${llm.resilience.breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${llm.resilience.breaker.open-seconds:30}") long openSeconds,
+            @Value("${llm.resilience.bulkhead.max-concurrent:20}") int maxConcurrent,
+            @Value("${llm.resilience.bulkhead.wait-ms:500}") long bulkheadWaitMillis) {
+        this.enabled = enabled;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseBackoffMillis = Math.max(1, baseBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.baseBackoffMillis, maxBackoffMillis);
+        this.maxRetryAfterMillis = Math.max(0, maxRetryAfterMillis);
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openSeconds * 1000L;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.bulkhead = new Semaphore(this.maxConcurrent, true);
+        this.bulkheadWaitMillis = Math.max(0, bulkheadWaitMillis);
+    }
+
+    public <T> T call(String operation, Supplier<T> call) {
+        return call(operation, call, () -> true);
+    }
+
+    /**
+     * Ejecuta la llamada con bulkhead, circuit breaker y reintentos.
+     *
+     * @param retryAllowed se consulta antes de cada reintento; en streaming devuelve false
+     *                     si ya se entregó parte de la respuesta, para no repetirla
+     * @throws LlmUnavailableException si no hay lugar, el circuito está abierto o se
+     *                                 agotaron los reintentos
+     */
+    public <T> T call(String operation, Supplier<T> call, BooleanSupplier retryAllowed) {
+        if (!enabled) {
+            return call.get();
+        }
+        calls.incrementAndGet();
+        CircuitBreaker breaker = breakerFor(operation);
+        for (int attempt = 1; ; attempt++) {
+            long delay;
+            // El lugar del bulkhead se toma por intento y se suelta antes de esperar el
+            // backoff, para que un reintento dormido no bloquee a otras llamadas.
+            acquireBulkhead(operation);
+            try {
+                if (!breaker.tryAcquire()) {
+                    throw unavailable("el servicio de " + operation + " falló varias veces seguidas; se reintentará en "
+                            + Math.max(1, breaker.remainingOpenMillis() / 1000) + " s", null);
+                }
+                try {
+                    T result = call.get();
+                    breaker.onSuccess();
+                    return result;
+                } catch (RuntimeException e) {
+                    if (!isTransient(e)) {
+                        // El proveedor respondió: el error es de la petición, no de disponibilidad.
+                        breaker.onSuccess();
+                        throw e;
+                    }
+                    breaker.onFailure();
+                    if (attempt >= maxAttempts || !retryAllowed.getAsBoolean()) {
+                        throw unavailable("el servicio de " + operation + " no respondió después de "
+                                + attempt + " intento(s)", e);
+                    }
+                    delay = retryDelay(e, attempt);
+                    if (delay > maxRetryAfterMillis) {
+                        throw unavailable("el servicio de " + operation + " pidió esperar "
+                                + Math.max(1, delay / 1000) + " s", e);
+                    }
+                    logger.warn("Llamada a {} falló ({}); reintento {} en {} ms",
+                            operation, e.getMessage(), attempt, delay);
+                    retries.incrementAndGet();
+                }
+            } finally {
+                bulkhead.release();
+            }
+            sleep(delay, operation);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("calls", calls.get());
+        stats.put("retries", retries.get());
+        stats.put("unavailable", unavailable.get());
+        stats.put("inFlight", maxConcurrent - bulkhead.availablePermits());
+        stats.put("bulkheadRejected", bulkheadRejected.get());
+        Map<String, Object> breakerStats = new LinkedHashMap<>();
+        breakers.forEach((operation, breaker) -> breakerStats.put(operation, breaker.stats()));
+        stats.put("breakers", breakerStats);
+        return stats;
+    }
+
+    private void acquireBulkhead(String operation) {
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw unavailable("se interrumpió la espera para llamar a " + operation, e);
+        }
+        if (!acquired) {
+            bulkheadRejected.incrementAndGet();
+            throw unavailable("hay demasiadas llamadas al modelo en curso", null);
+        }
+    }
+
+    private CircuitBreaker breakerFor(String operation) {
+        return breakers.computeIfAbsent(operation, key -> new CircuitBreaker(failureThreshold, openMillis));
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        if (e instanceof ResourceAccessException) {
+            return true;
+        }
+        if (e instanceof RestClientResponseException) {
+            int status = ((RestClientResponseException) e).getStatusCode().value();
+            return status == 429 || status >= 500;
+        }
+        return false;
+    }
+
+    // Retry-After manda sobre el backoff propio; sin él, jitter completo sobre base * 2^(intento-1).
+    private long retryDelay(RuntimeException e, int attempt) {
+        Long retryAfter = e instanceof RestClientResponseException
+                ? parseRetryAfter(((RestClientResponseException) e).getResponseHeaders())
+                : null;
+        if (retryAfter != null) {
+            return retryAfter;
+        }
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Lee retry-after-ms (OpenAI) o Retry-After en segundos o como fecha HTTP. Devuelve null
+     * si no viene o no se entiende.
+     */
+    private static Long parseRetryAfter(HttpHeaders headers) {
+        if (headers == null) {
+            return null;
+        }
+        String millis = headers.getFirst("retry-after-ms");
+        if (millis != null) {
+            try {
+                return Math.max(0, (long) Double.parseDouble(millis.trim()));
+            } catch (NumberFormatException ignored) {
+                // Se intenta con Retry-After.
+            }
+        }
+        String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Math.max(0, (long) (Double.parseDouble(value.trim()) * 1000));
+        } catch (NumberFormatException notSeconds) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+            } catch (DateTimeParseException notDate) {
+                return null;
+            }
+        }
+    }
+
+    private void sleep(long delay, String operation) {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw unavailable("se interrumpió el reintento de " + operation, e);
+        }
+    }
+
+    private LlmUnavailableException unavailable(String reason, Throwable cause) {
+        unavailable.incrementAndGet();
+        return new LlmUnavailableException("El modelo de lenguaje no está disponible: " + reason + ".", cause);
+    }
+
+    /**
+     * El proveedor no está disponible (saturado, caído o con el circuito abierto). Hereda de
+     * IllegalStateException para que los controladores que ya la manejan sigan funcionando.
+     */
+    public static class LlmUnavailableException extends IllegalStateException {
+
+        public LlmUnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.springboot.MyTodoList.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Embeddings con el endpoint /v1/embeddings de OpenAI, protegido por {@link LlmCallGuard}.
+ */
+public class OpenAiEmbeddingProvider implements EmbeddingProvider {
+
+    // Códigos de error de OpenAI que indican que la petición pasó el límite de tokens.
+    private static final Set<String> BATCH_TOO_LARGE_CODES = Set.of("context_length_exceeded", "max_tokens_per_request");
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final LlmCallGuard callGuard;
+    private final String apiKey;
+    private final String embeddingModel;
+    private final String embeddingUrl;
+    private final int maxBatchInputs;
+    private final int maxBatchTokens;
+
+    public OpenAiEmbeddingProvider(
+            RestTemplate restTemplate,
+            ObjectMapper objectMapper,
+            LlmCallGuard callGuard,
+            String apiKey,
+            String embeddingModel,
+            String embeddingUrl,
+            int maxBatchInputs,
+            int maxBatchTokens) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.callGuard = callGuard;
+        this.apiKey = apiKey;
+        this.embeddingModel = embeddingModel;
+        this.embeddingUrl = embeddingUrl;
+        this.maxBatchInputs = Math.max(1, maxBatchInputs);
+        this.maxBatchTokens = Math.max(1, maxBatchTokens);
+    }
+
+    @Override
+    public String getModel() {
+        return embeddingModel;
+    }
+
+    @Override
+    public int getMaxBatchInputs() {
+        return maxBatchInputs;
+    }
+
+    @Override
+    public int getMaxBatchTokens() {
+        return maxBatchTokens;
+    }
+
+    @Override
+    public void checkConfigured() {
+        if (!StringUtils.hasText(apiKey)) {
+            throw new IllegalStateException("La llave de OpenAI (openai.api.key) no está configurada.");
+        }
+    }
+
+    @Override
+    public List<float[]> embed(List<String> inputs) {
+        float[][] results = new float[inputs.size()][];
+        embedRange(inputs, 0, inputs.size(), results);
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Envía texts[from, to) en una sola petición. Si el servicio rechaza la petición por
+     * tamaño (413, o 400 con un código de límite de tokens), el lote se divide a la mitad y
+     * se reintenta. Cualquier otro 4xx se propaga sin reintentar.
+     */
+    private void embedRange(List<String> texts, int from, int to, float[][] results) {
+        try {
+            List<float[]> embeddings = requestEmbeddings(texts.subList(from, to));
+            for (int i = 0; i < embeddings.size(); i++) {
+                results[from + i] = embeddings.get(i);
+            }
+        } catch (HttpClientErrorException e) {
+            if (!isBatchTooLarge(e) || to - from <= 1) {
+                throw new IllegalStateException("Error al invocar el servicio de embeddings.", e);
+            }
+            int middle = from + (to - from) / 2;
+            embedRange(texts, from, middle, results);
+            embedRange(texts, middle, to, results);
+        }
+    }
+
+    private boolean isBatchTooLarge(HttpClientErrorException e) {
+        int status = e.getStatusCode().value();
+        if (status == HttpStatus.PAYLOAD_TOO_LARGE.value()) {
+            return true;
+        }
+        if (status != HttpStatus.BAD_REQUEST.value()) {
+            return false;
+        }
+        try {
+            String code = objectMapper.readTree(e.getResponseBodyAsString()).path("error").path("code").asText("");
+            return BATCH_TOO_LARGE_CODES.contains(code);
+        } catch (IOException notJson) {
+            return false;
+        }
+    }
+
+    private List<float[]> requestEmbeddings(List<String> inputs) {
+        try {
+            Map<String, Object> payload = Map.of(
+                    "model", embeddingModel,
+                    "input", inputs);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setBearerAuth(apiKey);
+
+            ResponseEntity<String> response = callGuard.call("embeddings", () -> restTemplate.postForEntity(
+                    embeddingUrl, new HttpEntity<>(payload, headers), String.class));
+
+            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+                throw new IllegalStateException("No se pudo obtener una respuesta del servicio de embeddings.");
+            }
+
+            return parseEmbeddings(response.getBody(), inputs.size());
+        } catch (HttpClientErrorException e) {
+            throw e;
+        } catch (RestClientException e) {
+            throw new IllegalStateException("Error al invocar el servicio de embeddings.", e);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error al procesar la respuesta del servicio de embeddings.", e);
+        }
+    }
+
+    // Cada elemento de "data" trae su "index"; no se asume que la respuesta venga ordenada.
+    private List<float[]> parseEmbeddings(String rawResponse, int expected) throws IOException {
+        JsonNode root = objectMapper.readTree(rawResponse);
+        JsonNode data = root.path("data");
+        if (!data.isArray() || data.size() != expected) {
+            throw new IllegalStateException("La respuesta de embeddings no contiene datos para todas las entradas.");
+        }
+        float[][] ordered = new float[expected][];
+        for (int position = 0; position < data.size(); position++) {
+            JsonNode item = data.get(position);
+            int index = item.path("index").asInt(position);
+            JsonNode embeddingNode = item.path("embedding");
+            if (index < 0 || index >= expected || !embeddingNode.isArray()) {
+                throw new IllegalStateException("El vector de embeddings llegó vacío.");
+            }
+            float[] result = new float[embeddingNode.size()];
+            for (int i = 0; i < embeddingNode.size(); i++) {
+                result[i] = (float) embeddingNode.get(i).asDouble();
+            }
+            ordered[index] = result;
+        }
+        for (float[] embedding : ordered) {
+            if (embedding == null) {
+                throw new IllegalStateException("La respuesta de embeddings tiene índices repetidos.");
+            }
+        }
+        return Arrays.asList(ordered);
+    }
+}
@@ -0,0 +1,53 @@
+package com.springboot.MyTodoList.service;
+
+import com.springboot.MyTodoList.util.SemanticAnswerCache;
+import java.util.Collection;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Respuestas del chat RAG ya generadas, para no volver a llamar al modelo cuando llega una
+ * pregunta casi igual que recupera los mismos fragmentos.
+ *
+ * RagService descarta las entradas de los fragmentos que borra al reemplazar un archivo.
+ */
+@Service
+public class RagAnswerCache {
+
+    private final boolean enabled;
+    private final SemanticAnswerCache cache;
+
+    public RagAnswerCache(
+            @Value("${rag.chat.cache.enabled:true}") boolean enabled,
+            @Value("${rag.chat.cache.max-entries:500}") int maxEntries,
+            @Value("${rag.chat.cache.ttl-minutes:720}") long ttlMinutes,
+            @Value("${rag.chat.cache.similarity-threshold:0.95}") float similarityThreshold) {
+        this.enabled = enabled;
+        this.cache = new SemanticAnswerCache(maxEntries, ttlMinutes * 60_000L, similarityThreshold);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String find(RagScope scope, Collection<Long> chunkIds, float[] questionEmbedding) {
+        return enabled ? cache.find(scope.toString(), chunkIds, questionEmbedding) : null;
+    }
+
+    public void put(RagScope scope, Collection<Long> chunkIds, float[] questionEmbedding, String answer) {
+        if (enabled) {
+            cache.put(scope.toString(), chunkIds, questionEmbedding, answer);
+        }
+    }
+
+    public void invalidateChunks(Collection<Long> chunkIds) {
+        if (enabled && !chunkIds.isEmpty()) {
+            cache.invalidateChunks(chunkIds);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        return cache.stats();
+    }
+}
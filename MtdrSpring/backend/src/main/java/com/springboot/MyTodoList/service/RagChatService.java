@@ -1,14 +1,32 @@
 package com.springboot.MyTodoList.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import org.apache.hc.core5.http.io.EofSensorInputStream;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -19,29 +37,55 @@ import org.springframework.web.client.RestTemplate;
 @Service
 public class RagChatService {
 
+    private static final String SYSTEM_PROMPT =
+            "Eres un asistente de proyectos. Usa el contexto si está presente. Responde en español en 5-8 líneas máximo.";
+
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
     private final RagService ragService;
+    private final RagAnswerCache answerCache;
+    private final LlmCallGuard callGuard;
     private final String apiKey;
     private final String apiUrl;
     private final String model;
+    private final ThreadPoolExecutor streamExecutor;
 
     public RagChatService(
-            RestTemplateBuilder restTemplateBuilder,
+            @Qualifier("llmRestTemplate") RestTemplate restTemplate,
             ObjectMapper objectMapper,
             RagService ragService,
+            RagAnswerCache answerCache,
+            LlmCallGuard callGuard,
             @Value("${openai.api.key:}") String apiKey,
             @Value("${openai.api.url:https://api.openai.com/v1/chat/completions}") String apiUrl,
-            @Value("${openai.model:gpt-4o-mini}") String model) {
-        this.restTemplate = restTemplateBuilder.build();
+            @Value("${openai.model:gpt-4o-mini}") String model,
+            @Value("${rag.chat.stream.max-concurrent:16}") int maxConcurrentStreams,
+            @Value("${rag.chat.stream.queue-capacity:32}") int streamQueueCapacity) {
+        this.restTemplate = restTemplate;
         this.objectMapper = objectMapper;
         this.ragService = ragService;
+        this.answerCache = answerCache;
+        this.callGuard = callGuard;
         this.apiKey = apiKey;
         this.apiUrl = apiUrl;
         this.model = model;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.streamExecutor = new ThreadPoolExecutor(
+                maxConcurrentStreams, maxConcurrentStreams, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(streamQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "rag-chat-stream-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        streamExecutor.allowCoreThreadTimeOut(true);
     }
 
     public String chatWithContext(String question) {
+        return chatWithContext(question, RagScope.ALL);
+    }
+
+    public String chatWithContext(String question, RagScope scope) {
         if (!StringUtils.hasText(apiKey)) {
             return "⚠️ No hay API key configurada para el chat.";
         }
@@ -49,31 +93,33 @@ public class RagChatService {
             return "Envía una pregunta para consultar el conocimiento cargado.";
         }
 
+        RagService.RetrievedContext context = null;
         try {
-            String context = ragService.buildContextForPrompt(question, 4);
-            Map<String, Object> payload = Map.of(
-                    "model", model,
-                    "temperature", 0.3,
-                    "messages", List.of(
-                            Map.of("role", "system",
-                                    "content", "Eres un asistente de proyectos. Usa el contexto si está presente. Responde en español en 5-8 líneas máximo."),
-                            Map.of("role", "user",
-                                    "content", buildPrompt(context, question))
-                    )
-            );
+            context = ragService.retrieveContext(question, 4, scope);
+            float[] questionEmbedding = embeddingForCache(context);
+            String cached = findCachedAnswer(scope, context, questionEmbedding);
+            if (cached != null) {
+                return cached;
+            }
+            Map<String, Object> payload = buildPayload(context.getText(), question, false);
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
             headers.setBearerAuth(apiKey);
 
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
-            ResponseEntity<String> response = restTemplate.postForEntity(apiUrl, entity, String.class);
+            ResponseEntity<String> response = callGuard.call("chat",
+                    () -> restTemplate.postForEntity(apiUrl, entity, String.class));
 
             if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
                 return "⚠️ No se pudo obtener respuesta del modelo.";
             }
 
-            return extractAnswer(response.getBody());
+            String answer = extractAnswer(response.getBody());
+            cacheAnswer(scope, context, questionEmbedding, answer);
+            return answer;
+        } catch (LlmCallGuard.LlmUnavailableException e) {
+            return degradedAnswer(e, context);
         } catch (RestClientException e) {
             return "⚠️ Error al llamar al modelo: " + e.getMessage();
         } catch (IOException e) {
@@ -81,6 +127,244 @@ public class RagChatService {
         }
     }
 
+    /**
+     * Igual que {@link #chatWithContext(String, RagScope)} pero pide la respuesta con
+     * stream=true y entrega cada fragmento de texto a onDelta en cuanto llega del modelo.
+     *
+     * Corre en un hilo propio del servicio; el futuro se completa con la respuesta entera.
+     * Los avisos (sin API key, error del modelo) también llegan como fragmentos, igual que
+     * en la versión sin streaming llegan como respuesta. Si onDelta lanza una excepción
+     * (por ejemplo, el cliente cerró la conexión) se corta la lectura y el futuro falla.
+     * La petición solo se reintenta mientras no haya llegado ningún fragmento.
+     *
+     * Cancelar el futuro corta la respuesta del modelo: se cierra la conexión en curso, no
+     * se entregan más fragmentos y el corte no cuenta como falla del proveedor.
+     *
+     * @throws IllegalStateException si ya hay demasiadas respuestas en curso
+     */
+    public CompletableFuture<String> streamChatWithContext(String question, RagScope scope, Consumer<String> onDelta) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        AtomicReference<InputStream> openBody = new AtomicReference<>();
+        Consumer<String> delivery = delta -> {
+            if (result.isCancelled()) {
+                throw new CancellationException("La respuesta se canceló.");
+            }
+            onDelta.accept(delta);
+        };
+        try {
+            streamExecutor.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    result.complete(streamAnswer(question, scope, delivery, openBody, result::isCancelled));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Hay demasiadas consultas al chat en curso, intenta más tarde.");
+        }
+        result.whenComplete((answer, error) -> {
+            if (result.isCancelled()) {
+                abort(openBody.get());
+            }
+        });
+        return result;
+    }
+
+    private String streamAnswer(String question, RagScope scope, Consumer<String> onDelta,
+            AtomicReference<InputStream> openBody, BooleanSupplier cancelled) {
+        if (!StringUtils.hasText(apiKey)) {
+            return emit(onDelta, new StringBuilder(), "⚠️ No hay API key configurada para el chat.");
+        }
+        if (!StringUtils.hasText(question)) {
+            return emit(onDelta, new StringBuilder(), "Envía una pregunta para consultar el conocimiento cargado.");
+        }
+        StringBuilder answer = new StringBuilder();
+        RagService.RetrievedContext context = null;
+        try {
+            context = ragService.retrieveContext(question, 4, scope);
+            float[] questionEmbedding = embeddingForCache(context);
+            String cached = findCachedAnswer(scope, context, questionEmbedding);
+            if (cached != null) {
+                return emit(onDelta, answer, cached);
+            }
+            byte[] body = objectMapper.writeValueAsBytes(buildPayload(context.getText(), question, true));
+            callGuard.call("chat", () -> restTemplate.execute(apiUrl, HttpMethod.POST,
+                    request -> {
+                        request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                        request.getHeaders().setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+                        request.getHeaders().setBearerAuth(apiKey);
+                        request.getBody().write(body);
+                    },
+                    response -> {
+                        InputStream stream = response.getBody();
+                        openBody.set(stream);
+                        try {
+                            if (cancelled.getAsBoolean()) {
+                                throw new CancellationException("La respuesta se canceló.");
+                            }
+                            readStream(stream, answer, onDelta);
+                            // Cerrar el cuerpo puede terminar la lectura como fin de stream.
+                            if (cancelled.getAsBoolean()) {
+                                throw new CancellationException("La respuesta se canceló.");
+                            }
+                        } catch (IOException e) {
+                            // La conexión se cerró porque se canceló la respuesta, no porque fallara el modelo.
+                            if (cancelled.getAsBoolean()) {
+                                throw new CancellationException("La respuesta se canceló.");
+                            }
+                            throw e;
+                        } finally {
+                            openBody.set(null);
+                        }
+                        return null;
+                    }), () -> answer.length() == 0 && !cancelled.getAsBoolean());
+            if (answer.length() == 0) {
+                return emit(onDelta, answer, "⚠️ El modelo devolvió un mensaje vacío.");
+            }
+            cacheAnswer(scope, context, questionEmbedding, answer.toString().trim());
+            return answer.toString().trim();
+        } catch (LlmCallGuard.LlmUnavailableException e) {
+            return emit(onDelta, answer, answer.length() > 0 ? "\n⚠️ " + e.getMessage() : degradedAnswer(e, context));
+        } catch (RestClientException e) {
+            return emit(onDelta, answer, (answer.length() > 0 ? "\n" : "") + "⚠️ Error al llamar al modelo: " + e.getMessage());
+        } catch (IOException e) {
+            return emit(onDelta, answer, "⚠️ No se pudo procesar la respuesta del modelo.");
+        }
+    }
+
+    /**
+     * Lee los eventos del stream de chat completions hasta "[DONE]" y pasa el texto de cada
+     * choices[0].delta.content.
+     *
+     * Como manda SSE, un evento termina en una línea en blanco y sus líneas "data:" se unen
+     * con saltos de línea; los comentarios (": keep-alive") y otros campos se ignoran. Un
+     * evento con "error" corta la respuesta con RestClientException.
+     */
+    private void readStream(InputStream body, StringBuilder answer, Consumer<String> onDelta) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        StringBuilder data = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                if (dispatchEvent(data.toString(), answer, onDelta)) {
+                    return;
+                }
+                data.setLength(0);
+            } else if (line.startsWith("data:")) {
+                String value = line.substring(line.startsWith("data: ") ? 6 : 5);
+                if (data.length() > 0) {
+                    data.append('\n');
+                }
+                data.append(value);
+            }
+        }
+        dispatchEvent(data.toString(), answer, onDelta);
+    }
+
+    // Devuelve true cuando el evento es "[DONE]".
+    private boolean dispatchEvent(String data, StringBuilder answer, Consumer<String> onDelta) throws IOException {
+        String payload = data.trim();
+        if (payload.equals("[DONE]")) {
+            return true;
+        }
+        if (payload.isEmpty()) {
+            return false;
+        }
+        JsonNode event;
+        try {
+            event = objectMapper.readTree(payload);
+        } catch (JsonProcessingException e) {
+            // Un evento mal formado no se arregla reintentando: como IOException llegaría al
+            // guard como error de E/S (ResourceAccessException) y se repetiría la petición.
+            throw new RestClientException("el modelo envió un evento que no es JSON válido", e);
+        }
+        JsonNode error = event.path("error");
+        if (!error.isMissingNode() && !error.isNull()) {
+            String message = error.path("message").asText("");
+            throw new RestClientException(message.isEmpty() ? "el modelo devolvió un error" : message);
+        }
+        JsonNode choices = event.path("choices");
+        if (!choices.isArray() || choices.isEmpty()) {
+            return false;
+        }
+        JsonNode content = choices.get(0).path("delta").path("content");
+        if (content.isTextual() && !content.asText().isEmpty()) {
+            emit(onDelta, answer, content.asText());
+        }
+        return false;
+    }
+
+    // Corta la respuesta sin leer lo que falta, lo que desbloquea la lectura que sigue esperando
+    // al modelo. Con Apache HttpClient close() vaciaría el cuerpo hasta el final, así que se
+    // aborta la conexión; con el cliente del JDK (llm.http.version=HTTP_2) y los demás, cerrar
+    // el cuerpo cancela la petición.
+    private static void abort(InputStream body) {
+        if (body == null) {
+            return;
+        }
+        try {
+            if (body instanceof EofSensorInputStream) {
+                ((EofSensorInputStream) body).abort();
+            } else {
+                body.close();
+            }
+        } catch (IOException ignored) {
+            // La conexión ya estaba cerrada.
+        }
+    }
+
+    // Embedding de la pregunta para la caché, el mismo que usó la recuperación. Si la consulta
+    // se resolvió solo con BM25 no hay embedding y se responde sin caché, sin pedir otro.
+    private float[] embeddingForCache(RagService.RetrievedContext context) {
+        return answerCache.isEnabled() ? context.getQueryEmbedding() : null;
+    }
+
+    private String findCachedAnswer(RagScope scope, RagService.RetrievedContext context, float[] questionEmbedding) {
+        return questionEmbedding != null ? answerCache.find(scope, context.getChunkIds(), questionEmbedding) : null;
+    }
+
+    // Los avisos no se guardan: la siguiente pregunta debe volver a intentar con el modelo.
+    private void cacheAnswer(RagScope scope, RagService.RetrievedContext context, float[] questionEmbedding, String answer) {
+        if (questionEmbedding != null && StringUtils.hasText(answer) && !answer.startsWith("⚠️")) {
+            answerCache.put(scope, context.getChunkIds(), questionEmbedding, answer);
+        }
+    }
+
+    // Modo degradado: sin modelo disponible se devuelven al menos los fragmentos recuperados.
+    private static String degradedAnswer(LlmCallGuard.LlmUnavailableException e, RagService.RetrievedContext context) {
+        String warning = "⚠️ " + e.getMessage();
+        if (context == null || !StringUtils.hasText(context.getText())) {
+            return warning;
+        }
+        return warning + " Fragmentos más relevantes para tu pregunta:\n" + context.getText();
+    }
+
+    private static String emit(Consumer<String> onDelta, StringBuilder answer, String text) {
+        answer.append(text);
+        onDelta.accept(text);
+        return answer.toString().trim();
+    }
+
+    private Map<String, Object> buildPayload(String context, String question, boolean stream) {
+        return Map.of(
+                "model", model,
+                "temperature", 0.3,
+                "stream", stream,
+                "messages", List.of(
+                        Map.of("role", "system", "content", SYSTEM_PROMPT),
+                        Map.of("role", "user", "content", buildPrompt(context, question))
+                )
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        streamExecutor.shutdownNow();
+    }
+
     private String buildPrompt(String context, String question) {
         String prefix = StringUtils.hasText(context)
                 ? "Contexto disponible:\n" + context + "\n\n"
@@ -0,0 +1,860 @@
+package com.springboot.MyTodoList.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.MyTodoList.config.RagVectorStore;
+import com.springboot.MyTodoList.model.RagDocumentChunk;
+import com.springboot.MyTodoList.repository.RagDocumentChunkRepository;
+import com.springboot.MyTodoList.util.Bm25Index;
+import com.springboot.MyTodoList.util.EmbeddingCodec;
+import com.springboot.MyTodoList.util.FlatVectorIndex;
+import com.springboot.MyTodoList.util.HnswIndex;
+import com.springboot.MyTodoList.util.IndexSnapshotFile;
+import com.springboot.MyTodoList.util.MappedVectorIndex;
+import com.springboot.MyTodoList.util.ProductQuantizer;
+import com.springboot.MyTodoList.util.QuantizedVectorIndex;
+import com.springboot.MyTodoList.util.ScalarQuantizer;
+import com.springboot.MyTodoList.util.TopK;
+import com.springboot.MyTodoList.util.VectorIndex;
+import com.springboot.MyTodoList.util.VectorIndexEvaluator;
+import com.springboot.MyTodoList.util.VectorQuantizer;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+/**
+ * Mantiene en memoria un índice con los embeddings de rag_document_chunk.
+ *
+ * rag.index.type elige la estructura: "hnsw" (aproximado, por defecto), "flat"
+ * (búsqueda exacta en paralelo sobre una matriz contigua) o "mmap" (búsqueda exacta
+ * sobre archivos de segmento mapeados a memoria en rag.index.mmap.dir, fuera del heap;
+ * los segmentos con filas borradas se compactan en segundo plano y los directorios de
+ * particiones que ya no existen se borran). Con hnsw, las particiones cuyo grafo acumula
+ * más de rag.index.hnsw.compact-ratio de nodos eliminados se reconstruyen en segundo
+ * plano solo con los vectores vigentes.
+ *
+ * Con rag.index.type=flat, rag.index.quantization=int8|pq guarda los vectores comprimidos
+ * (4x con int8, dims*4/subespacios con PQ) y reordena los mejores candidatos con los
+ * embeddings completos de la tabla. {@link #evaluateQuantization} compara el recall de
+ * cada opción contra la búsqueda exacta en un hilo propio, una evaluación a la vez y con
+ * a lo más rag.index.evaluate.max-vectors vectores.
+ *
+ * Junto al índice vectorial se mantiene un índice BM25 con el texto de los fragmentos
+ * (rag.index.lexical.enabled) para la búsqueda híbrida de RagService. Con
+ * rag.vector-store=oracle solo se construye el índice BM25.
+ *
+ * Los índices están partidos por (proyecto, sprint): una consulta con alcance solo
+ * recorre las particiones que le corresponden, así que su costo depende del tamaño
+ * del proyecto y no de todo lo cargado.
+ *
+ * Los índices se construyen en segundo plano al arrancar la aplicación y se actualizan
+ * de forma incremental con cada fragmento nuevo. Mientras no están listos, RagService
+ * sigue usando el recorrido completo de la tabla.
+ *
+ * Con rag.index.snapshot.enabled (apagado por defecto) se guarda periódicamente en
+ * rag.index.snapshot.file una copia de los fragmentos indexados con su marca de agua (id
+ * más alto). Al arrancar se carga esa copia y de la tabla solo se leen los ids vigentes y
+ * las filas que faltan, en lugar de leer y decodificar todo. La copia incluye el texto de
+ * los documentos, así que por defecto va en un directorio de la aplicación bajo el home
+ * del usuario y no en el temporal compartido.
+ */
+@Service
+public class RagIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RagIndexService.class);
+
+    private final RagDocumentChunkRepository repository;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final RagVectorStore vectorStore;
+    private final boolean lexicalEnabled;
+    private final String type;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final int loadPageSize;
+    private final double hnswCompactRatio;
+    private final Path mmapDirectory;
+    private final int mmapSegmentRows;
+    private final boolean snapshotEnabled;
+    private final Path snapshotFile;
+    private final ScheduledExecutorService maintenance;
+    private final long mergeIntervalSeconds;
+    private final long hnswCompactIntervalSeconds;
+    private final long snapshotIntervalSeconds;
+    private final Object snapshotLock = new Object();
+    private final String quantization;
+    private final int quantizationTrainingSize;
+    private final int pqSubspaces;
+    private final int rerankFactor;
+    private final int evaluateMaxVectors;
+    private final ThreadPoolExecutor evaluator;
+
+    private volatile Partitions partitions = new Partitions();
+    private volatile boolean ready;
+    private volatile boolean lexicalReady;
+    // Ids guardados en la última copia; null si todavía no se lee ni se escribe ninguna.
+    private Set<Long> snapshotIds;
+
+    public RagIndexService(
+            RagDocumentChunkRepository repository,
+            ObjectMapper objectMapper,
+            @Value("${rag.index.enabled:true}") boolean enabled,
+            RagVectorStore vectorStore,
+            @Value("${rag.index.lexical.enabled:true}") boolean lexicalEnabled,
+            @Value("${rag.index.type:hnsw}") String type,
+            @Value("${rag.index.m:16}") int m,
+            @Value("${rag.index.ef-construction:100}") int efConstruction,
+            @Value("${rag.index.ef-search:64}") int efSearch,
+            @Value("${rag.index.load-page-size:500}") int loadPageSize,
+            @Value("${rag.index.hnsw.compact-ratio:0.2}") double hnswCompactRatio,
+            @Value("${rag.index.hnsw.compact-interval-seconds:60}") long hnswCompactIntervalSeconds,
+            @Value("${rag.index.mmap.dir:${java.io.tmpdir}/rag-index}") String mmapDirectory,
+            @Value("${rag.index.mmap.segment-rows:16384}") int mmapSegmentRows,
+            @Value("${rag.index.mmap.merge-interval-seconds:60}") long mergeIntervalSeconds,
+            @Value("${rag.index.quantization:none}") String quantization,
+            @Value("${rag.index.quantization.training-size:2000}") int quantizationTrainingSize,
+            @Value("${rag.index.quantization.pq-subspaces:0}") int pqSubspaces,
+            @Value("${rag.index.quantization.rerank-factor:4}") int rerankFactor,
+            @Value("${rag.index.evaluate.max-vectors:20000}") int evaluateMaxVectors,
+            @Value("${rag.index.snapshot.enabled:false}") boolean snapshotEnabled,
+            @Value("${rag.index.snapshot.file:${user.home}/.mytodolist/rag-index-snapshot.bin}") String snapshotFile,
+            @Value("${rag.index.snapshot.interval-seconds:300}") long snapshotIntervalSeconds) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.vectorStore = vectorStore;
+        this.lexicalEnabled = lexicalEnabled;
+        this.type = type.trim().toLowerCase();
+        if (!this.type.equals("hnsw") && !this.type.equals("flat") && !this.type.equals("mmap")) {
+            throw new IllegalArgumentException("rag.index.type debe ser hnsw, flat o mmap: " + type);
+        }
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.loadPageSize = loadPageSize;
+        this.hnswCompactRatio = hnswCompactRatio;
+        this.quantization = quantization.trim().toLowerCase();
+        if (!this.quantization.equals("none") && !this.quantization.equals("int8") && !this.quantization.equals("pq")) {
+            throw new IllegalArgumentException("rag.index.quantization debe ser none, int8 o pq: " + quantization);
+        }
+        if (!this.quantization.equals("none") && !this.type.equals("flat")) {
+            throw new IllegalArgumentException("rag.index.quantization solo aplica con rag.index.type=flat");
+        }
+        this.quantizationTrainingSize = quantizationTrainingSize;
+        this.pqSubspaces = pqSubspaces;
+        this.rerankFactor = rerankFactor;
+        this.evaluateMaxVectors = evaluateMaxVectors;
+        // Sin cola: si ya hay una evaluación corriendo la siguiente se rechaza.
+        this.evaluator = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "rag-index-evaluate");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.mmapDirectory = Paths.get(mmapDirectory);
+        this.mmapSegmentRows = mmapSegmentRows;
+        this.snapshotEnabled = snapshotEnabled && enabled;
+        this.snapshotFile = Paths.get(snapshotFile);
+        this.mergeIntervalSeconds = mergeIntervalSeconds;
+        this.hnswCompactIntervalSeconds = hnswCompactIntervalSeconds;
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+        // Las tareas se programan en buildOnStartup: rag.vector-store=oracle puede regresar a
+        // memoria al arrancar y de eso depende cuáles hacen falta.
+        if (enabled) {
+            this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "rag-index-maintenance");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.maintenance = null;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (!enabled) {
+            logger.info("Índice vectorial RAG deshabilitado (rag.index.enabled=false)");
+            return;
+        }
+        if (vectorStore.isOracle()) {
+            logger.info("Índice vectorial RAG en memoria omitido: la búsqueda corre en Oracle (rag.vector-store=oracle)");
+            if (!lexicalEnabled) {
+                return;
+            }
+        }
+        scheduleMaintenance();
+        Thread builder = new Thread(this::rebuild, "rag-index-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    // Se llama cuando el modo de rag.vector-store ya es definitivo.
+    private void scheduleMaintenance() {
+        if (usesSegmentFiles()) {
+            maintenance.scheduleWithFixedDelay(
+                    this::mergeSegments, mergeIntervalSeconds, mergeIntervalSeconds, TimeUnit.SECONDS);
+        }
+        if (usesGraph()) {
+            maintenance.scheduleWithFixedDelay(
+                    this::compactGraphs, hnswCompactIntervalSeconds, hnswCompactIntervalSeconds, TimeUnit.SECONDS);
+        }
+        if (usesSnapshot()) {
+            maintenance.scheduleWithFixedDelay(
+                    this::writeSnapshot, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Reconstruye los índices desde la copia en disco si existe, o leyendo la tabla por
+     * páginas. Los fragmentos que se agreguen durante la carga entran directamente a los
+     * índices nuevos.
+     */
+    public synchronized void rebuild() {
+        ready = false;
+        lexicalReady = false;
+        // Los segmentos en disco se vuelven a abrir, así que primero se cierran los actuales.
+        Partitions previous = partitions;
+        Partitions fresh = new Partitions();
+        partitions = fresh;
+        previous.close();
+        long start = System.currentTimeMillis();
+        try {
+            int snapshotChanges = usesSnapshot() && Files.exists(snapshotFile) ? loadFromSnapshot(fresh) : -1;
+            if (snapshotChanges < 0) {
+                loadFromTable(fresh);
+            }
+            if (usesSegmentFiles()) {
+                fresh.deleteOrphanDirectories();
+            }
+            ready = !vectorStore.isOracle();
+            lexicalReady = lexicalEnabled;
+            logger.info("Índices RAG listos en {} ms: {} particiones, vectorial ({}) {} fragmentos, BM25 {} fragmentos",
+                    System.currentTimeMillis() - start, fresh.byScope.size(), vectorStore.isOracle() ? "oracle" : type,
+                    fresh.vectorSize(), fresh.lexicalSize());
+            if (usesSnapshot() && snapshotChanges != 0) {
+                maintenance.execute(this::writeSnapshot);
+            }
+        } catch (Exception e) {
+            logger.error("No se pudo construir el índice vectorial RAG", e);
+        }
+    }
+
+    private void loadFromTable(Partitions fresh) {
+        Set<Long> seenIds = usesSegmentFiles() ? new HashSet<>() : null;
+        int pageNumber = 0;
+        Page<RagDocumentChunk> page;
+        do {
+            page = repository.findAll(PageRequest.of(pageNumber++, loadPageSize, Sort.by("id")));
+            for (RagDocumentChunk chunk : page.getContent()) {
+                if (seenIds != null) {
+                    seenIds.add(chunk.getId());
+                }
+                load(fresh, chunk);
+            }
+        } while (page.hasNext());
+        if (seenIds != null) {
+            fresh.retainOnly(seenIds);
+        }
+    }
+
+    /**
+     * Carga la copia en disco, descarta los fragmentos que ya no están en la tabla y lee
+     * solo los que faltan: los posteriores a la marca de agua y los de ids menores que se
+     * confirmaron después de escribir la copia.
+     *
+     * @return fragmentos agregados o descartados respecto a la copia, o -1 si no se pudo leer
+     */
+    private int loadFromSnapshot(Partitions fresh) {
+        List<Long> live = repository.findAllIdsOrderById();
+        Set<Long> liveIds = new HashSet<>(live);
+        Set<Long> loaded = new HashSet<>();
+        int[] dropped = new int[1];
+        long highWaterMark;
+        try {
+            highWaterMark = IndexSnapshotFile.read(snapshotFile, record -> {
+                if (!liveIds.contains(record.getId())) {
+                    dropped[0]++;
+                } else if (loaded.add(record.getId())) {
+                    load(fresh, record.getId(), RagScope.of(record.getProyectoId(), record.getSprintId()),
+                            () -> record.getEmbedding() != null ? EmbeddingCodec.decode(record.getEmbedding()) : new float[0],
+                            record.getText());
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("No se pudo leer la copia del índice RAG {}; se carga desde la tabla", snapshotFile, e);
+            return -1;
+        }
+        int loadedFromSnapshot = loaded.size();
+        int replayed = replayMissing(loaded, live, highWaterMark, chunk -> load(fresh, chunk));
+        if (usesSegmentFiles()) {
+            fresh.retainOnly(liveIds);
+        }
+        logger.info("Copia del índice RAG cargada: {} fragmentos hasta el id {}, {} leídos de la tabla, {} descartados",
+                loadedFromSnapshot, highWaterMark, replayed, dropped[0]);
+        synchronized (snapshotLock) {
+            snapshotIds = loaded;
+        }
+        return replayed + dropped[0];
+    }
+
+    private void load(Partitions fresh, RagDocumentChunk chunk) {
+        load(fresh, chunk.getId(), RagScope.of(chunk.getProyectoId(), chunk.getSprintId()),
+                () -> decode(chunk), chunk.getChunkText());
+    }
+
+    private void load(Partitions fresh, long id, RagScope scope, Supplier<float[]> embedding, String text) {
+        Partition partition = fresh.partitionFor(id, scope);
+        if (partition.vectors != null && !partition.vectors.contains(id)) {
+            float[] vector = embedding.get();
+            if (vector.length > 0) {
+                partition.vectors.addIfAbsent(id, vector);
+            }
+        }
+        if (partition.lexical != null && !partition.lexical.contains(id)) {
+            partition.lexical.add(id, text);
+        }
+    }
+
+    /**
+     * Lee de la tabla los fragmentos vigentes que no están en have y los pasa al consumer.
+     */
+    private int replayMissing(Set<Long> have, List<Long> live, long highWaterMark,
+            Consumer<RagDocumentChunk> consumer) {
+        List<Long> gaps = new ArrayList<>();
+        for (Long id : live) {
+            if (id <= highWaterMark && !have.contains(id)) {
+                gaps.add(id);
+            }
+        }
+        int replayed = 0;
+        for (int from = 0; from < gaps.size(); from += loadPageSize) {
+            for (RagDocumentChunk chunk : repository.findAllById(
+                    gaps.subList(from, Math.min(gaps.size(), from + loadPageSize)))) {
+                consumer.accept(chunk);
+                replayed++;
+            }
+        }
+        int pageNumber = 0;
+        Page<RagDocumentChunk> page;
+        do {
+            page = repository.findByIdGreaterThan(
+                    highWaterMark, PageRequest.of(pageNumber++, loadPageSize, Sort.by("id")));
+            for (RagDocumentChunk chunk : page.getContent()) {
+                if (!have.contains(chunk.getId())) {
+                    consumer.accept(chunk);
+                    replayed++;
+                }
+            }
+        } while (page.hasNext());
+        return replayed;
+    }
+
+    /**
+     * Reescribe la copia en disco si cambió la tabla desde la última: copia los registros
+     * vigentes de la copia anterior y agrega los que faltan. No toca los índices en uso.
+     */
+    private void writeSnapshot() {
+        synchronized (snapshotLock) {
+            long start = System.currentTimeMillis();
+            try {
+                List<Long> live = repository.findAllIdsOrderById();
+                if (snapshotIds != null && snapshotIds.size() == live.size() && snapshotIds.containsAll(live)
+                        && Files.exists(snapshotFile)) {
+                    return;
+                }
+                Set<Long> liveIds = new HashSet<>(live);
+                Set<Long> written = new HashSet<>();
+                try (IndexSnapshotFile.Writer writer = IndexSnapshotFile.create(snapshotFile)) {
+                    long highWaterMark = 0;
+                    if (Files.exists(snapshotFile)) {
+                        try {
+                            highWaterMark = IndexSnapshotFile.read(snapshotFile, record -> {
+                                if (liveIds.contains(record.getId()) && written.add(record.getId())) {
+                                    write(writer, record);
+                                }
+                            });
+                        } catch (IOException e) {
+                            // Los registros que se alcanzaron a leer son válidos; el resto sale de la tabla.
+                            logger.warn("Copia del índice RAG ilegible; se completa desde la tabla", e);
+                            highWaterMark = 0;
+                        }
+                    }
+                    replayMissing(written, live, highWaterMark, chunk -> {
+                        written.add(chunk.getId());
+                        write(writer, toRecord(chunk));
+                    });
+                    writer.commit(live.isEmpty() ? 0 : live.get(live.size() - 1));
+                }
+                snapshotIds = written;
+                logger.info("Copia del índice RAG escrita en {} ms: {} fragmentos en {}",
+                        System.currentTimeMillis() - start, written.size(), snapshotFile);
+            } catch (IOException | RuntimeException e) {
+                logger.error("No se pudo escribir la copia del índice RAG en {}", snapshotFile, e);
+            }
+        }
+    }
+
+    private static void write(IndexSnapshotFile.Writer writer, IndexSnapshotFile.Record record) {
+        try {
+            writer.write(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private IndexSnapshotFile.Record toRecord(RagDocumentChunk chunk) {
+        byte[] embedding = chunk.getEmbedding();
+        if (embedding == null) {
+            float[] decoded = decode(chunk);
+            embedding = decoded.length > 0 ? EmbeddingCodec.encode(decoded) : null;
+        }
+        return new IndexSnapshotFile.Record(
+                chunk.getId(), chunk.getProyectoId(), chunk.getSprintId(), embedding, chunk.getChunkText());
+    }
+
+    public void add(Long chunkId, RagScope scope, float[] embedding, String text) {
+        if (chunkId == null) {
+            return;
+        }
+        Partition partition = partitions.partitionFor(chunkId, scope);
+        if (partition.vectors != null) {
+            partition.vectors.add(chunkId, embedding);
+        }
+        if (partition.lexical != null) {
+            partition.lexical.add(chunkId, text);
+        }
+    }
+
+    public void remove(Long chunkId) {
+        if (chunkId == null) {
+            return;
+        }
+        Partition partition = partitions.remove(chunkId);
+        if (partition == null) {
+            return;
+        }
+        if (partition.vectors != null) {
+            partition.vectors.remove(chunkId);
+        }
+        if (partition.lexical != null) {
+            partition.lexical.remove(chunkId);
+        }
+    }
+
+    public boolean isReady() {
+        return enabled && !vectorStore.isOracle() && ready;
+    }
+
+    /**
+     * Busca los k fragmentos más parecidos dentro del alcance. Devuelve una lista vacía si
+     * el índice no está listo.
+     */
+    public List<VectorIndex.Hit> search(float[] queryEmbedding, int k, RagScope scope) {
+        if (!isReady()) {
+            return Collections.emptyList();
+        }
+        List<List<VectorIndex.Hit>> results = new ArrayList<>();
+        for (Partition partition : partitions.matching(scope)) {
+            results.add(partition.vectors.search(queryEmbedding, k));
+        }
+        return merge(results, k);
+    }
+
+    public int size() {
+        return partitions.vectorSize();
+    }
+
+    public int partitionCount() {
+        return partitions.byScope.size();
+    }
+
+    public boolean isLexicalReady() {
+        return enabled && lexicalEnabled && lexicalReady;
+    }
+
+    /**
+     * Busca los k fragmentos con mejor puntaje BM25 dentro del alcance. Lista vacía si el
+     * índice no está listo.
+     *
+     * Cada partición calcula su propio IDF, así que al combinar varias particiones los
+     * puntajes son aproximados; para la fusión con RRF solo importa el orden.
+     */
+    public List<VectorIndex.Hit> searchLexical(String query, int k, RagScope scope) {
+        if (!isLexicalReady()) {
+            return Collections.emptyList();
+        }
+        List<List<VectorIndex.Hit>> results = new ArrayList<>();
+        for (Partition partition : partitions.matching(scope)) {
+            results.add(partition.lexical.search(query, k));
+        }
+        return merge(results, k);
+    }
+
+    public int lexicalSize() {
+        return partitions.lexicalSize();
+    }
+
+    public String getQuantization() {
+        return quantization;
+    }
+
+    public int getEvaluateMaxVectors() {
+        return evaluateMaxVectors;
+    }
+
+    /**
+     * Compara la búsqueda exacta con HNSW, int8 y PQ (con y sin reordenamiento) sobre hasta
+     * maxVectors embeddings de la tabla. Las consultas son embeddings tomados al azar de la
+     * misma muestra; no toca los índices en uso.
+     *
+     * Corre en el hilo del evaluador, no en el de la petición. Solo se leen id y embedding.
+     *
+     * @throws IllegalArgumentException si maxVectors pasa de rag.index.evaluate.max-vectors
+     * @throws IllegalStateException si ya hay una evaluación en curso
+     */
+    public CompletableFuture<List<Map<String, Object>>> evaluateQuantization(int k, int queryCount, int maxVectors) {
+        if (maxVectors > evaluateMaxVectors) {
+            throw new IllegalArgumentException("maxVectors no puede pasar de " + evaluateMaxVectors + ".");
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> runEvaluation(k, queryCount, maxVectors), evaluator);
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Ya hay una evaluación del índice en curso, intenta más tarde.");
+        }
+    }
+
+    private List<Map<String, Object>> runEvaluation(int k, int queryCount, int maxVectors) {
+        Map<Long, float[]> vectors = new LinkedHashMap<>();
+        long lastId = Long.MIN_VALUE;
+        List<Object[]> page;
+        do {
+            page = repository.findEmbeddingsAfterId(
+                    lastId, PageRequest.of(0, Math.min(loadPageSize, maxVectors - vectors.size())));
+            for (Object[] row : page) {
+                lastId = ((Number) row[0]).longValue();
+                float[] embedding = decode((byte[]) row[1], (String) row[2]);
+                if (embedding.length > 0) {
+                    vectors.put(lastId, embedding);
+                }
+            }
+        } while (!page.isEmpty() && vectors.size() < maxVectors);
+        if (vectors.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<float[]> queries = new ArrayList<>(vectors.values());
+        Collections.shuffle(queries, new Random(7));
+        queries = queries.subList(0, Math.min(queryCount, queries.size()));
+
+        int trainingSize = Math.min(quantizationTrainingSize, vectors.size());
+        QuantizedVectorIndex.FullPrecisionSource source = ids -> {
+            Map<Long, float[]> found = new HashMap<>();
+            for (Long id : ids) {
+                found.put(id, vectors.get(id));
+            }
+            return found;
+        };
+        Map<String, VectorIndex> candidates = new LinkedHashMap<>();
+        candidates.put("hnsw", new HnswIndex(m, efConstruction, efSearch));
+        candidates.put("int8", new QuantizedVectorIndex(trainer("int8"), trainingSize, 0, null));
+        candidates.put("int8+rerank", new QuantizedVectorIndex(trainer("int8"), trainingSize, rerankFactor, source));
+        candidates.put("pq", new QuantizedVectorIndex(trainer("pq"), trainingSize, 0, null));
+        candidates.put("pq+rerank", new QuantizedVectorIndex(trainer("pq"), trainingSize, rerankFactor, source));
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (VectorIndexEvaluator.Result result : VectorIndexEvaluator.evaluate(vectors, queries, k, candidates)) {
+            results.add(result.toSummary());
+        }
+        return results;
+    }
+
+    private static List<VectorIndex.Hit> merge(List<List<VectorIndex.Hit>> results, int k) {
+        if (results.size() == 1) {
+            return results.get(0);
+        }
+        if (results.isEmpty() || k <= 0) {
+            return Collections.emptyList();
+        }
+        TopK best = new TopK(k);
+        for (List<VectorIndex.Hit> hits : results) {
+            for (VectorIndex.Hit hit : hits) {
+                best.offer(hit.getId(), hit.getScore());
+            }
+        }
+        return best.toSortedHits();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        evaluator.shutdownNow();
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+        partitions.close();
+    }
+
+    private void mergeSegments() {
+        try {
+            for (Partition partition : partitions.byScope.values()) {
+                if (partition.vectors instanceof MappedVectorIndex) {
+                    int merged = ((MappedVectorIndex) partition.vectors).mergeSegments();
+                    if (merged > 0) {
+                        logger.info("Índice RAG {}: {} segmentos compactados", partition.scope, merged);
+                    }
+                }
+            }
+            // Mientras se reconstruye faltan particiones por cargar: sus directorios no son huérfanos.
+            synchronized (this) {
+                if (ready) {
+                    partitions.deleteOrphanDirectories();
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("No se pudieron compactar los segmentos del índice RAG", e);
+        }
+    }
+
+    /**
+     * Reconstruye los grafos HNSW con demasiados nodos eliminados: siguen recorriéndose en
+     * cada búsqueda y ocupan lugares de la lista de candidatos.
+     */
+    private void compactGraphs() {
+        try {
+            for (Partition partition : partitions.byScope.values()) {
+                if (partition.vectors instanceof HnswIndex) {
+                    HnswIndex graph = (HnswIndex) partition.vectors;
+                    int deleted = graph.deletedCount();
+                    if (deleted > 0 && deleted >= hnswCompactRatio * (graph.size() + deleted)) {
+                        int discarded = graph.compact();
+                        logger.info("Índice RAG {}: grafo reconstruido sin {} nodos eliminados", partition.scope, discarded);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("No se pudieron compactar los grafos del índice RAG", e);
+        }
+    }
+
+    // Con Oracle y sin BM25 no queda ningún índice en memoria que copiar.
+    private boolean usesSnapshot() {
+        return snapshotEnabled && (!vectorStore.isOracle() || lexicalEnabled);
+    }
+
+    private boolean usesGraph() {
+        return enabled && type.equals("hnsw") && !vectorStore.isOracle();
+    }
+
+    private boolean usesSegmentFiles() {
+        return type.equals("mmap") && !vectorStore.isOracle();
+    }
+
+    private VectorIndex newIndex(RagScope scope) {
+        if (type.equals("flat") && !quantization.equals("none")) {
+            return new QuantizedVectorIndex(
+                    trainer(quantization), quantizationTrainingSize, rerankFactor, this::loadFullPrecision);
+        }
+        if (type.equals("flat")) {
+            return new FlatVectorIndex();
+        }
+        if (type.equals("mmap")) {
+            return new MappedVectorIndex(mmapDirectory.resolve(partitionDirectoryName(scope)), mmapSegmentRows);
+        }
+        return new HnswIndex(m, efConstruction, efSearch);
+    }
+
+    private static String partitionDirectoryName(RagScope scope) {
+        return "proyecto-" + (scope.getProyectoId() != null ? scope.getProyectoId() : "all")
+                + "_sprint-" + (scope.getSprintId() != null ? scope.getSprintId() : "all");
+    }
+
+    private Function<List<float[]>, VectorQuantizer> trainer(String kind) {
+        if (kind.equals("int8")) {
+            return ScalarQuantizer::train;
+        }
+        // Por defecto un subespacio cada 8 dimensiones: 1536 dims -> 192 bytes (32x menos).
+        return samples -> {
+            int dims = samples.get(0).length;
+            int subspaces = pqSubspaces > 0 ? Math.min(pqSubspaces, dims) : Math.max(1, dims / 8);
+            return ProductQuantizer.train(samples, subspaces, 8, 42);
+        };
+    }
+
+    private Map<Long, float[]> loadFullPrecision(Collection<Long> ids) {
+        Map<Long, float[]> vectors = new HashMap<>();
+        for (Object[] row : repository.findEmbeddingsByIds(ids)) {
+            float[] embedding = decode((byte[]) row[1], (String) row[2]);
+            if (embedding.length > 0) {
+                vectors.put(((Number) row[0]).longValue(), embedding);
+            }
+        }
+        return vectors;
+    }
+
+    private float[] decode(RagDocumentChunk chunk) {
+        return decode(chunk.getEmbedding(), chunk.getEmbeddingJson());
+    }
+
+    private float[] decode(byte[] binary, String json) {
+        if (binary != null) {
+            return EmbeddingCodec.decode(binary);
+        }
+        if (!StringUtils.hasText(json)) {
+            return new float[0];
+        }
+        try {
+            return objectMapper.readValue(json, float[].class);
+        } catch (JsonProcessingException e) {
+            return new float[0];
+        }
+    }
+
+    /**
+     * Índices de una partición (proyecto, sprint). Cualquiera de los dos puede ser null
+     * si ese tipo de índice está deshabilitado.
+     */
+    private static class Partition {
+        private final RagScope scope;
+        private final VectorIndex vectors;
+        private final Bm25Index lexical;
+
+        Partition(RagScope scope, VectorIndex vectors, Bm25Index lexical) {
+            this.scope = scope;
+            this.vectors = vectors;
+            this.lexical = lexical;
+        }
+    }
+
+    /**
+     * Conjunto de particiones que se reemplaza completo en cada reconstrucción.
+     */
+    private class Partitions {
+        private final Map<RagScope, Partition> byScope = new ConcurrentHashMap<>();
+        private final Map<Long, Partition> byChunkId = new ConcurrentHashMap<>();
+
+        Partition partitionFor(Long chunkId, RagScope scope) {
+            RagScope key = RagScope.of(scope.getProyectoId(), scope.getSprintId());
+            Partition partition = byScope.get(key);
+            if (partition == null) {
+                // Crear una partición abre su directorio; la limpieza de directorios no debe verlo a medias.
+                synchronized (this) {
+                    partition = byScope.computeIfAbsent(key, k -> new Partition(
+                            k, vectorStore.isOracle() ? null : newIndex(k), lexicalEnabled ? new Bm25Index() : null));
+                }
+            }
+            byChunkId.put(chunkId, partition);
+            return partition;
+        }
+
+        Partition remove(Long chunkId) {
+            return byChunkId.remove(chunkId);
+        }
+
+        List<Partition> matching(RagScope scope) {
+            List<Partition> result = new ArrayList<>();
+            for (Partition partition : byScope.values()) {
+                if (scope.includesPartition(partition.scope.getProyectoId(), partition.scope.getSprintId())) {
+                    result.add(partition);
+                }
+            }
+            return result;
+        }
+
+        int vectorSize() {
+            return byScope.values().stream().mapToInt(p -> p.vectors != null ? p.vectors.size() : 0).sum();
+        }
+
+        int lexicalSize() {
+            return byScope.values().stream().mapToInt(p -> p.lexical != null ? p.lexical.size() : 0).sum();
+        }
+
+        void retainOnly(Set<Long> ids) {
+            for (Partition partition : byScope.values()) {
+                if (partition.vectors instanceof MappedVectorIndex) {
+                    ((MappedVectorIndex) partition.vectors).retainOnly(ids);
+                }
+            }
+        }
+
+        /**
+         * Borra de rag.index.mmap.dir los directorios de particiones que ya no existen (por
+         * ejemplo, de un proyecto cuyos documentos se borraron antes de reiniciar).
+         */
+        synchronized void deleteOrphanDirectories() {
+            if (!Files.isDirectory(mmapDirectory)) {
+                return;
+            }
+            Set<String> live = new HashSet<>();
+            for (RagScope scope : byScope.keySet()) {
+                live.add(partitionDirectoryName(scope));
+            }
+            List<Path> orphans = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(mmapDirectory, "proyecto-*_sprint-*")) {
+                for (Path directory : stream) {
+                    if (Files.isDirectory(directory) && !live.contains(directory.getFileName().toString())) {
+                        orphans.add(directory);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("No se pudo revisar el directorio del índice RAG {}", mmapDirectory, e);
+                return;
+            }
+            for (Path directory : orphans) {
+                try {
+                    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                        for (Path file : files) {
+                            Files.deleteIfExists(file);
+                        }
+                    }
+                    Files.deleteIfExists(directory);
+                    logger.info("Índice RAG: directorio {} borrado, su partición ya no existe", directory);
+                } catch (IOException e) {
+                    logger.warn("No se pudo borrar el directorio del índice RAG {}", directory, e);
+                }
+            }
+        }
+
+        void close() {
+            for (Partition partition : byScope.values()) {
+                if (partition.vectors instanceof MappedVectorIndex) {
+                    ((MappedVectorIndex) partition.vectors).close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.springboot.MyTodoList.service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Estado y avance de una carga de documento al RAG que se procesa en segundo plano.
+ */
+public class RagIngestionJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String id;
+    private final String fileName;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+    private final AtomicInteger chunksTotal = new AtomicInteger();
+    private final AtomicInteger chunksEmbedded = new AtomicInteger();
+    private final AtomicInteger chunksStored = new AtomicInteger();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+    private volatile Map<String, Object> result;
+
+    public RagIngestionJob(String id, String fileName) {
+        this.id = id;
+        this.fileName = fileName;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    // El total crece conforme se lee el documento, porque los fragmentos se generan al vuelo.
+    public void addChunksTotal(int count) {
+        chunksTotal.addAndGet(count);
+    }
+
+    public void addChunksEmbedded(int count) {
+        chunksEmbedded.addAndGet(count);
+    }
+
+    public void addChunksStored(int count) {
+        chunksStored.addAndGet(count);
+    }
+
+    public void markRunning() {
+        status = Status.RUNNING;
+    }
+
+    public void markCompleted(Map<String, Object> result) {
+        this.result = result;
+        this.finishedAt = LocalDateTime.now();
+        this.status = Status.COMPLETED;
+    }
+
+    public void markFailed(String error) {
+        this.error = error;
+        this.finishedAt = LocalDateTime.now();
+        this.status = Status.FAILED;
+    }
+
+    public Map<String, Object> toSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("jobId", id);
+        summary.put("fileName", fileName);
+        summary.put("status", status.name());
+        summary.put("chunksTotal", chunksTotal.get());
+        summary.put("chunksEmbedded", chunksEmbedded.get());
+        summary.put("chunksStored", chunksStored.get());
+        summary.put("createdAt", createdAt.toString());
+        if (finishedAt != null) {
+            summary.put("finishedAt", finishedAt.toString());
+        }
+        if (error != null) {
+            summary.put("error", error);
+        }
+        if (result != null) {
+            summary.put("result", result);
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,123 @@
+package com.springboot.MyTodoList.service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Encola las cargas de documentos del RAG en un pool acotado de hilos para que
+ * la petición HTTP responda de inmediato con el id del trabajo.
+ *
+ * El archivo se copia a un temporal antes de responder, porque el MultipartFile
+ * deja de existir al terminar la petición.
+ */
+@Service
+public class RagIngestionJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RagIngestionJobService.class);
+
+    private final RagService ragService;
+    private final ThreadPoolExecutor executor;
+    private final long retentionMinutes;
+    private final Map<String, RagIngestionJob> jobs = new ConcurrentHashMap<>();
+
+    public RagIngestionJobService(
+            RagService ragService,
+            @Value("${rag.ingest.workers:2}") int workers,
+            @Value("${rag.ingest.queue-capacity:20}") int queueCapacity,
+            @Value("${rag.ingest.job-retention-minutes:60}") long retentionMinutes) {
+        this.ragService = ragService;
+        this.retentionMinutes = retentionMinutes;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                workers, workers, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "rag-ingest-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public RagIngestionJob submit(MultipartFile file, RagScope scope) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("Debes adjuntar un archivo con contenido para el RAG.");
+        }
+        String filename = file.getOriginalFilename() != null ? file.getOriginalFilename() : "documento";
+        String mimeType = file.getContentType();
+        ragService.checkSupportedFile(filename);
+        purgeFinishedJobs();
+
+        Path temp = Files.createTempFile("rag-upload-", ".tmp");
+        RagIngestionJob job = new RagIngestionJob(UUID.randomUUID().toString(), filename);
+        boolean queued = false;
+        try {
+            file.transferTo(temp);
+            jobs.put(job.getId(), job);
+            executor.execute(() -> run(job, temp, mimeType, scope));
+            queued = true;
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("La cola de carga de documentos está llena, intenta más tarde.");
+        } finally {
+            // Si el trabajo no llegó a la cola, nadie más va a borrar el temporal.
+            if (!queued) {
+                jobs.remove(job.getId());
+                deleteTemp(temp);
+            }
+        }
+        return job;
+    }
+
+    public Optional<RagIngestionJob> find(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    private void run(RagIngestionJob job, Path source, String mimeType, RagScope scope) {
+        job.markRunning();
+        try {
+            Map<String, Object> result = ragService.ingestFile(source, job.getFileName(), mimeType, scope, job);
+            job.markCompleted(result);
+        } catch (IllegalArgumentException e) {
+            job.markFailed(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Falló la carga RAG del archivo {}", job.getFileName(), e);
+            job.markFailed("Error al cargar el conocimiento: " + e.getMessage());
+        } finally {
+            deleteTemp(source);
+        }
+    }
+
+    private static void deleteTemp(Path temp) {
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            logger.warn("No se pudo borrar el temporal {}", temp, e);
+        }
+    }
+
+    private void purgeFinishedJobs() {
+        LocalDateTime limit = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(limit));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
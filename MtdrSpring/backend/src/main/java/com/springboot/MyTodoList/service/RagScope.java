@@ -0,0 +1,84 @@
+package com.springboot.MyTodoList.service;
+
+import java.util.Objects;
+
+/**
+ * Alcance de una carga o una consulta al RAG: proyecto, sprint y archivo, todos opcionales.
+ *
+ * Un campo en null significa "cualquiera", así que {@link #ALL} busca en todo el
+ * conocimiento cargado y un fragmento sin proyecto solo aparece en consultas sin proyecto.
+ */
+public final class RagScope {
+
+    public static final RagScope ALL = new RagScope(null, null, null);
+
+    private final Long proyectoId;
+    private final Long sprintId;
+    private final String fileName;
+
+    private RagScope(Long proyectoId, Long sprintId, String fileName) {
+        this.proyectoId = proyectoId;
+        this.sprintId = sprintId;
+        this.fileName = fileName;
+    }
+
+    public static RagScope of(Long proyectoId, Long sprintId) {
+        return of(proyectoId, sprintId, null);
+    }
+
+    public static RagScope of(Long proyectoId, Long sprintId, String fileName) {
+        String file = fileName != null && !fileName.trim().isEmpty() ? fileName.trim() : null;
+        if (proyectoId == null && sprintId == null && file == null) {
+            return ALL;
+        }
+        return new RagScope(proyectoId, sprintId, file);
+    }
+
+    public Long getProyectoId() {
+        return proyectoId;
+    }
+
+    public Long getSprintId() {
+        return sprintId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public boolean isAll() {
+        return proyectoId == null && sprintId == null && fileName == null;
+    }
+
+    /**
+     * Indica si los fragmentos de la partición (proyecto, sprint) entran en este alcance.
+     */
+    public boolean includesPartition(Long partitionProyectoId, Long partitionSprintId) {
+        return (proyectoId == null || proyectoId.equals(partitionProyectoId))
+                && (sprintId == null || sprintId.equals(partitionSprintId));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof RagScope)) {
+            return false;
+        }
+        RagScope scope = (RagScope) other;
+        return Objects.equals(proyectoId, scope.proyectoId)
+                && Objects.equals(sprintId, scope.sprintId)
+                && Objects.equals(fileName, scope.fileName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(proyectoId, sprintId, fileName);
+    }
+
+    @Override
+    public String toString() {
+        return "RagScope{proyectoId=" + proyectoId + ", sprintId=" + sprintId + ", fileName=" + fileName + "}";
+    }
+}
@@ -2,170 +2,420 @@ package com.springboot.MyTodoList.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.MyTodoList.config.RagVectorStore;
 import com.springboot.MyTodoList.model.RagDocumentChunk;
+import com.springboot.MyTodoList.repository.RagDocumentChunkBatchWriter;
 import com.springboot.MyTodoList.repository.RagDocumentChunkRepository;
-import java.io.BufferedReader;
+import com.springboot.MyTodoList.util.Chunker;
+import com.springboot.MyTodoList.util.ContentHash;
+import com.springboot.MyTodoList.util.ContextAssembler;
+import com.springboot.MyTodoList.util.DocumentTextExtractor;
+import com.springboot.MyTodoList.util.EmbeddingCodec;
+import com.springboot.MyTodoList.util.RankFusion;
+import com.springboot.MyTodoList.util.StructuredChunker;
+import com.springboot.MyTodoList.util.TextChunker;
+import com.springboot.MyTodoList.util.TopK;
+import com.springboot.MyTodoList.util.VectorIndex;
+import com.springboot.MyTodoList.util.VectorMath;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
-import org.springframework.web.multipart.MultipartFile;
 
 @Service
 public class RagService {
 
+    private static final Logger logger = LoggerFactory.getLogger(RagService.class);
+
     private static final int MAX_CHUNK_SIZE = 800;
     private static final int CHUNK_OVERLAP = 120;
+    private static final int FUSION_CANDIDATE_FACTOR = 4;
+    private static final int KEYWORD_QUERY_MAX_WORDS = 4;
+    private static final Pattern IDENTIFIER = Pattern.compile(
+            "\\S*(\\p{L}[-_.]?\\d|\\w[-_.]\\w|\\p{Ll}\\p{Lu})\\S*");
 
     private final RagDocumentChunkRepository repository;
+    private final RagDocumentChunkBatchWriter batchWriter;
     private final EmbeddingService embeddingService;
+    private final RagIndexService indexService;
+    private final RagAnswerCache answerCache;
     private final ObjectMapper objectMapper;
+    private final RagVectorStore vectorStore;
+    private final boolean hybridRetrieval;
+    private final int rrfK;
+    private final ContextAssembler contextAssembler;
+    private final boolean structuredChunking;
+    private final int chunkTargetTokens;
+    private final int chunkMaxTokens;
+    // Un candado por archivo y alcance; se quita del mapa cuando nadie lo usa.
+    private final Map<String, IngestionLock> ingestionLocks = new ConcurrentHashMap<>();
 
     public RagService(
             RagDocumentChunkRepository repository,
+            RagDocumentChunkBatchWriter batchWriter,
             EmbeddingService embeddingService,
-            ObjectMapper objectMapper) {
+            RagIndexService indexService,
+            RagAnswerCache answerCache,
+            ObjectMapper objectMapper,
+            RagVectorStore vectorStore,
+            @Value("${rag.retrieval.hybrid:true}") boolean hybridRetrieval,
+            @Value("${rag.retrieval.rrf-k:60}") int rrfK,
+            @Value("${rag.context.max-tokens:1000}") int contextMaxTokens,
+            @Value("${rag.chunking.strategy:structured}") String chunkingStrategy,
+            @Value("${rag.chunking.target-tokens:350}") int chunkTargetTokens,
+            @Value("${rag.chunking.max-tokens:512}") int chunkMaxTokens) {
         this.repository = repository;
+        this.batchWriter = batchWriter;
         this.embeddingService = embeddingService;
+        this.indexService = indexService;
+        this.answerCache = answerCache;
         this.objectMapper = objectMapper;
+        this.vectorStore = vectorStore;
+        this.hybridRetrieval = hybridRetrieval;
+        this.rrfK = rrfK;
+        this.structuredChunking = !"fixed".equalsIgnoreCase(chunkingStrategy.trim());
+        // Los fragmentos estructurados no se traslapan: un final que se repite al principio
+        // del siguiente es texto real y no se debe recortar al unirlos.
+        this.contextAssembler = new ContextAssembler(contextMaxTokens, structuredChunking ? 0 : CHUNK_OVERLAP);
+        this.chunkTargetTokens = Math.max(1, chunkTargetTokens);
+        this.chunkMaxTokens = Math.max(this.chunkTargetTokens, chunkMaxTokens);
     }
 
-    public Map<String, Object> ingestFile(MultipartFile file) throws IOException {
-        if (file == null || file.isEmpty()) {
-            throw new IllegalArgumentException("Debes adjuntar un archivo con contenido para el RAG.");
+    /**
+     * Indexa un archivo ya copiado al disco local, reportando el avance en el trabajo recibido.
+     *
+     * Si el archivo ya se había cargado con el mismo contenido no se hace nada. Si cambió,
+     * los fragmentos cuyo hash ya existe reutilizan su embedding y solo se calculan los
+     * nuevos; al final se reemplaza la versión anterior del archivo. Los fragmentos quedan
+     * etiquetados con el proyecto y sprint del alcance recibido.
+     *
+     * El texto se lee y se parte en fragmentos conforme avanza la lectura; cada grupo de
+     * fragmentos se envía a embeddings y a la base antes de seguir leyendo. Si la carga
+     * falla a la mitad se borran los grupos ya guardados, así que queda la versión anterior
+     * completa y no una mezcla de las dos.
+     *
+     * Las cargas del mismo archivo en el mismo alcance se hacen una a la vez: si corrieran
+     * juntas, las dos leerían la misma versión anterior y ninguna borraría a la otra.
+     */
+    public Map<String, Object> ingestFile(
+            Path source, String filename, String mimeType, RagScope scope, RagIngestionJob job) throws IOException {
+        checkSupportedFile(filename);
+        String lockKey = documentKey(filename, scope.getProyectoId(), scope.getSprintId());
+        IngestionLock lock = ingestionLocks.compute(lockKey, (key, current) -> {
+            IngestionLock held = current != null ? current : new IngestionLock();
+            held.holders++;
+            return held;
+        });
+        lock.lock.lock();
+        try {
+            return ingestLocked(source, filename, mimeType, scope, job);
+        } finally {
+            lock.lock.unlock();
+            ingestionLocks.computeIfPresent(lockKey, (key, current) -> --current.holders == 0 ? null : current);
         }
+    }
 
-        String filename = file.getOriginalFilename() != null ? file.getOriginalFilename() : "documento";
-        String mimeType = file.getContentType();
-        String content = extractText(file, filename);
+    private Map<String, Object> ingestLocked(
+            Path source, String filename, String mimeType, RagScope scope, RagIngestionJob job) throws IOException {
+        String model = embeddingService.getModel();
+        String documentHash;
+        try (InputStream input = Files.newInputStream(source)) {
+            documentHash = ContentHash.sha256Hex(input);
+        }
+        if (repository.existsByFileNameAndDocumentHashAndEmbeddingModelAndProyectoIdAndSprintId(
+                filename, documentHash, model, scope.getProyectoId(), scope.getSprintId())) {
+            return Map.of(
+                    "fileName", filename,
+                    "unchanged", true,
+                    "chunksStored", 0,
+                    "chunksReused", 0);
+        }
+        List<Long> previousIds = repository.findIdsByFileNameAndProyectoIdAndSprintId(
+                filename, scope.getProyectoId(), scope.getSprintId());
 
-        List<String> chunks = splitIntoChunks(content);
-        if (chunks.isEmpty()) {
+        IngestionRun run = new IngestionRun(filename, mimeType, documentHash, model, scope, job);
+        try {
+            Chunker chunker = newChunker(run::accept);
+            try (InputStream input = Files.newInputStream(source)) {
+                DocumentTextExtractor.readBlocks(input, filename, chunker::append);
+            }
+            chunker.finish();
+            run.flush();
+        } catch (IOException | RuntimeException e) {
+            run.discard(e);
+            throw e;
+        }
+        if (run.saved == 0) {
             throw new IllegalArgumentException("El archivo no contiene texto para indexar.");
         }
-        int dims = 0;
-        int saved = 0;
-        for (int i = 0; i < chunks.size(); i++) {
-            String chunk = chunks.get(i);
-            float[] embedding = embeddingService.embedText(chunk);
-            dims = embedding.length;
 
-            RagDocumentChunk entity = new RagDocumentChunk();
-            entity.setFileName(filename);
-            entity.setMimeType(mimeType);
-            entity.setChunkIndex(i);
-            entity.setChunkText(chunk);
-            entity.setEmbeddingJson(toJson(embedding));
-            entity.setEmbeddingDims(embedding.length);
-            repository.save(entity);
-            saved++;
+        // La versión anterior del archivo se borra hasta que la nueva ya está guardada.
+        run.roundTrips += batchWriter.deleteAll(previousIds);
+        for (Long id : previousIds) {
+            indexService.remove(id);
         }
+        answerCache.invalidateChunks(previousIds);
+        logger.info("RAG: {} fragmentos de {} guardados ({} embeddings reutilizados) en {} viajes a la base (lotes de {})",
+                run.saved, filename, run.reused, run.roundTrips, batchWriter.getBatchSize());
 
         return Map.of(
                 "fileName", filename,
-                "chunksStored", saved,
-                "embeddingDims", dims);
+                "chunksStored", run.saved,
+                "chunksReused", run.reused,
+                "chunksReplaced", previousIds.size(),
+                "embeddingDims", run.dims,
+                "dbRoundTrips", run.roundTrips);
+    }
+
+    public void checkSupportedFile(String filename) {
+        String lower = filename.toLowerCase();
+        if (!lower.endsWith(".docx") && !lower.endsWith(".txt") && !lower.endsWith(".md")) {
+            throw new IllegalArgumentException("Solo se permiten archivos .txt, .md o .docx.");
+        }
+    }
+
+    /**
+     * rag.chunking.strategy=structured (por defecto) corta por títulos, párrafos y oraciones
+     * con tamaños en tokens; fixed conserva el corte cada MAX_CHUNK_SIZE caracteres con
+     * traslape.
+     */
+    private Chunker newChunker(Consumer<String> chunks) {
+        if (structuredChunking) {
+            return new StructuredChunker(chunkTargetTokens, chunkMaxTokens, chunks);
+        }
+        return new TextChunker(MAX_CHUNK_SIZE, CHUNK_OVERLAP, chunks);
+    }
+
+    private Map<String, float[]> findExistingEmbeddings(List<String> hashes, String model) {
+        Map<String, float[]> embeddingsByHash = new HashMap<>();
+        for (Object[] row : repository.findEmbeddingsByContentHash(new HashSet<>(hashes), model)) {
+            embeddingsByHash.putIfAbsent((String) row[0], EmbeddingCodec.decode((byte[]) row[1]));
+        }
+        return embeddingsByHash;
+    }
+
+    // Solo se piden al servicio los textos cuyo hash no tiene embedding todavía (sin repetir).
+    private void embedMissing(List<String> texts, List<String> hashes, Map<String, float[]> embeddingsByHash) {
+        Map<String, String> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (!embeddingsByHash.containsKey(hashes.get(i))) {
+                missing.putIfAbsent(hashes.get(i), texts.get(i));
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        List<String> missingHashes = new ArrayList<>(missing.keySet());
+        List<float[]> embeddings = embeddingService.embedBatch(new ArrayList<>(missing.values()));
+        for (int i = 0; i < missingHashes.size(); i++) {
+            embeddingsByHash.put(missingHashes.get(i), embeddings.get(i));
+        }
     }
 
     public String buildContextForPrompt(String query, int maxChunks) {
+        return buildContextForPrompt(query, maxChunks, RagScope.ALL);
+    }
+
+    /**
+     * Igual que {@link #buildContextForPrompt(String, int)} pero buscando solo en los
+     * fragmentos del proyecto, sprint o archivo indicados.
+     */
+    public String buildContextForPrompt(String query, int maxChunks, RagScope scope) {
+        return retrieveContext(query, maxChunks, scope).getText();
+    }
+
+    /**
+     * Igual que {@link #buildContextForPrompt(String, int, RagScope)} pero devuelve también
+     * los ids de los fragmentos usados, en el orden del contexto.
+     *
+     * Los fragmentos seguidos de un mismo archivo se unen sin repetir el traslape y el
+     * contexto no pasa de rag.context.max-tokens (contados localmente con {@link
+     * com.springboot.MyTodoList.util.TokenCounter}).
+     *
+     * Si la búsqueda calculó el embedding de la consulta también se devuelve, para que el
+     * chat lo reutilice sin pedirlo otra vez; las consultas resueltas solo con BM25 no lo
+     * tienen.
+     */
+    public RetrievedContext retrieveContext(String query, int maxChunks, RagScope scope) {
         if (!StringUtils.hasText(query)) {
-            return "";
+            return new RetrievedContext("", List.of(), null);
         }
-        List<ScoredChunk> topChunks = retrieveSimilarChunks(query, maxChunks);
+        Retrieval retrieval = retrieveSimilarChunks(query, maxChunks, scope);
+        List<ScoredChunk> topChunks = retrieval.chunks;
         if (topChunks.isEmpty()) {
-            return "";
+            return new RetrievedContext("", List.of(), retrieval.queryEmbedding);
         }
 
-        return topChunks.stream()
+        List<ContextAssembler.Chunk> ranked = topChunks.stream()
                 .map(scored -> {
                     RagDocumentChunk chunk = scored.chunk();
-                    String snippet = chunk.getChunkText();
-                    if (snippet != null && snippet.length() > MAX_CHUNK_SIZE) {
-                        snippet = snippet.substring(0, MAX_CHUNK_SIZE) + "...";
-                    }
-                    return "- Archivo: " + chunk.getFileName()
-                            + " (fragmento " + chunk.getChunkIndex() + "): "
-                            + snippet;
+                    return new ContextAssembler.Chunk(
+                            chunk.getId(), chunk.getFileName(),
+                            documentKey(chunk.getFileName(), chunk.getProyectoId(), chunk.getSprintId()),
+                            chunk.getChunkIndex() != null ? chunk.getChunkIndex() : 0, chunk.getChunkText());
                 })
-                .collect(Collectors.joining("\n"));
+                .collect(Collectors.toList());
+        ContextAssembler.Assembled assembled = contextAssembler.assemble(ranked);
+        logger.debug("Contexto RAG: {} fragmentos recuperados, {} usados, ~{} tokens",
+                ranked.size(), assembled.getChunkIds().size(), assembled.getTokens());
+        return new RetrievedContext(assembled.getText(), assembled.getChunkIds(), retrieval.queryEmbedding);
     }
 
-    private List<ScoredChunk> retrieveSimilarChunks(String query, int maxChunks) {
-        float[] queryEmbedding = embeddingService.embedText(query);
-
-        return repository.findAll().stream()
-                .map(chunk -> {
-                    float[] embedding = fromJson(chunk.getEmbeddingJson());
-                    double similarity = cosineSimilarity(queryEmbedding, embedding);
-                    return new ScoredChunk(chunk, similarity);
-                })
-                .filter(scored -> !Double.isNaN(scored.score()))
-                .sorted(Comparator.comparingDouble(ScoredChunk::score).reversed())
-                .limit(maxChunks)
-                .collect(Collectors.toList());
+    /**
+     * Recupera los fragmentos más relevantes combinando búsqueda vectorial y BM25 con
+     * Reciprocal Rank Fusion. Las consultas que parecen palabras clave (claves de ticket,
+     * nombres de clase) se resuelven solo con BM25 y no llaman al servicio de embeddings.
+     * Si el servicio de embeddings no está disponible se responde solo con BM25.
+     */
+    private Retrieval retrieveSimilarChunks(String query, int maxChunks, RagScope scope) {
+        if (maxChunks <= 0) {
+            return new Retrieval(new ArrayList<>(), null);
+        }
+        try {
+            return retrieveRanked(query, maxChunks, scope);
+        } catch (LlmCallGuard.LlmUnavailableException e) {
+            if (scope.getFileName() != null || !indexService.isLexicalReady()) {
+                throw e;
+            }
+            logger.warn("Recuperación solo con BM25: {}", e.getMessage());
+            return new Retrieval(hydrate(indexService.searchLexical(query, maxChunks, scope)), null);
+        }
     }
 
-    private String extractText(MultipartFile file, String filename) throws IOException {
-        String lower = filename.toLowerCase();
-        if (lower.endsWith(".docx")) {
-            try (XWPFDocument document = new XWPFDocument(file.getInputStream());
-                 XWPFWordExtractor extractor = new XWPFWordExtractor(document)) {
-                return extractor.getText();
+    private Retrieval retrieveRanked(String query, int maxChunks, RagScope scope) {
+        // Los índices están partidos por proyecto y sprint, no por archivo: un archivo se recorre directo.
+        if (scope.getFileName() != null) {
+            float[] queryEmbedding = embeddingService.embedQuery(query);
+            return new Retrieval(hydrate(searchVectors(queryEmbedding, maxChunks, scope)), queryEmbedding);
+        }
+        boolean hybrid = hybridRetrieval && indexService.isLexicalReady();
+        if (hybrid && looksLikeKeywordQuery(query)) {
+            List<VectorIndex.Hit> lexicalHits = indexService.searchLexical(query, maxChunks, scope);
+            if (!lexicalHits.isEmpty()) {
+                return new Retrieval(hydrate(lexicalHits), null);
             }
         }
-        if (!lower.endsWith(".txt") && !lower.endsWith(".md")) {
-            throw new IllegalArgumentException("Solo se permiten archivos .txt, .md o .docx.");
+        float[] queryEmbedding = embeddingService.embedQuery(query);
+        if (!hybrid) {
+            return new Retrieval(hydrate(searchVectors(queryEmbedding, maxChunks, scope)), queryEmbedding);
         }
 
-        try (BufferedReader reader = new BufferedReader(
-                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
-            StringBuilder builder = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                builder.append(line).append("\n");
-            }
-            return builder.toString();
+        // Cada lista aporta más candidatos que los pedidos para que la fusión tenga de dónde elegir.
+        int candidates = maxChunks * FUSION_CANDIDATE_FACTOR;
+        List<VectorIndex.Hit> vectorHits = searchVectors(queryEmbedding, candidates, scope);
+        List<VectorIndex.Hit> lexicalHits = indexService.searchLexical(query, candidates, scope);
+        return new Retrieval(
+                hydrate(RankFusion.reciprocalRank(rrfK, maxChunks, List.of(vectorHits, lexicalHits))), queryEmbedding);
+    }
+
+    private List<VectorIndex.Hit> searchVectors(float[] queryEmbedding, int k, RagScope scope) {
+        if (vectorStore.isOracle()) {
+            return searchDatabase(queryEmbedding, k, scope);
+        }
+        if (indexService.isReady() && scope.getFileName() == null) {
+            return indexService.search(queryEmbedding, k, scope);
         }
+        return scanChunks(queryEmbedding, k, scope);
     }
 
-    private List<String> splitIntoChunks(String content) {
-        List<String> chunks = new ArrayList<>();
-        if (!StringUtils.hasText(content)) {
-            return chunks;
+    // Se puntúa cada fila con un heap de tamaño fijo; el texto solo se carga para las ganadoras.
+    private List<VectorIndex.Hit> scanChunks(float[] queryEmbedding, int k, RagScope scope) {
+        float[] normalizedQuery = VectorMath.normalize(queryEmbedding);
+        if (normalizedQuery == null) {
+            return new ArrayList<>();
         }
+        TopK best = new TopK(k);
+        for (Object[] row : repository.findEmbeddingsInScope(
+                scope.getProyectoId(), scope.getSprintId(), scope.getFileName())) {
+            best.offer((Long) row[0], similarity(normalizedQuery, (byte[]) row[1], (String) row[2]));
+        }
+        return best.toSortedHits();
+    }
 
-        int index = 0;
-        while (index < content.length()) {
-            int end = Math.min(index + MAX_CHUNK_SIZE, content.length());
-            String chunk = content.substring(index, end).trim();
-            if (StringUtils.hasText(chunk)) {
-                chunks.add(chunk);
-            }
-            if (end == content.length()) {
-                break;
+    // La base ordena por VECTOR_DISTANCE y solo regresan k filas; similitud = 1 - distancia coseno.
+    private List<VectorIndex.Hit> searchDatabase(float[] queryEmbedding, int k, RagScope scope) {
+        List<VectorIndex.Hit> hits = new ArrayList<>();
+        String queryVector = EmbeddingCodec.toVectorText(queryEmbedding);
+        for (Object[] row : repository.findNearestByVectorDistance(
+                queryVector, queryEmbedding.length, embeddingService.getModel(), k,
+                scope.getProyectoId(), scope.getSprintId(), scope.getFileName())) {
+            hits.add(new VectorIndex.Hit(((Number) row[0]).longValue(), 1 - ((Number) row[1]).floatValue()));
+        }
+        return hits;
+    }
+
+    // Un archivo se identifica por su nombre y su alcance: el mismo nombre en otro proyecto o
+    // sprint es otro documento.
+    private static String documentKey(String fileName, Long proyectoId, Long sprintId) {
+        return fileName + "\u0000" + proyectoId + "\u0000" + sprintId;
+    }
+
+    // Consultas cortas con algún identificador: dígitos, separadores internos o camelCase.
+    private boolean looksLikeKeywordQuery(String query) {
+        String[] words = query.trim().split("\\s+");
+        if (words.length > KEYWORD_QUERY_MAX_WORDS) {
+            return false;
+        }
+        for (String word : words) {
+            if (IDENTIFIER.matcher(word).matches()) {
+                return true;
             }
-            index = end - CHUNK_OVERLAP;
-            if (index < 0) {
-                index = end;
+        }
+        return false;
+    }
+
+    // Solo se cargan de la base los fragmentos ganadores, en el orden de los resultados.
+    private List<ScoredChunk> hydrate(List<VectorIndex.Hit> hits) {
+        if (hits.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = hits.stream().map(VectorIndex.Hit::getId).collect(Collectors.toList());
+        Map<Long, RagDocumentChunk> chunksById = repository.findAllById(ids).stream()
+                .collect(Collectors.toMap(RagDocumentChunk::getId, Function.identity()));
+
+        List<ScoredChunk> result = new ArrayList<>(hits.size());
+        for (VectorIndex.Hit hit : hits) {
+            RagDocumentChunk chunk = chunksById.get(hit.getId());
+            if (chunk != null) {
+                result.add(new ScoredChunk(chunk, hit.getScore()));
             }
         }
-        return chunks;
+        return result;
     }
 
-    private String toJson(float[] vector) {
-        try {
-            return objectMapper.writeValueAsString(vector);
-        } catch (JsonProcessingException e) {
-            throw new IllegalStateException("No se pudo serializar el embedding.", e);
+    /**
+     * Coseno contra una consulta ya normalizada. Los embeddings nuevos se guardan con norma 1
+     * y el resto trae su norma en el encabezado, así que basta un producto punto por fila;
+     * solo las filas heredadas en JSON calculan su norma aquí.
+     */
+    private float similarity(float[] normalizedQuery, byte[] binary, String json) {
+        if (binary != null) {
+            float norm = EmbeddingCodec.storedNorm(binary);
+            return norm == 0 ? Float.NaN : EmbeddingCodec.dot(normalizedQuery, binary) / norm;
+        }
+        float[] embedding = fromJson(json);
+        float norm = VectorMath.norm(embedding);
+        if (embedding.length != normalizedQuery.length || norm == 0) {
+            return Float.NaN;
         }
+        return VectorMath.dot(normalizedQuery, embedding) / norm;
     }
 
     private float[] fromJson(String json) {
@@ -179,22 +429,150 @@ public class RagService {
         }
     }
 
-    private double cosineSimilarity(float[] a, float[] b) {
-        if (a.length == 0 || b.length == 0 || a.length != b.length) {
-            return Double.NaN;
+    // holders solo se modifica dentro de compute del mapa, que lo hace atómico por llave.
+    private static class IngestionLock {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int holders;
+    }
+
+    /**
+     * Acumula los fragmentos de una carga y los procesa por grupos del tamaño de lote
+     * de embeddings, para que solo un grupo esté en memoria a la vez.
+     */
+    private class IngestionRun {
+        private final String filename;
+        private final String mimeType;
+        private final String documentHash;
+        private final String model;
+        private final RagScope scope;
+        private final RagIngestionJob job;
+        private final int groupSize = embeddingService.getMaxBatchInputs();
+        private final List<String> pending = new ArrayList<>();
+        private final List<Long> insertedIds = new ArrayList<>();
+
+        private int nextChunkIndex;
+        private int dims;
+        private int saved;
+        private int reused;
+        private int roundTrips;
+
+        IngestionRun(String filename, String mimeType, String documentHash, String model, RagScope scope,
+                RagIngestionJob job) {
+            this.filename = filename;
+            this.mimeType = mimeType;
+            this.documentHash = documentHash;
+            this.model = model;
+            this.scope = scope;
+            this.job = job;
         }
-        double dot = 0;
-        double normA = 0;
-        double normB = 0;
-        for (int i = 0; i < a.length; i++) {
-            dot += a[i] * b[i];
-            normA += a[i] * a[i];
-            normB += b[i] * b[i];
+
+        void accept(String chunk) {
+            pending.add(chunk);
+            job.addChunksTotal(1);
+            if (pending.size() >= groupSize) {
+                flush();
+            }
         }
-        if (normA == 0 || normB == 0) {
-            return Double.NaN;
+
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<String> hashes = pending.stream().map(ContentHash::sha256Hex).collect(Collectors.toList());
+            Map<String, float[]> embeddingsByHash = findExistingEmbeddings(hashes, model);
+            reused += (int) hashes.stream().filter(embeddingsByHash::containsKey).count();
+            embedMissing(pending, hashes, embeddingsByHash);
+            // Se guardan normalizados para que la búsqueda sea un producto punto directo.
+            embeddingsByHash.replaceAll((hash, embedding) -> {
+                float[] normalized = VectorMath.normalize(embedding);
+                return normalized != null ? normalized : embedding;
+            });
+            job.addChunksEmbedded(pending.size());
+
+            List<RagDocumentChunk> entities = new ArrayList<>(pending.size());
+            for (int i = 0; i < pending.size(); i++) {
+                float[] embedding = embeddingsByHash.get(hashes.get(i));
+                dims = embedding.length;
+
+                RagDocumentChunk entity = new RagDocumentChunk();
+                entity.setFileName(filename);
+                entity.setMimeType(mimeType);
+                entity.setChunkIndex(nextChunkIndex++);
+                entity.setChunkText(pending.get(i));
+                entity.setEmbedding(EmbeddingCodec.encode(embedding));
+                entity.setEmbeddingDims(embedding.length);
+                entity.setEmbeddingModel(model);
+                entity.setContentHash(hashes.get(i));
+                entity.setDocumentHash(documentHash);
+                entity.setProyectoId(scope.getProyectoId());
+                entity.setSprintId(scope.getSprintId());
+                entities.add(entity);
+            }
+            roundTrips += batchWriter.insertAll(entities);
+            for (RagDocumentChunk entity : entities) {
+                insertedIds.add(entity.getId());
+                indexService.add(entity.getId(), scope, embeddingsByHash.get(entity.getContentHash()),
+                        entity.getChunkText());
+            }
+            saved += entities.size();
+            job.addChunksStored(entities.size());
+            pending.clear();
+        }
+
+        // Deshace los grupos ya confirmados de una carga que falló.
+        void discard(Exception cause) {
+            if (insertedIds.isEmpty()) {
+                return;
+            }
+            try {
+                batchWriter.deleteAll(insertedIds);
+                for (Long id : insertedIds) {
+                    indexService.remove(id);
+                }
+                logger.warn("RAG: carga de {} fallida, se borraron {} fragmentos parciales", filename, insertedIds.size());
+            } catch (RuntimeException e) {
+                cause.addSuppressed(e);
+                logger.error("RAG: no se pudieron borrar los fragmentos parciales de {}: {}", filename, insertedIds, e);
+            }
+        }
+    }
+
+    /**
+     * Texto de contexto para el prompt, los ids de los fragmentos que lo forman y el
+     * embedding de la consulta si la búsqueda lo calculó (null si no).
+     */
+    public static class RetrievedContext {
+        private final String text;
+        private final List<Long> chunkIds;
+        private final float[] queryEmbedding;
+
+        RetrievedContext(String text, List<Long> chunkIds, float[] queryEmbedding) {
+            this.text = text;
+            this.chunkIds = chunkIds;
+            this.queryEmbedding = queryEmbedding;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public List<Long> getChunkIds() {
+            return chunkIds;
+        }
+
+        public float[] getQueryEmbedding() {
+            return queryEmbedding;
+        }
+    }
+
+    private static class Retrieval {
+        private final List<ScoredChunk> chunks;
+        private final float[] queryEmbedding;
+
+        Retrieval(List<ScoredChunk> chunks, float[] queryEmbedding) {
+            this.chunks = chunks;
+            this.queryEmbedding = queryEmbedding;
         }
-        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
     }
 
     private static class ScoredChunk {
@@ -0,0 +1,124 @@
+package com.springboot.MyTodoList.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.MyTodoList.dto.TareaDTO;
+import com.springboot.MyTodoList.model.SprintPlanCache;
+import com.springboot.MyTodoList.repository.SprintPlanCacheRepository;
+import com.springboot.MyTodoList.util.ContentHash;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Planeaciones de sprint ya generadas, guardadas en la tabla sprint_plan_cache para que
+ * subir otra vez la misma descripción responda sin llamar al modelo.
+ *
+ * La llave cubre todo lo que cambia la respuesta: la descripción (sin diferencias de
+ * espacios), los fragmentos de contexto recuperados, el modelo, la temperatura y el
+ * prompt. Si se carga un documento nuevo la recuperación cambia y la llave también.
+ * Las entradas vencen tras ttl-hours. Si la tabla no está disponible se planea sin caché.
+ */
+@Service
+public class SprintPlanCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SprintPlanCacheService.class);
+
+    private final SprintPlanCacheRepository repository;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final long ttlHours;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public SprintPlanCacheService(
+            SprintPlanCacheRepository repository,
+            ObjectMapper objectMapper,
+            @Value("${sprint.plan.cache.enabled:true}") boolean enabled,
+            @Value("${sprint.plan.cache.ttl-hours:24}") long ttlHours) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.ttlHours = ttlHours;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public static String key(String description, List<Long> chunkIds, String model, double temperature, String prompt) {
+        String normalized = description.trim().replaceAll("\\s+", " ");
+        String ids = chunkIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        return ContentHash.sha256Hex(String.join("\n",
+                model, String.valueOf(temperature), ContentHash.sha256Hex(prompt), ids, normalized));
+    }
+
+    /**
+     * Tareas guardadas con esa llave, o vacío si no hay o ya vencieron.
+     */
+    public Optional<List<TareaDTO>> find(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        try {
+            Optional<SprintPlanCache> entry = repository.findById(key);
+            if (entry.isEmpty() || entry.get().getExpiresAt().isBefore(LocalDateTime.now())) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+            List<TareaDTO> tareas = objectMapper.readValue(
+                    entry.get().getResultJson(), new TypeReference<List<TareaDTO>>() {});
+            repository.incrementHits(key);
+            hits.incrementAndGet();
+            return Optional.of(tareas);
+        } catch (DataAccessException | JsonProcessingException e) {
+            logger.warn("No se pudo leer la caché de planeación: {}", e.getMessage());
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Guarda las tareas con esa llave. Si ya había una fila (por ejemplo, al refrescar) se
+     * reemplaza el resultado y el vencimiento, pero se conservan created_at y hit_count.
+     */
+    public void put(String key, String model, List<TareaDTO> tareas) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            SprintPlanCache entry = repository.findById(key).orElseGet(() -> {
+                SprintPlanCache created = new SprintPlanCache();
+                created.setCacheKey(key);
+                return created;
+            });
+            entry.setModel(model);
+            entry.setResultJson(objectMapper.writeValueAsString(tareas));
+            entry.setExpiresAt(LocalDateTime.now().plusHours(ttlHours));
+            repository.save(entry);
+            // La tabla solo crece con planeaciones nuevas; al guardar se limpian las vencidas.
+            repository.deleteExpired(LocalDateTime.now());
+        } catch (DataAccessException | JsonProcessingException e) {
+            logger.warn("No se pudo guardar la caché de planeación: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ttlHours", ttlHours);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+}
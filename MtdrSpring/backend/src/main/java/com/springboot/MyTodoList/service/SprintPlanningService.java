@@ -4,9 +4,10 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -25,6 +26,9 @@ import com.springboot.MyTodoList.dto.TareaDTO;
 @Service
 public class SprintPlanningService {
 
+    private static final double TEMPERATURE = 0.2;
+    private static final String SYSTEM_PROMPT = "Eres un project manager senior que desglosa requisitos en tareas técnicas para un equipo de desarrollo. Usa siempre el contexto si está presente y responde únicamente en JSON.";
+
     private static final String JSON_FORMAT_INSTRUCTIONS = String.join("\n",
             "Devuelve únicamente un JSON válido con el siguiente formato exacto:",
             "{",
@@ -53,23 +57,37 @@ public class SprintPlanningService {
     private final String apiUrl;
     private final String model;
     private final RagService ragService;
+    private final LlmCallGuard callGuard;
+    private final SprintPlanCacheService planCache;
 
     public SprintPlanningService(
-            RestTemplateBuilder restTemplateBuilder,
+            @Qualifier("llmRestTemplate") RestTemplate restTemplate,
             ObjectMapper objectMapper,
             @Value("${openai.api.key:}") String apiKey,
             @Value("${openai.api.url:https://api.openai.com/v1/chat/completions}") String apiUrl,
             @Value("${openai.model:gpt-4o-mini}") String model,
-            RagService ragService) {
-        this.restTemplate = restTemplateBuilder.build();
+            RagService ragService,
+            LlmCallGuard callGuard,
+            SprintPlanCacheService planCache) {
+        this.restTemplate = restTemplate;
         this.objectMapper = objectMapper;
         this.apiKey = apiKey;
         this.apiUrl = apiUrl;
         this.model = model;
         this.ragService = ragService;
+        this.callGuard = callGuard;
+        this.planCache = planCache;
     }
 
     public List<TareaDTO> generarTareas(String descripcionSprint) {
+        return generarTareas(descripcionSprint, false);
+    }
+
+    /**
+     * Con refresh en true se ignora la planeación guardada para la misma descripción y
+     * contexto, se vuelve a llamar al modelo y el resultado reemplaza al anterior.
+     */
+    public List<TareaDTO> generarTareas(String descripcionSprint, boolean refresh) {
         if (!StringUtils.hasText(apiKey)) {
             throw new IllegalStateException("La llave de OpenAI (openai.api.key) no está configurada.");
         }
@@ -78,11 +96,20 @@ public class SprintPlanningService {
         }
 
         try {
-            String context = ragService.buildContextForPrompt(descripcionSprint, 4);
+            RagService.RetrievedContext context = ragService.retrieveContext(descripcionSprint, 4, RagScope.ALL);
+            String cacheKey = SprintPlanCacheService.key(descripcionSprint, context.getChunkIds(), model,
+                    TEMPERATURE, SYSTEM_PROMPT + "\n" + JSON_FORMAT_INSTRUCTIONS);
+            if (!refresh) {
+                Optional<List<TareaDTO>> cached = planCache.find(cacheKey);
+                if (cached.isPresent()) {
+                    return cached.get();
+                }
+            }
+
             Map<String, Object> payload = new HashMap<>();
             payload.put("model", model);
-            payload.put("temperature", 0.2);
-            payload.put("messages", buildMessages(descripcionSprint, context));
+            payload.put("temperature", TEMPERATURE);
+            payload.put("messages", buildMessages(descripcionSprint, context.getText()));
             payload.put("response_format", Map.of("type", "json_object"));
 
             HttpHeaders headers = new HttpHeaders();
@@ -90,13 +117,16 @@ public class SprintPlanningService {
             headers.setBearerAuth(apiKey);
 
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(payload, headers);
-            ResponseEntity<String> response = restTemplate.postForEntity(apiUrl, entity, String.class);
+            ResponseEntity<String> response = callGuard.call("chat",
+                    () -> restTemplate.postForEntity(apiUrl, entity, String.class));
 
             if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
                 throw new IllegalStateException("No se pudo obtener una respuesta del modelo de lenguaje.");
             }
 
-            return parseTareasFromResponse(response.getBody());
+            List<TareaDTO> tareas = parseTareasFromResponse(response.getBody());
+            planCache.put(cacheKey, model, tareas);
+            return tareas;
         } catch (JsonProcessingException e) {
             throw new IllegalStateException("No se pudo procesar la respuesta del modelo de lenguaje.", e);
         } catch (IOException e) {
@@ -114,7 +144,7 @@ public class SprintPlanningService {
         return List.of(
                 Map.of(
                         "role", "system",
-                        "content", "Eres un project manager senior que desglosa requisitos en tareas técnicas para un equipo de desarrollo. Usa siempre el contexto si está presente y responde únicamente en JSON."),
+                        "content", SYSTEM_PROMPT),
                 Map.of(
                         "role", "user",
                         "content", userPrompt));
@@ -0,0 +1,185 @@
+package com.springboot.MyTodoList.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido en memoria con puntaje BM25 para búsqueda por palabras clave.
+ *
+ * El texto se pasa a minúsculas y sin acentos. Los identificadores compuestos
+ * ("PROJ-123", "rag_service", "RagService.java") se indexan completos y también por
+ * partes, para que coincidan tanto la clave exacta como sus pedazos.
+ *
+ * Es seguro para múltiples lectores y un escritor a la vez.
+ */
+public class Bm25Index {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Palabras unidas por '-', '_' o '.' cuentan como un solo identificador.
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}]+(?:[-_.][\\p{L}\\p{N}]+)*");
+    private static final Pattern PARTS = Pattern.compile("[-_.]");
+    private static final Pattern CAMEL_CASE = Pattern.compile("(?<=\\p{Ll})(?=\\p{Lu})");
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // término -> (id del documento -> frecuencia del término en el documento)
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    private final Map<Long, Integer> lengthById = new HashMap<>();
+    private final Map<Long, Set<String>> termsById = new HashMap<>();
+    private long totalLength;
+
+    /**
+     * Indexa el texto del documento. Si el id ya existía, reemplaza la versión anterior.
+     */
+    public void add(long id, String text) {
+        List<String> tokens = tokenize(text);
+        if (tokens.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), term -> new HashMap<>()).put(id, entry.getValue());
+            }
+            lengthById.put(id, tokens.size());
+            termsById.put(id, frequencies.keySet());
+            totalLength += tokens.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            return removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return lengthById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return lengthById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve hasta k ids ordenados por puntaje BM25 descendente. Solo aparecen documentos
+     * que contienen al menos un término de la consulta.
+     */
+    public List<VectorIndex.Hit> search(String query, int k) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty() || k <= 0) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            int documents = lengthById.size();
+            if (documents == 0) {
+                return new ArrayList<>();
+            }
+            double averageLength = (double) totalLength / documents;
+            Map<Long, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<Long, Integer> docs = postings.get(term);
+                if (docs == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (documents - docs.size() + 0.5) / (docs.size() + 0.5));
+                for (Map.Entry<Long, Integer> posting : docs.entrySet()) {
+                    int frequency = posting.getValue();
+                    double lengthRatio = lengthById.get(posting.getKey()) / averageLength;
+                    double score = idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * lengthRatio));
+                    scores.merge(posting.getKey(), score, Double::sum);
+                }
+            }
+            TopK best = new TopK(k);
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                best.offer(entry.getKey(), entry.getValue().floatValue());
+            }
+            return best.toSortedHits();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Separa el texto en términos: identificadores completos, sus partes y las palabras
+     * de un nombre en camelCase.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        Matcher matcher = TOKEN.matcher(text);
+        while (matcher.find()) {
+            String raw = matcher.group();
+            tokens.add(normalize(raw));
+            boolean compound = PARTS.matcher(raw).find();
+            for (String part : compound ? PARTS.split(raw) : new String[] { raw }) {
+                String[] words = CAMEL_CASE.split(part);
+                if (compound) {
+                    tokens.add(normalize(part));
+                }
+                if (words.length > 1) {
+                    for (String word : words) {
+                        tokens.add(normalize(word));
+                    }
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static String normalize(String token) {
+        String decomposed = Normalizer.normalize(token.toLowerCase(), Normalizer.Form.NFD);
+        return ACCENTS.matcher(decomposed).replaceAll("");
+    }
+
+    private boolean removeLocked(long id) {
+        Set<String> terms = termsById.remove(id);
+        if (terms == null) {
+            return false;
+        }
+        for (String term : terms) {
+            Map<Long, Integer> docs = postings.get(term);
+            if (docs != null) {
+                docs.remove(id);
+                if (docs.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= lengthById.remove(id);
+        return true;
+    }
+}
@@ -0,0 +1,16 @@
+package com.springboot.MyTodoList.util;
+
+/**
+ * Parte el texto de un documento en fragmentos conforme llegan sus bloques (ver
+ * {@link DocumentTextExtractor}). Cada implementación recibe en su constructor a quién
+ * entregar los fragmentos.
+ */
+public interface Chunker {
+
+    void append(String block);
+
+    /**
+     * Emite lo que quede pendiente. Se llama una vez al terminar el documento.
+     */
+    void finish();
+}
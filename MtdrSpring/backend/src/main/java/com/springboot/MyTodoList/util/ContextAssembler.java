@@ -0,0 +1,189 @@
+package com.springboot.MyTodoList.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Arma el contexto de un prompt a partir de los fragmentos recuperados, sin pasarse de un
+ * presupuesto de tokens.
+ *
+ * Los fragmentos consecutivos de un mismo documento se unen en un solo bloque quitando el
+ * texto que se repite por el traslape del chunker. Los bloques se agregan en el orden del
+ * mejor fragmento que contienen; el que ya no cabe completo se recorta al espacio que
+ * queda y ahí se detiene el armado.
+ */
+public class ContextAssembler {
+
+    // Por debajo de esto no vale la pena meter un bloque recortado.
+    private static final int MIN_PARTIAL_TOKENS = 24;
+    // Coincidencias más cortas que esto entre fin y principio se consideran casualidad.
+    private static final int MIN_OVERLAP_CHARS = 8;
+
+    private final int maxTokens;
+    private final int maxOverlapChars;
+
+    /**
+     * @param maxTokens       presupuesto de tokens para todo el contexto
+     * @param maxOverlapChars traslape máximo con el que se partieron los fragmentos
+     */
+    public ContextAssembler(int maxTokens, int maxOverlapChars) {
+        this.maxTokens = Math.max(1, maxTokens);
+        this.maxOverlapChars = Math.max(0, maxOverlapChars);
+    }
+
+    /**
+     * @param ranked fragmentos recuperados, del más relevante al menos relevante
+     */
+    public Assembled assemble(List<Chunk> ranked) {
+        List<Block> blocks = mergeAdjacent(ranked);
+        StringBuilder text = new StringBuilder();
+        List<Long> chunkIds = new ArrayList<>();
+        int used = 0;
+        for (Block block : blocks) {
+            String header = (text.length() > 0 ? "\n" : "") + block.header();
+            int headerTokens = TokenCounter.count(header);
+            int bodyTokens = TokenCounter.count(block.text);
+            if (used + headerTokens + bodyTokens <= maxTokens) {
+                text.append(header).append(block.text);
+                chunkIds.addAll(block.chunkIds);
+                used += headerTokens + bodyTokens;
+                continue;
+            }
+            int remaining = maxTokens - used - headerTokens - 1;
+            if (remaining >= MIN_PARTIAL_TOKENS) {
+                String partial = TokenCounter.truncate(block.text, remaining).trim();
+                text.append(header).append(partial).append("...");
+                chunkIds.addAll(block.chunkIds);
+                used += headerTokens + TokenCounter.count(partial) + 1;
+            }
+            break;
+        }
+        // Contar por partes sobreestima un poco (las piezas de la unión se cuentan por separado),
+        // así que el total real nunca pasa del presupuesto.
+        String assembled = text.toString();
+        return new Assembled(assembled, chunkIds, TokenCounter.count(assembled));
+    }
+
+    private List<Block> mergeAdjacent(List<Chunk> ranked) {
+        Map<String, List<Chunk>> byDocument = new LinkedHashMap<>();
+        Map<Long, Integer> rankById = new LinkedHashMap<>();
+        for (int rank = 0; rank < ranked.size(); rank++) {
+            Chunk chunk = ranked.get(rank);
+            if (rankById.putIfAbsent(chunk.id, rank) == null) {
+                byDocument.computeIfAbsent(chunk.document, key -> new ArrayList<>()).add(chunk);
+            }
+        }
+
+        List<Block> blocks = new ArrayList<>();
+        for (List<Chunk> chunks : byDocument.values()) {
+            chunks.sort(Comparator.comparingInt(chunk -> chunk.chunkIndex));
+            Block current = null;
+            for (Chunk chunk : chunks) {
+                int rank = rankById.get(chunk.id);
+                if (current != null && chunk.chunkIndex == current.lastIndex + 1) {
+                    current.text = joinOverlapping(current.text, chunk.text);
+                    current.lastIndex = chunk.chunkIndex;
+                    current.rank = Math.min(current.rank, rank);
+                    current.chunkIds.add(chunk.id);
+                } else {
+                    current = new Block(chunk, rank);
+                    blocks.add(current);
+                }
+            }
+        }
+        blocks.sort(Comparator.comparingInt(block -> block.rank));
+        return blocks;
+    }
+
+    /**
+     * Une dos fragmentos seguidos quitando el sufijo del primero que se repite al principio
+     * del segundo. Si no se encuentra el traslape (por ejemplo, por el recorte de espacios)
+     * se unen con un espacio.
+     */
+    private String joinOverlapping(String first, String second) {
+        int longest = Math.min(maxOverlapChars, Math.min(first.length(), second.length()));
+        for (int length = longest; length >= MIN_OVERLAP_CHARS; length--) {
+            if (first.regionMatches(first.length() - length, second, 0, length)) {
+                return first + second.substring(length);
+            }
+        }
+        return first + " " + second;
+    }
+
+    public static class Chunk {
+        private final long id;
+        private final String fileName;
+        private final String document;
+        private final int chunkIndex;
+        private final String text;
+
+        public Chunk(long id, String fileName, int chunkIndex, String text) {
+            this(id, fileName, fileName, chunkIndex, text);
+        }
+
+        /**
+         * @param document identifica al documento cuando el mismo nombre de archivo puede
+         *                 venir de varios (por ejemplo, en distintos proyectos); solo se unen
+         *                 fragmentos con el mismo documento
+         */
+        public Chunk(long id, String fileName, String document, int chunkIndex, String text) {
+            this.id = id;
+            this.fileName = fileName;
+            this.document = document != null ? document : fileName;
+            this.chunkIndex = chunkIndex;
+            this.text = text != null ? text : "";
+        }
+    }
+
+    public static class Assembled {
+        private final String text;
+        private final List<Long> chunkIds;
+        private final int tokens;
+
+        Assembled(String text, List<Long> chunkIds, int tokens) {
+            this.text = text;
+            this.chunkIds = chunkIds;
+            this.tokens = tokens;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public List<Long> getChunkIds() {
+            return chunkIds;
+        }
+
+        public int getTokens() {
+            return tokens;
+        }
+    }
+
+    private static class Block {
+        private final String fileName;
+        private final int firstIndex;
+        private final List<Long> chunkIds = new ArrayList<>();
+        private int lastIndex;
+        private int rank;
+        private String text;
+
+        Block(Chunk chunk, int rank) {
+            this.fileName = chunk.fileName;
+            this.firstIndex = chunk.chunkIndex;
+            this.lastIndex = chunk.chunkIndex;
+            this.rank = rank;
+            this.text = chunk.text;
+            chunkIds.add(chunk.id);
+        }
+
+        String header() {
+            String range = firstIndex == lastIndex
+                    ? "fragmento " + firstIndex
+                    : "fragmentos " + firstIndex + "-" + lastIndex;
+            return "- Archivo: " + fileName + " (" + range + "): ";
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.springboot.MyTodoList.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.poi.xwpf.usermodel.IBodyElement;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFStyle;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.poi.xwpf.usermodel.XWPFTableCell;
+import org.apache.poi.xwpf.usermodel.XWPFTableRow;
+
+/**
+ * Lee el texto de un documento por bloques (líneas en .txt/.md, párrafos y filas de
+ * tabla en .docx) y los entrega uno a uno, sin armar el texto completo en memoria.
+ *
+ * La estructura del .docx se entrega en Markdown: los párrafos con estilo de título
+ * salen como "# ...", "## ...", y cada párrafo o tabla termina con una línea en blanco.
+ */
+public final class DocumentTextExtractor {
+
+    private static final int MAX_BLOCK_CHARS = 8192;
+    // "heading 1" es el nombre interno de los estilos de título en cualquier idioma de Word;
+    // el id puede venir traducido ("Ttulo1").
+    private static final Pattern HEADING_STYLE = Pattern.compile("(?:heading|t[ií]?tulo|title)\\s*(\\d)?");
+
+    private DocumentTextExtractor() {
+    }
+
+    public static void readBlocks(InputStream input, String filename, Consumer<String> blocks) throws IOException {
+        if (filename.toLowerCase().endsWith(".docx")) {
+            readDocx(input, blocks);
+        } else {
+            readPlainText(input, blocks);
+        }
+    }
+
+    // Las líneas muy largas se entregan en pedazos para que el búfer nunca crezca sin límite.
+    private static void readPlainText(InputStream input, Consumer<String> blocks) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            StringBuilder line = new StringBuilder();
+            int next;
+            while ((next = reader.read()) != -1) {
+                if (next == '\r') {
+                    continue;
+                }
+                line.append((char) next);
+                if (next == '\n' || line.length() >= MAX_BLOCK_CHARS) {
+                    blocks.accept(line.toString());
+                    line.setLength(0);
+                }
+            }
+            if (line.length() > 0) {
+                blocks.accept(line.append('\n').toString());
+            }
+        }
+    }
+
+    // POI carga la estructura del .docx, pero el texto se entrega párrafo por párrafo.
+    private static void readDocx(InputStream input, Consumer<String> blocks) throws IOException {
+        try (XWPFDocument document = new XWPFDocument(input)) {
+            for (IBodyElement element : document.getBodyElements()) {
+                if (element instanceof XWPFParagraph) {
+                    XWPFParagraph paragraph = (XWPFParagraph) element;
+                    int level = headingLevel(document, paragraph);
+                    String prefix = level > 0 && !paragraph.getText().isBlank() ? "#".repeat(level) + " " : "";
+                    blocks.accept(prefix + paragraph.getText() + "\n\n");
+                } else if (element instanceof XWPFTable) {
+                    for (XWPFTableRow row : ((XWPFTable) element).getRows()) {
+                        StringBuilder line = new StringBuilder();
+                        for (XWPFTableCell cell : row.getTableCells()) {
+                            if (line.length() > 0) {
+                                line.append('\t');
+                            }
+                            line.append(cell.getText());
+                        }
+                        blocks.accept(line.append('\n').toString());
+                    }
+                    blocks.accept("\n");
+                }
+            }
+        }
+    }
+
+    // Nivel de título del párrafo (1-6), o 0 si es texto normal.
+    private static int headingLevel(XWPFDocument document, XWPFParagraph paragraph) {
+        String styleId = paragraph.getStyleID();
+        if (styleId == null) {
+            return 0;
+        }
+        XWPFStyle style = document.getStyles() != null ? document.getStyles().getStyle(styleId) : null;
+        String name = style != null && style.getName() != null ? style.getName() : styleId;
+        Matcher matcher = HEADING_STYLE.matcher(name.toLowerCase(Locale.ROOT));
+        if (!matcher.matches()) {
+            return 0;
+        }
+        int level = matcher.group(1) != null ? Integer.parseInt(matcher.group(1)) : 1;
+        return Math.max(1, Math.min(6, level));
+    }
+}
@@ -0,0 +1,115 @@
+package com.springboot.MyTodoList.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Formato binario compacto para guardar embeddings en la columna BLOB embedding_bin.
+ *
+ * Estructura (little-endian):
+ * - 2 bytes: firma 'R' 'V'
+ * - 1 byte: versión del formato
+ * - 1 byte: reservado
+ * - 4 bytes: dimensiones (int32)
+ * - 4 bytes: norma L2 del vector (float32)
+ * - dims * 4 bytes: componentes float32
+ *
+ * Un vector de 1536 dimensiones ocupa ~6 KB frente a ~20-30 KB en JSON.
+ */
+public final class EmbeddingCodec {
+
+    public static final int HEADER_BYTES = 12;
+
+    private static final byte MAGIC_0 = 'R';
+    private static final byte MAGIC_1 = 'V';
+    private static final byte VERSION = 1;
+    // Leen int y float little-endian directo del byte[], sin envolverlo en un ByteBuffer.
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle FLOAT = MethodHandles.byteArrayViewVarHandle(float[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private EmbeddingCodec() {
+    }
+
+    public static byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + vector.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC_0).put(MAGIC_1).put(VERSION).put((byte) 0);
+        buffer.putInt(vector.length);
+        buffer.putFloat(norm(vector));
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    public static float[] decode(byte[] data) {
+        float[] vector = new float[checkedDims(data)];
+        for (int i = 0, offset = HEADER_BYTES; i < vector.length; i++, offset += Float.BYTES) {
+            vector[i] = (float) FLOAT.get(data, offset);
+        }
+        return vector;
+    }
+
+    /**
+     * Producto punto entre la consulta y el vector guardado, leyendo directo del arreglo
+     * de bytes sin decodificarlo a un float[] intermedio ni crear objetos por fila.
+     *
+     * @return NaN si las dimensiones no coinciden
+     */
+    public static float dot(float[] query, byte[] data) {
+        if (checkedDims(data) != query.length) {
+            return Float.NaN;
+        }
+        float sum = 0;
+        for (int i = 0, offset = HEADER_BYTES; i < query.length; i++, offset += Float.BYTES) {
+            sum += query[i] * (float) FLOAT.get(data, offset);
+        }
+        return sum;
+    }
+
+    /**
+     * Texto "[x1,x2,...]" que acepta TO_VECTOR en Oracle 23ai.
+     */
+    public static String toVectorText(float[] vector) {
+        StringBuilder text = new StringBuilder(vector.length * 12 + 2).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(vector[i]);
+        }
+        return text.append(']').toString();
+    }
+
+    public static int dims(byte[] data) {
+        return checkedDims(data);
+    }
+
+    public static float storedNorm(byte[] data) {
+        checkedDims(data);
+        return (float) FLOAT.get(data, 8);
+    }
+
+    public static float norm(float[] vector) {
+        double sum = 0;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    // Valida el encabezado y devuelve las dimensiones.
+    private static int checkedDims(byte[] data) {
+        if (data == null || data.length < HEADER_BYTES || data[0] != MAGIC_0 || data[1] != MAGIC_1) {
+            throw new IllegalArgumentException("El embedding binario no tiene un encabezado válido.");
+        }
+        if (data[2] != VERSION) {
+            throw new IllegalArgumentException("Versión de embedding binario no soportada: " + data[2]);
+        }
+        int dims = (int) INT.get(data, 4);
+        if (dims < 0 || data.length != HEADER_BYTES + dims * Float.BYTES) {
+            throw new IllegalArgumentException("El embedding binario está truncado.");
+        }
+        return dims;
+    }
+}
@@ -0,0 +1,201 @@
+package com.springboot.MyTodoList.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice de búsqueda exacta (fuerza bruta) sobre una matriz contigua de floats.
+ *
+ * Los vectores se guardan normalizados uno tras otro en un solo arreglo, así que la
+ * similitud coseno es un producto punto que recorre la memoria en orden. Las búsquedas
+ * sobre muchas filas se reparten en bloques con fork-join y cada bloque conserva solo
+ * sus k mejores resultados.
+ *
+ * Es seguro para múltiples lectores y un escritor a la vez.
+ */
+public class FlatVectorIndex implements VectorIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // Filas por bloque en el recorrido paralelo; por debajo de esto no conviene repartir.
+    private static final int ROWS_PER_TASK = 4096;
+
+    private final ForkJoinPool pool;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> rowById = new HashMap<>();
+
+    private int dims = -1;
+    private int size;
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private float[] matrix = new float[0];
+
+    public FlatVectorIndex() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public FlatVectorIndex(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public int getDims() {
+        lock.readLock().lock();
+        try {
+            return dims;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return rowById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(long id, float[] vector) {
+        float[] normalized = VectorMath.normalize(vector);
+        if (normalized == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (dims == -1) {
+                dims = normalized.length;
+            } else if (dims != normalized.length) {
+                throw new IllegalArgumentException("El embedding tiene " + normalized.length
+                        + " dimensiones y el índice espera " + dims + ".");
+            }
+            Integer row = rowById.get(id);
+            if (row == null) {
+                ensureCapacity(size + 1);
+                row = size++;
+                ids[row] = id;
+                rowById.put(id, row);
+            }
+            System.arraycopy(normalized, 0, matrix, row * dims, dims);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean addIfAbsent(long id, float[] vector) {
+        lock.writeLock().lock();
+        try {
+            if (rowById.containsKey(id)) {
+                return false;
+            }
+            add(id, vector);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Quita el vector moviendo la última fila a su lugar para mantener la matriz compacta.
+     */
+    @Override
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowById.remove(id);
+            if (row == null) {
+                return false;
+            }
+            int last = --size;
+            if (row != last) {
+                ids[row] = ids[last];
+                System.arraycopy(matrix, last * dims, matrix, row * dims, dims);
+                rowById.put(ids[row], row);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Hit> search(float[] query, int k) {
+        float[] normalized = VectorMath.normalize(query);
+        if (normalized == null || k <= 0) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            if (size == 0 || normalized.length != dims) {
+                return new ArrayList<>();
+            }
+            ScanTask task = new ScanTask(normalized, k, 0, size);
+            TopK best = size > ROWS_PER_TASK ? pool.invoke(task) : task.compute();
+            return best.toSortedHits();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(capacity, ids.length * 2));
+        }
+        if ((long) capacity * dims > matrix.length) {
+            matrix = Arrays.copyOf(matrix, ids.length * dims);
+        }
+    }
+
+    /**
+     * Recorre un rango de filas. Si es grande lo divide en dos mitades que corren en paralelo
+     * y combina sus resultados; cada hoja lleva sus k mejores en un TopK.
+     */
+    private class ScanTask extends RecursiveTask<TopK> {
+        private final float[] query;
+        private final int k;
+        private final int from;
+        private final int to;
+
+        ScanTask(float[] query, int k, int from, int to) {
+            this.query = query;
+            this.k = k;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TopK compute() {
+            if (to - from > ROWS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                ScanTask left = new ScanTask(query, k, from, middle);
+                left.fork();
+                TopK best = new ScanTask(query, k, middle, to).compute();
+                best.addAll(left.join());
+                return best;
+            }
+            TopK best = new TopK(k);
+            for (int row = from; row < to; row++) {
+                best.offer(ids[row], VectorMath.dot(query, matrix, row * dims));
+            }
+            return best;
+        }
+    }
+}
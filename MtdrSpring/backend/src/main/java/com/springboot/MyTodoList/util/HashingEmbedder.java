@@ -0,0 +1,86 @@
+package com.springboot.MyTodoList.util;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Embeddings locales por feature hashing, sin modelo ni red.
+ *
+ * El texto se normaliza (minúsculas, sin acentos) y cada palabra aporta tres tipos de
+ * rasgos: la palabra, el par con la palabra anterior y sus n-gramas de 3 a 5 caracteres
+ * (que acercan variantes como "prueba"/"pruebas"). Cada rasgo se suma con signo en la
+ * posición que indica su hash y el vector se normaliza, así que el coseno mide cuántos
+ * rasgos comparten dos textos ponderados por frecuencia.
+ *
+ * No entiende sinónimos como un modelo neuronal, pero es determinista, rápido y seguro
+ * para usar desde varios hilos.
+ */
+public class HashingEmbedder {
+
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final float WORD_WEIGHT = 1f;
+    private static final float BIGRAM_WEIGHT = 0.7f;
+    private static final float NGRAM_WEIGHT = 0.35f;
+
+    private final int dims;
+
+    public HashingEmbedder(int dims) {
+        if (dims <= 0) {
+            throw new IllegalArgumentException("Las dimensiones deben ser positivas.");
+        }
+        this.dims = dims;
+    }
+
+    public int getDims() {
+        return dims;
+    }
+
+    public float[] embed(String text) {
+        float[] vector = new float[dims];
+        String normalized = ACCENTS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        String previous = null;
+        for (String word : NON_WORD.split(normalized)) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            add(vector, "w:" + word, WORD_WEIGHT);
+            if (previous != null) {
+                add(vector, "b:" + previous + " " + word, BIGRAM_WEIGHT);
+            }
+            String padded = "<" + word + ">";
+            for (int n = 3; n <= 5; n++) {
+                for (int start = 0; start + n <= padded.length(); start++) {
+                    add(vector, "g:" + padded.substring(start, start + n), NGRAM_WEIGHT);
+                }
+            }
+            previous = word;
+        }
+        float[] unit = VectorMath.normalize(vector);
+        return unit != null ? unit : vector;
+    }
+
+    // El bit alto del hash decide el signo para que las colisiones tiendan a cancelarse.
+    private void add(float[] vector, String feature, float weight) {
+        long hash = fnv1a(feature);
+        int position = (int) Long.remainderUnsigned(hash, dims);
+        vector[position] += hash < 0 ? -weight : weight;
+    }
+
+    private static long fnv1a(String feature) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : feature.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        // Mezcla final al estilo de murmur3 para repartir mejor los bits bajos.
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,546 @@
+package com.springboot.MyTodoList.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice HNSW (Hierarchical Navigable Small World) en memoria para búsqueda
+ * aproximada de vecinos más cercanos sobre embeddings.
+ *
+ * Los vectores se normalizan al insertarse, por lo que la similitud coseno se
+ * reduce a un producto punto y la distancia usada internamente es 1 - coseno.
+ *
+ * Parámetros:
+ * - m: vecinos por nodo en las capas superiores (la capa 0 usa 2 * m)
+ * - efConstruction: tamaño de la lista de candidatos al insertar
+ * - efSearch: tamaño de la lista de candidatos al buscar (más alto = mejor recall, más lento)
+ *
+ * Es seguro para múltiples lectores y un escritor a la vez.
+ */
+public class HnswIndex implements VectorIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object compactionLock = new Object();
+
+    private volatile int efSearch;
+    private int dims = -1;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int deletedCount;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private float[][] vectors = new float[INITIAL_CAPACITY][];
+    // links[nodo][nivel] = vecinos del nodo en ese nivel
+    private int[][][] links = new int[INITIAL_CAPACITY][][];
+    private final BitSet deleted = new BitSet();
+    // Marcas de "visitado" reutilizables por hilo para no reservar memoria en cada búsqueda.
+    private final ThreadLocal<VisitedMarks> visitedMarks = ThreadLocal.withInitial(VisitedMarks::new);
+    private final Map<Long, Integer> nodeById = new HashMap<>();
+
+    public HnswIndex(int m, int efConstruction, int efSearch) {
+        this(m, efConstruction, efSearch, 42L);
+    }
+
+    public HnswIndex(int m, int efConstruction, int efSearch, long seed) {
+        if (m < 2) {
+            throw new IllegalArgumentException("El parámetro m del índice HNSW debe ser al menos 2.");
+        }
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = Math.max(efSearch, 1);
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new Random(seed);
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    public void setEfSearch(int efSearch) {
+        this.efSearch = Math.max(efSearch, 1);
+    }
+
+    @Override
+    public int getDims() {
+        lock.readLock().lock();
+        try {
+            return dims;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Número de vectores vigentes (sin contar los eliminados).
+     */
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return nodeById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Inserta un vector. Si el id ya existía, la versión anterior se marca como eliminada.
+     */
+    @Override
+    public void add(long id, float[] vector) {
+        float[] normalized = normalize(vector);
+        if (normalized == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (dims == -1) {
+                dims = normalized.length;
+            } else if (dims != normalized.length) {
+                throw new IllegalArgumentException("El embedding tiene " + normalized.length
+                        + " dimensiones y el índice espera " + dims + ".");
+            }
+            Integer previous = nodeById.get(id);
+            if (previous != null) {
+                markDeleted(previous);
+            }
+            insert(id, normalized);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserta el vector solo si el id todavía no está en el índice.
+     */
+    @Override
+    public boolean addIfAbsent(long id, float[] vector) {
+        lock.writeLock().lock();
+        try {
+            if (nodeById.containsKey(id)) {
+                return false;
+            }
+            add(id, vector);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeById.remove(id);
+            if (node == null) {
+                return false;
+            }
+            markDeleted(node);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Número de nodos eliminados que siguen ocupando lugar en el grafo.
+     */
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reconstruye el grafo solo con los vectores vigentes para descartar los nodos
+     * eliminados. El grafo nuevo se arma sin bloquear a lectores ni escritores; al final
+     * se aplican los cambios que llegaron mientras tanto y se reemplaza el actual.
+     *
+     * @return cuántos nodos eliminados se descartaron
+     */
+    public int compact() {
+        synchronized (compactionLock) {
+            HnswIndex fresh = new HnswIndex(m, efConstruction, efSearch, random.nextLong());
+            lock.readLock().lock();
+            try {
+                fresh.dims = dims;
+                for (int node = 0; node < size; node++) {
+                    if (!deleted.get(node)) {
+                        fresh.insert(ids[node], vectors[node]);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            lock.writeLock().lock();
+            try {
+                fresh.dims = dims;
+                // Altas, reemplazos y bajas que ocurrieron mientras se armaba el grafo nuevo.
+                for (Map.Entry<Long, Integer> entry : nodeById.entrySet()) {
+                    Integer copied = fresh.nodeById.get(entry.getKey());
+                    float[] vector = vectors[entry.getValue()];
+                    if (copied == null || fresh.vectors[copied] != vector) {
+                        if (copied != null) {
+                            fresh.markDeleted(copied);
+                        }
+                        fresh.insert(entry.getKey(), vector);
+                    }
+                }
+                for (Long id : new ArrayList<>(fresh.nodeById.keySet())) {
+                    if (!nodeById.containsKey(id)) {
+                        fresh.markDeleted(fresh.nodeById.get(id));
+                    }
+                }
+                int discarded = deletedCount - fresh.deletedCount;
+                size = fresh.size;
+                entryPoint = fresh.entryPoint;
+                maxLevel = fresh.maxLevel;
+                deletedCount = fresh.deletedCount;
+                ids = fresh.ids;
+                vectors = fresh.vectors;
+                links = fresh.links;
+                deleted.clear();
+                deleted.or(fresh.deleted);
+                nodeById.clear();
+                nodeById.putAll(fresh.nodeById);
+                return discarded;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public List<Hit> search(float[] query, int k) {
+        return search(query, k, efSearch);
+    }
+
+    /**
+     * Devuelve hasta k ids ordenados por similitud coseno descendente.
+     */
+    public List<Hit> search(float[] query, int k, int ef) {
+        float[] normalized = normalize(query);
+        if (normalized == null || k <= 0) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            if (entryPoint == -1 || normalized.length != dims) {
+                return Collections.emptyList();
+            }
+            int current = entryPoint;
+            float currentDist = distance(normalized, vectors[current]);
+            for (int level = maxLevel; level > 0; level--) {
+                boolean changed = true;
+                while (changed) {
+                    changed = false;
+                    for (int neighbor : neighbors(current, level)) {
+                        float dist = distance(normalized, vectors[neighbor]);
+                        if (dist < currentDist) {
+                            currentDist = dist;
+                            current = neighbor;
+                            changed = true;
+                        }
+                    }
+                }
+            }
+
+            // Los nodos eliminados siguen en el grafo y ocupan lugar en la lista de candidatos:
+            // se amplía ef en la misma proporción que hay de eliminados y, si en esa zona del
+            // grafo no alcanzaron k vigentes, se repite con el doble hasta cubrir el índice.
+            int effectiveEf = Math.max(ef, k);
+            int live = size - deletedCount;
+            if (deletedCount > 0) {
+                effectiveEf = (int) Math.min(size, (long) effectiveEf * size / Math.max(live, 1));
+            }
+            List<Hit> hits = new ArrayList<>(k);
+            while (true) {
+                hits.clear();
+                for (Candidate candidate : searchLayer(normalized, current, effectiveEf, 0)) {
+                    if (deleted.get(candidate.node)) {
+                        continue;
+                    }
+                    hits.add(new Hit(ids[candidate.node], 1 - candidate.dist));
+                    if (hits.size() == k) {
+                        break;
+                    }
+                }
+                if (hits.size() >= Math.min(k, live) || effectiveEf >= size) {
+                    break;
+                }
+                effectiveEf = (int) Math.min(size, 2L * effectiveEf);
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(long id, float[] vector) {
+        ensureCapacity(size + 1);
+        int node = size++;
+        int level = randomLevel();
+        ids[node] = id;
+        vectors[node] = vector;
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[0];
+        }
+        nodeById.put(id, node);
+
+        if (entryPoint == -1) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int current = entryPoint;
+        float currentDist = distance(vector, vectors[current]);
+        for (int l = maxLevel; l > level; l--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int neighbor : neighbors(current, l)) {
+                    float dist = distance(vector, vectors[neighbor]);
+                    if (dist < currentDist) {
+                        currentDist = dist;
+                        current = neighbor;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> candidates = searchLayer(vector, current, efConstruction, l);
+            int maxNeighbors = l == 0 ? maxM0 : m;
+            int[] selected = selectNeighbors(candidates, m);
+            links[node][l] = selected;
+            for (int neighbor : selected) {
+                connect(neighbor, node, l, maxNeighbors);
+            }
+            current = candidates.get(0).node;
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    private void connect(int from, int to, int level, int maxNeighbors) {
+        int[] current = links[from][level];
+        if (current.length < maxNeighbors) {
+            int[] expanded = new int[current.length + 1];
+            System.arraycopy(current, 0, expanded, 0, current.length);
+            expanded[current.length] = to;
+            links[from][level] = expanded;
+            return;
+        }
+        // Lista llena: se reemplaza al vecino más lejano si el nuevo nodo está más cerca.
+        float[] base = vectors[from];
+        float newDist = distance(base, vectors[to]);
+        int farthest = -1;
+        float farthestDist = newDist;
+        for (int i = 0; i < current.length; i++) {
+            float dist = distance(base, vectors[current[i]]);
+            if (dist > farthestDist) {
+                farthestDist = dist;
+                farthest = i;
+            }
+        }
+        if (farthest >= 0) {
+            int[] replaced = current.clone();
+            replaced[farthest] = to;
+            links[from][level] = replaced;
+        }
+    }
+
+    /**
+     * Heurística de selección de HNSW: descarta candidatos que están más cerca de un
+     * vecino ya elegido que del nodo base, para mantener el grafo bien conectado.
+     * Si quedan huecos se rellenan con los candidatos descartados más cercanos.
+     */
+    private int[] selectNeighbors(List<Candidate> sortedCandidates, int max) {
+        List<Candidate> selected = new ArrayList<>(max);
+        List<Candidate> discarded = new ArrayList<>();
+        for (Candidate candidate : sortedCandidates) {
+            if (selected.size() >= max) {
+                break;
+            }
+            boolean keep = true;
+            for (Candidate chosen : selected) {
+                if (distance(vectors[candidate.node], vectors[chosen.node]) < candidate.dist) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected.add(candidate);
+            } else {
+                discarded.add(candidate);
+            }
+        }
+        for (int i = 0; i < discarded.size() && selected.size() < max; i++) {
+            selected.add(discarded.get(i));
+        }
+        int[] result = new int[selected.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = selected.get(i).node;
+        }
+        return result;
+    }
+
+    /**
+     * Búsqueda voraz en una capa. Devuelve los candidatos ordenados por distancia ascendente.
+     */
+    private List<Candidate> searchLayer(float[] query, int entry, int ef, int level) {
+        VisitedMarks visited = visitedMarks.get();
+        visited.reset(size);
+        PriorityQueue<Candidate> toVisit = new PriorityQueue<>(Candidate.BY_DISTANCE);
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Candidate.BY_DISTANCE.reversed());
+
+        Candidate start = new Candidate(entry, distance(query, vectors[entry]));
+        visited.mark(entry);
+        toVisit.add(start);
+        best.add(start);
+
+        while (!toVisit.isEmpty()) {
+            Candidate closest = toVisit.poll();
+            if (closest.dist > best.peek().dist && best.size() >= ef) {
+                break;
+            }
+            for (int neighbor : neighbors(closest.node, level)) {
+                if (!visited.mark(neighbor)) {
+                    continue;
+                }
+                float dist = distance(query, vectors[neighbor]);
+                if (best.size() < ef || dist < best.peek().dist) {
+                    Candidate candidate = new Candidate(neighbor, dist);
+                    toVisit.add(candidate);
+                    best.add(candidate);
+                    if (best.size() > ef) {
+                        best.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> result = new ArrayList<>(best);
+        result.sort(Candidate.BY_DISTANCE);
+        return result;
+    }
+
+    private int[] neighbors(int node, int level) {
+        int[][] nodeLinks = links[node];
+        return level < nodeLinks.length ? nodeLinks[level] : new int[0];
+    }
+
+    private void markDeleted(int node) {
+        if (!deleted.get(node)) {
+            deleted.set(node);
+            deletedCount++;
+        }
+        nodeById.remove(ids[node]);
+    }
+
+    private int randomLevel() {
+        double r = 1.0 - random.nextDouble();
+        return (int) Math.floor(-Math.log(r) * levelMultiplier);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        long[] newIds = new long[newCapacity];
+        System.arraycopy(ids, 0, newIds, 0, size);
+        ids = newIds;
+        float[][] newVectors = new float[newCapacity][];
+        System.arraycopy(vectors, 0, newVectors, 0, size);
+        vectors = newVectors;
+        int[][][] newLinks = new int[newCapacity][][];
+        System.arraycopy(links, 0, newLinks, 0, size);
+        links = newLinks;
+    }
+
+    private static float distance(float[] a, float[] b) {
+        return 1 - VectorMath.dot(a, b);
+    }
+
+    private static float[] normalize(float[] vector) {
+        return VectorMath.normalize(vector);
+    }
+
+    private static class VisitedMarks {
+        private int[] stamps = new int[0];
+        private int current;
+
+        void reset(int capacity) {
+            if (stamps.length < capacity) {
+                stamps = new int[Math.max(capacity, stamps.length * 2)];
+                current = 0;
+            }
+            current++;
+            if (current == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                current = 1;
+            }
+        }
+
+        /**
+         * Marca el nodo y devuelve false si ya estaba visitado.
+         */
+        boolean mark(int node) {
+            if (stamps[node] == current) {
+                return false;
+            }
+            stamps[node] = current;
+            return true;
+        }
+    }
+
+    private static class Candidate {
+        static final Comparator<Candidate> BY_DISTANCE = Comparator.comparingDouble(c -> c.dist);
+
+        final int node;
+        final float dist;
+
+        Candidate(int node, float dist) {
+            this.node = node;
+            this.dist = dist;
+        }
+    }
+}
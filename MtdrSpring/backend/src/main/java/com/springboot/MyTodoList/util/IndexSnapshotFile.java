@@ -0,0 +1,202 @@
+package com.springboot.MyTodoList.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.function.Consumer;
+
+/**
+ * Archivo con una copia de los fragmentos indexados (id, proyecto, sprint, embedding y
+ * texto) para arrancar los índices sin recorrer la tabla completa.
+ *
+ * Formato: MAGIC, VERSION y después un registro por fragmento precedido por un byte 1.
+ * Al final va un byte 0, la marca de agua (id más alto incluido) y el número de registros.
+ * Se escribe en un archivo temporal que se mueve sobre el anterior al terminar, así que
+ * nunca queda una copia a medias.
+ *
+ * La copia lleva el texto de los documentos: en sistemas POSIX el archivo se crea con
+ * permisos rw------- y los directorios que falten con rwx------.
+ */
+public final class IndexSnapshotFile {
+
+    private static final int MAGIC = 0x52534E50; // "RSNP"
+    private static final int VERSION = 1;
+    private static final long NULL_ID = Long.MIN_VALUE;
+
+    private IndexSnapshotFile() {
+    }
+
+    /**
+     * Lee todos los registros y devuelve la marca de agua guardada.
+     *
+     * @throws IOException si el archivo no es una copia válida o está incompleto
+     */
+    public static long read(Path file, Consumer<Record> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("El archivo " + file + " no es una copia del índice RAG compatible.");
+            }
+            int count = 0;
+            while (in.readBoolean()) {
+                long id = in.readLong();
+                Long proyectoId = readNullableId(in);
+                Long sprintId = readNullableId(in);
+                byte[] embedding = readBytes(in);
+                byte[] text = readBytes(in);
+                consumer.accept(new Record(id, proyectoId, sprintId, embedding,
+                        text != null ? new String(text, StandardCharsets.UTF_8) : null));
+                count++;
+            }
+            long highWaterMark = in.readLong();
+            if (in.readInt() != count) {
+                throw new IOException("La copia del índice RAG " + file + " está dañada.");
+            }
+            return highWaterMark;
+        } catch (EOFException e) {
+            throw new IOException("La copia del índice RAG " + file + " está incompleta.", e);
+        }
+    }
+
+    public static Writer create(Path file) throws IOException {
+        return new Writer(file);
+    }
+
+    private static FileAttribute<?>[] ownerOnly(Path path, String permissions) {
+        if (!path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            return new FileAttribute<?>[0];
+        }
+        return new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(permissions)) };
+    }
+
+    private static Long readNullableId(DataInputStream in) throws IOException {
+        long value = in.readLong();
+        return value == NULL_ID ? null : value;
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return data;
+    }
+
+    /**
+     * Escribe una copia nueva; solo reemplaza al archivo destino al llamar a {@link #commit}.
+     */
+    public static class Writer implements Closeable {
+        private final Path target;
+        private final Path temporary;
+        private final DataOutputStream out;
+        private int count;
+        private boolean committed;
+
+        private Writer(Path target) throws IOException {
+            this.target = target;
+            Path parent = target.toAbsolutePath().getParent();
+            if (parent != null && !Files.isDirectory(parent)) {
+                Files.createDirectories(parent, ownerOnly(parent, "rwx------"));
+            }
+            this.temporary = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.deleteIfExists(temporary);
+            Files.createFile(temporary, ownerOnly(temporary, "rw-------"));
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        public void write(Record record) throws IOException {
+            out.writeBoolean(true);
+            out.writeLong(record.getId());
+            out.writeLong(record.getProyectoId() != null ? record.getProyectoId() : NULL_ID);
+            out.writeLong(record.getSprintId() != null ? record.getSprintId() : NULL_ID);
+            writeBytes(record.getEmbedding());
+            writeBytes(record.getText() != null ? record.getText().getBytes(StandardCharsets.UTF_8) : null);
+            count++;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Cierra el archivo con la marca de agua y lo mueve sobre la copia anterior.
+         */
+        public void commit(long highWaterMark) throws IOException {
+            out.writeBoolean(false);
+            out.writeLong(highWaterMark);
+            out.writeInt(count);
+            out.close();
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                out.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        private void writeBytes(byte[] data) throws IOException {
+            if (data == null) {
+                out.writeInt(-1);
+                return;
+            }
+            out.writeInt(data.length);
+            out.write(data);
+        }
+    }
+
+    public static class Record {
+        private final long id;
+        private final Long proyectoId;
+        private final Long sprintId;
+        private final byte[] embedding;
+        private final String text;
+
+        /**
+         * @param embedding embedding en el formato de {@link EmbeddingCodec}, o null
+         */
+        public Record(long id, Long proyectoId, Long sprintId, byte[] embedding, String text) {
+            this.id = id;
+            this.proyectoId = proyectoId;
+            this.sprintId = sprintId;
+            this.embedding = embedding;
+            this.text = text;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public Long getProyectoId() {
+            return proyectoId;
+        }
+
+        public Long getSprintId() {
+            return sprintId;
+        }
+
+        public byte[] getEmbedding() {
+            return embedding;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+}
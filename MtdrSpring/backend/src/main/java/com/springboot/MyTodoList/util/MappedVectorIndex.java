@@ -0,0 +1,610 @@
+package com.springboot.MyTodoList.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Índice de búsqueda exacta con los vectores en archivos de segmento mapeados a memoria.
+ *
+ * Los embeddings no viven en el heap: cada segmento es un archivo de tamaño fijo que se
+ * lee con FileChannel.map, así que el corpus puede ser más grande que el heap y al
+ * reiniciar basta con volver a mapear los archivos. Solo el mapa id -> posición queda
+ * en memoria.
+ *
+ * Formato de cada segmento (little-endian, tamaño reservado desde que se crea):
+ * - 32 bytes de encabezado: firma "RVSG", versión, dimensiones, capacidad, filas escritas,
+ *   bandera de sellado y 8 bytes reservados
+ * - tabla de ids: capacidad * 8 bytes
+ * - mapa de bits de filas borradas: capacidad / 64 palabras de 8 bytes
+ * - filas float32 de ancho fijo: capacidad * dims * 4 bytes
+ *
+ * Las filas solo se agregan al segmento activo; borrar marca el bit de la fila. Cuando
+ * se llena, el segmento se sella y se abre otro. {@link #mergeSegments()} compacta los
+ * segmentos sellados con filas borradas en uno nuevo y elimina los archivos viejos.
+ *
+ * Es seguro para múltiples lectores y un escritor a la vez.
+ */
+public class MappedVectorIndex implements VectorIndex, Closeable {
+
+    private static final int MAGIC = 0x47535652; // "RVSG" en little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int COUNT_OFFSET = 16;
+    private static final int SEALED_OFFSET = 20;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.vec");
+    // Un segmento con al menos esta fracción de filas borradas se compacta aunque esté solo.
+    private static final double MERGE_DELETED_RATIO = 0.3;
+
+    private final Path directory;
+    private final int segmentRows;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    // id -> (número de segmento << 32 | fila)
+    private final Map<Long, Long> locations = new HashMap<>();
+
+    private int dims = -1;
+    private final AtomicInteger nextSegmentNumber = new AtomicInteger(1);
+    private Segment active;
+
+    /**
+     * Abre (o crea) el índice en el directorio. Los segmentos existentes se mapean de nuevo.
+     *
+     * @param segmentRows filas por segmento
+     */
+    public MappedVectorIndex(Path directory, int segmentRows) {
+        if (segmentRows < 64) {
+            throw new IllegalArgumentException("Un segmento debe tener al menos 64 filas.");
+        }
+        this.directory = directory;
+        this.segmentRows = segmentRows;
+        try {
+            Files.createDirectories(directory);
+            openExistingSegments();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el índice en " + directory, e);
+        }
+    }
+
+    @Override
+    public int getDims() {
+        lock.readLock().lock();
+        try {
+            return dims;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return locations.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return locations.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(long id, float[] vector) {
+        float[] normalized = VectorMath.normalize(vector);
+        if (normalized == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (dims == -1) {
+                dims = normalized.length;
+            } else if (dims != normalized.length) {
+                throw new IllegalArgumentException("El embedding tiene " + normalized.length
+                        + " dimensiones y el índice espera " + dims + ".");
+            }
+            Long previous = locations.get(id);
+            if (previous != null) {
+                segmentAt(previous).markDeleted(rowAt(previous));
+            }
+            if (active == null || active.isFull()) {
+                if (active != null) {
+                    active.seal();
+                }
+                active = createSegment();
+            }
+            int row = active.append(id, normalized);
+            locations.put(id, location(active.number, row));
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir el segmento de vectores", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean addIfAbsent(long id, float[] vector) {
+        lock.writeLock().lock();
+        try {
+            if (locations.containsKey(id)) {
+                return false;
+            }
+            add(id, vector);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Long location = locations.remove(id);
+            if (location == null) {
+                return false;
+            }
+            segmentAt(location).markDeleted(rowAt(location));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Borra todos los ids que no estén en el conjunto recibido (filas que ya no existen en la base).
+     */
+    public int retainOnly(Set<Long> ids) {
+        lock.writeLock().lock();
+        try {
+            List<Long> stale = new ArrayList<>();
+            for (Long id : locations.keySet()) {
+                if (!ids.contains(id)) {
+                    stale.add(id);
+                }
+            }
+            for (Long id : stale) {
+                remove(id);
+            }
+            return stale.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Recorre los segmentos leyendo directo de los archivos mapeados; si hay varios
+     * segmentos se recorren en paralelo.
+     */
+    @Override
+    public List<Hit> search(float[] query, int k) {
+        float[] normalized = VectorMath.normalize(query);
+        if (normalized == null || k <= 0) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            if (segments.isEmpty() || normalized.length != dims) {
+                return new ArrayList<>();
+            }
+            List<Segment> snapshot = new ArrayList<>(segments.values());
+            TopK best = snapshot.size() == 1
+                    ? snapshot.get(0).scan(normalized, k)
+                    : snapshot.parallelStream()
+                            .map(segment -> segment.scan(normalized, k))
+                            .reduce((left, right) -> {
+                                left.addAll(right);
+                                return left;
+                            })
+                            .orElseGet(() -> new TopK(k));
+            return best.toSortedHits();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compacta los segmentos sellados que tienen filas borradas: agrupa los contiguos cuyas
+     * filas vigentes caben en un segmento y los reescribe en uno nuevo.
+     *
+     * La copia se hace con el candado de lectura, así que las búsquedas siguen corriendo;
+     * al final se toma el de escritura solo para cambiar los segmentos y descartar las filas
+     * que se borraron mientras tanto.
+     *
+     * @return número de segmentos viejos que se eliminaron
+     */
+    public synchronized int mergeSegments() {
+        int merged = 0;
+        List<Segment> group;
+        while (!(group = nextMergeGroup()).isEmpty()) {
+            merged += merge(group);
+        }
+        return merged;
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+            locations.clear();
+            active = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<Segment> nextMergeGroup() {
+        lock.readLock().lock();
+        try {
+            List<Segment> group = new ArrayList<>();
+            int groupLive = 0;
+            for (Segment segment : segments.values()) {
+                boolean candidate = segment != active && segment.isSealed() && segment.deletedRows() > 0;
+                if (candidate && groupLive + segment.liveRows() <= segmentRows) {
+                    group.add(segment);
+                    groupLive += segment.liveRows();
+                    continue;
+                }
+                if (worthMerging(group)) {
+                    return group;
+                }
+                group = new ArrayList<>();
+                groupLive = 0;
+                if (candidate) {
+                    group.add(segment);
+                    groupLive = segment.liveRows();
+                }
+            }
+            return worthMerging(group) ? group : new ArrayList<>();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean worthMerging(List<Segment> group) {
+        if (group.size() > 1) {
+            return true;
+        }
+        return group.size() == 1
+                && group.get(0).deletedRows() >= group.get(0).count() * MERGE_DELETED_RATIO;
+    }
+
+    private int merge(List<Segment> group) {
+        Segment target;
+        List<long[]> moved = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            // Todavía no se registra en segments: las búsquedas no deben verlo hasta el cambio final.
+            target = newSegment();
+            float[] row = new float[dims];
+            for (Segment source : group) {
+                for (int i = 0; i < source.count(); i++) {
+                    if (!source.isDeleted(i)) {
+                        source.read(i, row);
+                        int newRow = target.append(source.id(i), row);
+                        moved.add(new long[] { source.id(i), location(source.number, i), newRow });
+                    }
+                }
+            }
+            target.seal();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo compactar los segmentos de vectores", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (long[] entry : moved) {
+                Long current = locations.get(entry[0]);
+                if (current != null && current == entry[1]) {
+                    locations.put(entry[0], location(target.number, (int) entry[2]));
+                } else {
+                    // Se borró o reemplazó mientras se copiaba.
+                    target.markDeleted((int) entry[2]);
+                }
+            }
+            segments.put(target.number, target);
+            for (Segment source : group) {
+                segments.remove(source.number);
+                source.close();
+                Files.deleteIfExists(source.path);
+            }
+            return group.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo borrar un segmento compactado", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void openExistingSegments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.vec")) {
+            stream.forEach(files::add);
+        }
+        for (Path file : files) {
+            Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+            if (!matcher.matches()) {
+                continue;
+            }
+            Segment segment = Segment.open(Integer.parseInt(matcher.group(1)), file);
+            if (dims == -1) {
+                dims = segment.dims;
+            } else if (segment.dims != dims) {
+                segment.close();
+                throw new IOException("El segmento " + file + " tiene " + segment.dims + " dimensiones y se esperaban " + dims);
+            }
+            segments.put(segment.number, segment);
+            nextSegmentNumber.accumulateAndGet(segment.number + 1, Math::max);
+        }
+        for (Segment segment : segments.values()) {
+            for (int i = 0; i < segment.count(); i++) {
+                if (!segment.isDeleted(i)) {
+                    Long previous = locations.put(segment.id(i), location(segment.number, i));
+                    if (previous != null) {
+                        segmentAt(previous).markDeleted(rowAt(previous));
+                    }
+                }
+            }
+            if (!segment.isSealed()) {
+                if (active != null) {
+                    active.seal();
+                }
+                active = segment;
+            }
+        }
+    }
+
+    private Segment createSegment() throws IOException {
+        Segment segment = newSegment();
+        segments.put(segment.number, segment);
+        return segment;
+    }
+
+    private Segment newSegment() throws IOException {
+        int number = nextSegmentNumber.getAndIncrement();
+        return Segment.create(number, directory.resolve(String.format("segment-%08d.vec", number)), dims, segmentRows);
+    }
+
+    private Segment segmentAt(long location) {
+        return segments.get((int) (location >>> 32));
+    }
+
+    private static int rowAt(long location) {
+        return (int) location;
+    }
+
+    private static long location(int segmentNumber, int row) {
+        return ((long) segmentNumber << 32) | (row & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Un archivo de segmento mapeado completo en memoria.
+     */
+    private static final class Segment {
+        private final int number;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int dims;
+        private final int capacity;
+        private final int idsOffset;
+        private final int deletedOffset;
+        private final int rowsOffset;
+        private int count;
+        private int deleted;
+
+        private Segment(int number, Path path, FileChannel channel, MappedByteBuffer buffer, int dims, int capacity) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.dims = dims;
+            this.capacity = capacity;
+            this.idsOffset = HEADER_BYTES;
+            this.deletedOffset = idsOffset + capacity * Long.BYTES;
+            this.rowsOffset = deletedOffset + bitmapWords(capacity) * Long.BYTES;
+        }
+
+        static Segment create(int number, Path path, int dims, int capacity) throws IOException {
+            long bytes = fileBytes(dims, capacity);
+            if (bytes > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Un segmento de " + capacity + " filas de " + dims
+                        + " dimensiones excede 2 GB; usa menos filas por segmento.");
+            }
+            FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, dims);
+            buffer.putInt(12, capacity);
+            buffer.putInt(COUNT_OFFSET, 0);
+            buffer.putInt(SEALED_OFFSET, 0);
+            return new Segment(number, path, channel, buffer, dims, capacity);
+        }
+
+        static Segment open(int number, Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                if (channel.size() < HEADER_BYTES) {
+                    throw new IOException("Segmento truncado: " + path);
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    throw new IOException("Segmento con formato desconocido: " + path);
+                }
+                int dims = buffer.getInt(8);
+                int capacity = buffer.getInt(12);
+                if (channel.size() != fileBytes(dims, capacity)) {
+                    throw new IOException("Segmento truncado: " + path);
+                }
+                Segment segment = new Segment(number, path, channel, buffer, dims, capacity);
+                segment.count = Math.min(buffer.getInt(COUNT_OFFSET), capacity);
+                for (int i = 0; i < segment.count; i++) {
+                    if (segment.isDeleted(i)) {
+                        segment.deleted++;
+                    }
+                }
+                return segment;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private static long fileBytes(int dims, int capacity) {
+            return HEADER_BYTES + (long) capacity * Long.BYTES + (long) bitmapWords(capacity) * Long.BYTES
+                    + (long) capacity * dims * Float.BYTES;
+        }
+
+        private static int bitmapWords(int capacity) {
+            return (capacity + 63) / 64;
+        }
+
+        int count() {
+            return count;
+        }
+
+        int liveRows() {
+            return count - deleted;
+        }
+
+        int deletedRows() {
+            return deleted;
+        }
+
+        boolean isFull() {
+            return count >= capacity;
+        }
+
+        boolean isSealed() {
+            return buffer.getInt(SEALED_OFFSET) != 0;
+        }
+
+        void seal() {
+            buffer.putInt(SEALED_OFFSET, 1);
+            buffer.force();
+        }
+
+        long id(int row) {
+            return buffer.getLong(idsOffset + row * Long.BYTES);
+        }
+
+        boolean isDeleted(int row) {
+            long word = buffer.getLong(deletedOffset + (row >>> 6) * Long.BYTES);
+            return (word & (1L << (row & 63))) != 0;
+        }
+
+        void markDeleted(int row) {
+            int offset = deletedOffset + (row >>> 6) * Long.BYTES;
+            long word = buffer.getLong(offset);
+            long bit = 1L << (row & 63);
+            if ((word & bit) == 0) {
+                buffer.putLong(offset, word | bit);
+                deleted++;
+            }
+        }
+
+        /**
+         * Escribe la fila y después actualiza el contador del encabezado, para que una caída
+         * a medio escribir no deje una fila incompleta visible al reabrir.
+         */
+        int append(long id, float[] vector) throws IOException {
+            if (isFull()) {
+                throw new IOException("El segmento " + path + " está lleno");
+            }
+            int row = count;
+            buffer.putLong(idsOffset + row * Long.BYTES, id);
+            int offset = rowsOffset + row * dims * Float.BYTES;
+            for (int i = 0; i < dims; i++) {
+                buffer.putFloat(offset + i * Float.BYTES, vector[i]);
+            }
+            count = row + 1;
+            buffer.putInt(COUNT_OFFSET, count);
+            return row;
+        }
+
+        void read(int row, float[] target) {
+            int offset = rowsOffset + row * dims * Float.BYTES;
+            for (int i = 0; i < dims; i++) {
+                target[i] = buffer.getFloat(offset + i * Float.BYTES);
+            }
+        }
+
+        TopK scan(float[] query, int k) {
+            TopK best = new TopK(k);
+            for (int row = 0; row < count; row++) {
+                if (isDeleted(row)) {
+                    continue;
+                }
+                best.offer(id(row), dot(query, rowsOffset + row * dims * Float.BYTES));
+            }
+            return best;
+        }
+
+        private float dot(float[] query, int offset) {
+            float s0 = 0;
+            float s1 = 0;
+            int i = 0;
+            int limit = query.length - (query.length % 2);
+            for (; i < limit; i += 2) {
+                s0 += query[i] * buffer.getFloat(offset + i * Float.BYTES);
+                s1 += query[i + 1] * buffer.getFloat(offset + (i + 1) * Float.BYTES);
+            }
+            for (; i < query.length; i++) {
+                s0 += query[i] * buffer.getFloat(offset + i * Float.BYTES);
+            }
+            return s0 + s1;
+        }
+
+        void close() {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException | RuntimeException e) {
+                // Al cerrar no hay nada que recuperar; el archivo queda como se escribió.
+            }
+        }
+    }
+}
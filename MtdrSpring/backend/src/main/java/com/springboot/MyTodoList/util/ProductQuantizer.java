@@ -0,0 +1,166 @@
+package com.springboot.MyTodoList.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Cuantización por producto (PQ): el vector se parte en m subespacios y cada pedazo se
+ * reemplaza por el índice (un byte) del centroide más cercano de un diccionario de hasta
+ * 256 centroides entrenado con k-means. Un vector ocupa m bytes.
+ *
+ * Para buscar se arma por consulta una tabla con el producto punto de cada pedazo de la
+ * consulta contra cada centroide; el puntaje de un código es la suma de m entradas de esa
+ * tabla.
+ */
+public class ProductQuantizer implements VectorQuantizer {
+
+    private static final int MAX_CENTROIDS = 256;
+
+    private final int dims;
+    // Límites de cada subespacio: [bounds[j], bounds[j + 1])
+    private final int[] bounds;
+    private final int centroidCount;
+    // centroids[j] guarda centroidCount centroides de ancho (bounds[j + 1] - bounds[j]) seguidos
+    private final float[][] centroids;
+
+    private ProductQuantizer(int dims, int[] bounds, int centroidCount, float[][] centroids) {
+        this.dims = dims;
+        this.bounds = bounds;
+        this.centroidCount = centroidCount;
+        this.centroids = centroids;
+    }
+
+    /**
+     * Entrena los diccionarios de cada subespacio con k-means.
+     *
+     * @param subspaces número de subespacios (bytes por vector); no puede superar las dimensiones
+     * @param iterations iteraciones de k-means por subespacio
+     */
+    public static ProductQuantizer train(List<float[]> samples, int subspaces, int iterations, long seed) {
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("Se necesita al menos un vector para entrenar.");
+        }
+        int dims = samples.get(0).length;
+        if (subspaces <= 0 || subspaces > dims) {
+            throw new IllegalArgumentException("Los subespacios deben estar entre 1 y " + dims + ": " + subspaces);
+        }
+        int[] bounds = new int[subspaces + 1];
+        for (int j = 0; j <= subspaces; j++) {
+            bounds[j] = (int) ((long) j * dims / subspaces);
+        }
+        int centroidCount = Math.min(MAX_CENTROIDS, samples.size());
+        List<float[]> shuffled = new ArrayList<>(samples);
+        Collections.shuffle(shuffled, new Random(seed));
+        float[][] centroids = new float[subspaces][];
+        for (int j = 0; j < subspaces; j++) {
+            centroids[j] = kMeans(shuffled, bounds[j], bounds[j + 1], centroidCount, iterations);
+        }
+        return new ProductQuantizer(dims, bounds, centroidCount, centroids);
+    }
+
+    @Override
+    public int getDims() {
+        return dims;
+    }
+
+    @Override
+    public int codeSize() {
+        return centroids.length;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] codes, int offset) {
+        for (int j = 0; j < centroids.length; j++) {
+            codes[offset + j] = (byte) nearest(vector, bounds[j], bounds[j + 1], centroids[j], centroidCount);
+        }
+    }
+
+    @Override
+    public VectorQuantizer.Scorer scorer(float[] query) {
+        int subspaces = centroids.length;
+        float[] table = new float[subspaces * centroidCount];
+        for (int j = 0; j < subspaces; j++) {
+            int from = bounds[j];
+            int width = bounds[j + 1] - from;
+            for (int c = 0; c < centroidCount; c++) {
+                float dot = 0;
+                for (int d = 0; d < width; d++) {
+                    dot += query[from + d] * centroids[j][c * width + d];
+                }
+                table[j * centroidCount + c] = dot;
+            }
+        }
+        return (codes, offset) -> {
+            float sum = 0;
+            for (int j = 0; j < subspaces; j++) {
+                sum += table[j * centroidCount + (codes[offset + j] & 0xFF)];
+            }
+            return sum;
+        };
+    }
+
+    /**
+     * k-means sobre las dimensiones [from, to) de las muestras. Los centroides arrancan en
+     * las primeras muestras (ya barajadas); un grupo que queda vacío conserva su centroide.
+     */
+    private static float[] kMeans(List<float[]> samples, int from, int to, int count, int iterations) {
+        int width = to - from;
+        float[] centroids = new float[count * width];
+        for (int c = 0; c < count; c++) {
+            System.arraycopy(samples.get(c), from, centroids, c * width, width);
+        }
+        int[] assignment = new int[samples.size()];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            boolean changed = false;
+            for (int i = 0; i < samples.size(); i++) {
+                int best = nearest(samples.get(i), from, to, centroids, count);
+                if (best != assignment[i] || iteration == 0) {
+                    changed = true;
+                    assignment[i] = best;
+                }
+            }
+            if (!changed) {
+                break;
+            }
+            float[] sums = new float[count * width];
+            int[] members = new int[count];
+            for (int i = 0; i < samples.size(); i++) {
+                float[] sample = samples.get(i);
+                int c = assignment[i];
+                members[c]++;
+                for (int d = 0; d < width; d++) {
+                    sums[c * width + d] += sample[from + d];
+                }
+            }
+            for (int c = 0; c < count; c++) {
+                if (members[c] == 0) {
+                    continue;
+                }
+                for (int d = 0; d < width; d++) {
+                    centroids[c * width + d] = sums[c * width + d] / members[c];
+                }
+            }
+        }
+        return centroids;
+    }
+
+    private static int nearest(float[] vector, int from, int to, float[] centroids, int count) {
+        int width = to - from;
+        int best = 0;
+        float bestDistance = Float.POSITIVE_INFINITY;
+        for (int c = 0; c < count; c++) {
+            float distance = 0;
+            for (int d = 0; d < width; d++) {
+                float diff = vector[from + d] - centroids[c * width + d];
+                distance += diff * diff;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+}
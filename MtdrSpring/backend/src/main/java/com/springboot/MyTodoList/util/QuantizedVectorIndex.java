@@ -0,0 +1,321 @@
+package com.springboot.MyTodoList.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Índice de búsqueda exhaustiva sobre vectores comprimidos con un {@link VectorQuantizer}
+ * (int8 o PQ) en un solo arreglo de bytes.
+ *
+ * El cuantizador se entrena con los primeros trainingSize vectores; hasta entonces se
+ * guardan en float y se buscan de forma exacta. El entrenamiento corre fuera del candado,
+ * así que las búsquedas no se detienen mientras tanto.
+ *
+ * Como la distancia sobre códigos es aproximada, la búsqueda toma k * rerankFactor
+ * candidatos y, si hay una {@link FullPrecisionSource}, los vuelve a ordenar con sus
+ * embeddings completos. Con rerankFactor 0 devuelve directo los puntajes aproximados.
+ *
+ * Es seguro para múltiples lectores y un escritor a la vez.
+ */
+public class QuantizedVectorIndex implements VectorIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int ROWS_PER_TASK = 4096;
+
+    private final Function<List<float[]>, VectorQuantizer> trainer;
+    private final int trainingSize;
+    private final int rerankFactor;
+    private final FullPrecisionSource fullPrecision;
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+    private final Object trainingLock = new Object();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Vectores normalizados que esperan el entrenamiento.
+    private final Map<Long, float[]> pending = new LinkedHashMap<>();
+    private final Map<Long, Integer> rowById = new HashMap<>();
+    private int dims = -1;
+    private VectorQuantizer quantizer;
+    private int codeSize;
+    private int size;
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private byte[] codes = new byte[0];
+
+    /**
+     * @param trainer crea el cuantizador a partir de una muestra de vectores normalizados
+     * @param trainingSize vectores que se juntan antes de entrenar
+     * @param rerankFactor candidatos por resultado que se vuelven a ordenar en precisión completa
+     * @param fullPrecision fuente de los embeddings completos; null para no reordenar
+     */
+    public QuantizedVectorIndex(Function<List<float[]>, VectorQuantizer> trainer, int trainingSize,
+            int rerankFactor, FullPrecisionSource fullPrecision) {
+        if (trainingSize <= 0) {
+            throw new IllegalArgumentException("trainingSize debe ser positivo: " + trainingSize);
+        }
+        this.trainer = trainer;
+        this.trainingSize = trainingSize;
+        this.rerankFactor = Math.max(0, rerankFactor);
+        this.fullPrecision = fullPrecision;
+    }
+
+    /**
+     * Devuelve los embeddings completos de los ids pedidos; los que falten se quedan con su
+     * puntaje aproximado.
+     */
+    @FunctionalInterface
+    public interface FullPrecisionSource {
+        Map<Long, float[]> load(Collection<Long> ids);
+    }
+
+    @Override
+    public int getDims() {
+        lock.readLock().lock();
+        try {
+            return dims;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size + pending.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return rowById.containsKey(id) || pending.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isTrained() {
+        lock.readLock().lock();
+        try {
+            return quantizer != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes por vector en el índice (código más id), o los del float32 si aún no se entrena.
+     */
+    public int bytesPerVector() {
+        lock.readLock().lock();
+        try {
+            return (quantizer != null ? codeSize : Math.max(dims, 0) * Float.BYTES) + Long.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(long id, float[] vector) {
+        float[] normalized = VectorMath.normalize(vector);
+        if (normalized == null) {
+            return;
+        }
+        boolean train;
+        lock.writeLock().lock();
+        try {
+            if (dims == -1) {
+                dims = normalized.length;
+            } else if (dims != normalized.length) {
+                throw new IllegalArgumentException("El embedding tiene " + normalized.length
+                        + " dimensiones y el índice espera " + dims + ".");
+            }
+            if (quantizer != null) {
+                encodeLocked(id, normalized);
+                return;
+            }
+            pending.put(id, normalized);
+            train = pending.size() >= trainingSize;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (train) {
+            train();
+        }
+    }
+
+    @Override
+    public boolean addIfAbsent(long id, float[] vector) {
+        // El entrenamiento no puede correr con el candado tomado, así que aquí se revisa
+        // y se inserta en dos pasos; un add concurrente del mismo id solo lo reemplaza.
+        if (contains(id)) {
+            return false;
+        }
+        add(id, vector);
+        return true;
+    }
+
+    @Override
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            if (pending.remove(id) != null) {
+                return true;
+            }
+            Integer row = rowById.remove(id);
+            if (row == null) {
+                return false;
+            }
+            int last = --size;
+            if (row != last) {
+                ids[row] = ids[last];
+                System.arraycopy(codes, last * codeSize, codes, row * codeSize, codeSize);
+                rowById.put(ids[row], row);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Hit> search(float[] query, int k) {
+        float[] normalized = VectorMath.normalize(query);
+        if (normalized == null || k <= 0) {
+            return new ArrayList<>();
+        }
+        boolean rerank = fullPrecision != null && rerankFactor > 0;
+        int candidateCount = rerank ? k * rerankFactor : k;
+        TopK candidates = new TopK(candidateCount);
+        lock.readLock().lock();
+        try {
+            if (normalized.length != dims) {
+                return new ArrayList<>();
+            }
+            for (Map.Entry<Long, float[]> entry : pending.entrySet()) {
+                candidates.offer(entry.getKey(), VectorMath.dot(normalized, entry.getValue()));
+            }
+            if (size > 0) {
+                ScanTask task = new ScanTask(quantizer.scorer(normalized), candidateCount, 0, size);
+                candidates.addAll(size > ROWS_PER_TASK ? pool.invoke(task) : task.compute());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Hit> hits = candidates.toSortedHits();
+        // El reordenamiento puede ir a la base, así que corre sin el candado.
+        return rerank ? rerank(normalized, hits, k) : hits;
+    }
+
+    private List<Hit> rerank(float[] query, List<Hit> candidates, int k) {
+        List<Long> candidateIds = new ArrayList<>(candidates.size());
+        for (Hit hit : candidates) {
+            candidateIds.add(hit.getId());
+        }
+        Map<Long, float[]> vectors = fullPrecision.load(candidateIds);
+        TopK best = new TopK(k);
+        for (Hit hit : candidates) {
+            float[] vector = vectors.get(hit.getId());
+            float[] normalized = vector != null && vector.length == query.length ? VectorMath.normalize(vector) : null;
+            best.offer(hit.getId(), normalized != null ? VectorMath.dot(query, normalized) : hit.getScore());
+        }
+        return best.toSortedHits();
+    }
+
+    /**
+     * Entrena con los vectores pendientes y los pasa a códigos. Los que lleguen mientras se
+     * entrena quedan pendientes y se codifican al final.
+     */
+    private void train() {
+        synchronized (trainingLock) {
+            List<float[]> samples;
+            lock.readLock().lock();
+            try {
+                if (quantizer != null || pending.size() < trainingSize) {
+                    return;
+                }
+                samples = new ArrayList<>(pending.values());
+            } finally {
+                lock.readLock().unlock();
+            }
+            VectorQuantizer trained = trainer.apply(samples);
+            lock.writeLock().lock();
+            try {
+                quantizer = trained;
+                codeSize = trained.codeSize();
+                for (Map.Entry<Long, float[]> entry : pending.entrySet()) {
+                    encodeLocked(entry.getKey(), entry.getValue());
+                }
+                pending.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void encodeLocked(long id, float[] normalized) {
+        Integer row = rowById.get(id);
+        if (row == null) {
+            ensureCapacity(size + 1);
+            row = size++;
+            ids[row] = id;
+            rowById.put(id, row);
+        }
+        quantizer.encode(normalized, codes, row * codeSize);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(capacity, ids.length * 2));
+        }
+        if ((long) capacity * codeSize > codes.length) {
+            codes = Arrays.copyOf(codes, ids.length * codeSize);
+        }
+    }
+
+    /**
+     * Igual que en FlatVectorIndex: divide el rango de filas en mitades que corren en
+     * paralelo y cada hoja conserva sus mejores candidatos.
+     */
+    private class ScanTask extends RecursiveTask<TopK> {
+        private final VectorQuantizer.Scorer scorer;
+        private final int k;
+        private final int from;
+        private final int to;
+
+        ScanTask(VectorQuantizer.Scorer scorer, int k, int from, int to) {
+            this.scorer = scorer;
+            this.k = k;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TopK compute() {
+            if (to - from > ROWS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                ScanTask left = new ScanTask(scorer, k, from, middle);
+                left.fork();
+                TopK best = new ScanTask(scorer, k, middle, to).compute();
+                best.addAll(left.join());
+                return best;
+            }
+            TopK best = new TopK(k);
+            for (int row = from; row < to; row++) {
+                best.offer(ids[row], scorer.score(codes, row * codeSize));
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.springboot.MyTodoList.util;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combina varias listas de resultados con Reciprocal Rank Fusion (RRF).
+ *
+ * Cada documento suma 1 / (k + posición) por cada lista en la que aparece. Solo usa las
+ * posiciones, así que no importa que BM25 y coseno tengan escalas distintas.
+ */
+public final class RankFusion {
+
+    private RankFusion() {
+    }
+
+    public static List<VectorIndex.Hit> reciprocalRank(int k, int limit, List<List<VectorIndex.Hit>> rankings) {
+        Map<Long, Float> fused = new HashMap<>();
+        for (List<VectorIndex.Hit> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                fused.merge(ranking.get(rank).getId(), 1f / (k + rank + 1), Float::sum);
+            }
+        }
+        if (fused.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        TopK best = new TopK(limit);
+        for (Map.Entry<Long, Float> entry : fused.entrySet()) {
+            best.offer(entry.getKey(), entry.getValue());
+        }
+        return best.toSortedHits();
+    }
+}
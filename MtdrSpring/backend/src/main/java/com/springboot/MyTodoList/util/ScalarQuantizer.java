@@ -0,0 +1,83 @@
+package com.springboot.MyTodoList.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cuantización escalar a 8 bits: cada dimensión se lleva a un byte sin signo dentro del
+ * rango [mínimo, máximo] visto al entrenar. Ocupa la cuarta parte que un float32.
+ *
+ * Para la consulta q, dot(q, x) ≈ Σ q[d]·min[d] + Σ (q[d]·escala[d])·código[d]; el primer
+ * término y los pesos se calculan una vez por consulta.
+ */
+public class ScalarQuantizer implements VectorQuantizer {
+
+    private final float[] min;
+    private final float[] scale;
+
+    private ScalarQuantizer(float[] min, float[] scale) {
+        this.min = min;
+        this.scale = scale;
+    }
+
+    /**
+     * Calcula el rango de cada dimensión a partir de una muestra de vectores normalizados.
+     */
+    public static ScalarQuantizer train(List<float[]> samples) {
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("Se necesita al menos un vector para entrenar.");
+        }
+        int dims = samples.get(0).length;
+        float[] min = new float[dims];
+        float[] max = new float[dims];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        for (float[] sample : samples) {
+            for (int d = 0; d < dims; d++) {
+                min[d] = Math.min(min[d], sample[d]);
+                max[d] = Math.max(max[d], sample[d]);
+            }
+        }
+        float[] scale = new float[dims];
+        for (int d = 0; d < dims; d++) {
+            scale[d] = (max[d] - min[d]) / 255f;
+        }
+        return new ScalarQuantizer(min, scale);
+    }
+
+    @Override
+    public int getDims() {
+        return min.length;
+    }
+
+    @Override
+    public int codeSize() {
+        return min.length;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] codes, int offset) {
+        for (int d = 0; d < min.length; d++) {
+            int code = scale[d] == 0 ? 0 : Math.round((vector[d] - min[d]) / scale[d]);
+            codes[offset + d] = (byte) Math.max(0, Math.min(255, code));
+        }
+    }
+
+    @Override
+    public VectorQuantizer.Scorer scorer(float[] query) {
+        float[] weights = new float[min.length];
+        float base = 0;
+        for (int d = 0; d < min.length; d++) {
+            weights[d] = query[d] * scale[d];
+            base += query[d] * min[d];
+        }
+        float bias = base;
+        return (codes, offset) -> {
+            float sum = 0;
+            for (int d = 0; d < weights.length; d++) {
+                sum += weights[d] * (codes[offset + d] & 0xFF);
+            }
+            return bias + sum;
+        };
+    }
+}
@@ -0,0 +1,192 @@
+package com.springboot.MyTodoList.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché de respuestas por parecido semántico de la pregunta.
+ *
+ * Una respuesta solo se reutiliza si la nueva pregunta recuperó exactamente los mismos
+ * fragmentos (en el mismo alcance) y su embedding tiene un coseno de al menos
+ * similarityThreshold con el de la pregunta original. Así una pregunta parecida pero con
+ * otro contexto nunca recibe una respuesta vieja.
+ *
+ * Las entradas se agrupan por conjunto de fragmentos; cuando se pasa de maxEntries se
+ * descarta el grupo usado hace más tiempo. Las vencidas se descartan al consultarlas.
+ */
+public class SemanticAnswerCache {
+
+    // Preguntas distintas guardadas para un mismo conjunto de fragmentos.
+    private static final int MAX_ENTRIES_PER_GROUP = 8;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final float similarityThreshold;
+    private final LinkedHashMap<Key, List<CacheEntry>> groups = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private int size;
+
+    public SemanticAnswerCache(int maxEntries, long ttlMillis, float similarityThreshold) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.similarityThreshold = similarityThreshold;
+    }
+
+    /**
+     * Busca la respuesta de la pregunta más parecida con el mismo alcance y fragmentos.
+     */
+    public synchronized String find(String scope, Collection<Long> chunkIds, float[] questionEmbedding) {
+        float[] normalized = VectorMath.normalize(questionEmbedding);
+        List<CacheEntry> entries = normalized != null ? groups.get(new Key(scope, chunkIds)) : null;
+        String best = null;
+        float bestScore = similarityThreshold;
+        if (entries != null) {
+            Iterator<CacheEntry> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                CacheEntry entry = iterator.next();
+                if (entry.isExpired(ttlMillis)) {
+                    iterator.remove();
+                    size--;
+                    continue;
+                }
+                if (entry.embedding.length != normalized.length) {
+                    continue;
+                }
+                float score = VectorMath.dot(normalized, entry.embedding);
+                if (score >= bestScore) {
+                    bestScore = score;
+                    best = entry.answer;
+                }
+            }
+            if (entries.isEmpty()) {
+                groups.remove(new Key(scope, chunkIds));
+            }
+        }
+        (best != null ? hits : misses).incrementAndGet();
+        return best;
+    }
+
+    public synchronized void put(String scope, Collection<Long> chunkIds, float[] questionEmbedding, String answer) {
+        float[] normalized = VectorMath.normalize(questionEmbedding);
+        if (normalized == null || answer == null) {
+            return;
+        }
+        List<CacheEntry> entries = groups.computeIfAbsent(new Key(scope, chunkIds), key -> new ArrayList<>());
+        if (entries.size() >= MAX_ENTRIES_PER_GROUP) {
+            entries.remove(0);
+            size--;
+        }
+        entries.add(new CacheEntry(normalized, answer));
+        size++;
+        Iterator<Map.Entry<Key, List<CacheEntry>>> eldest = groups.entrySet().iterator();
+        while (size > maxEntries && eldest.hasNext()) {
+            List<CacheEntry> evicted = eldest.next().getValue();
+            if (evicted == entries) {
+                continue;
+            }
+            size -= evicted.size();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Descarta las respuestas que se construyeron con alguno de estos fragmentos.
+     */
+    public synchronized int invalidateChunks(Collection<Long> chunkIds) {
+        int removed = 0;
+        Iterator<Map.Entry<Key, List<CacheEntry>>> iterator = groups.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, List<CacheEntry>> group = iterator.next();
+            if (group.getKey().containsAny(chunkIds)) {
+                removed += group.getValue().size();
+                iterator.remove();
+            }
+        }
+        size -= removed;
+        invalidations.addAndGet(removed);
+        return removed;
+    }
+
+    public synchronized void clear() {
+        groups.clear();
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public Map<String, Object> stats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("similarityThreshold", similarityThreshold);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("invalidations", invalidations.get());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+        return stats;
+    }
+
+    /**
+     * Alcance más el conjunto de ids de fragmentos, sin importar el orden en que se recuperaron.
+     */
+    private static final class Key {
+        private final String scope;
+        private final long[] chunkIds;
+
+        Key(String scope, Collection<Long> chunkIds) {
+            this.scope = scope;
+            this.chunkIds = chunkIds.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        }
+
+        boolean containsAny(Collection<Long> ids) {
+            for (Long id : ids) {
+                if (id != null && Arrays.binarySearch(chunkIds, id) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return scope.equals(key.scope) && Arrays.equals(chunkIds, key.chunkIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * scope.hashCode() + Arrays.hashCode(chunkIds);
+        }
+    }
+
+    private static class CacheEntry {
+        final float[] embedding;
+        final String answer;
+        final long createdAt = System.currentTimeMillis();
+
+        CacheEntry(float[] embedding, String answer) {
+            this.embedding = embedding;
+            this.answer = answer;
+        }
+
+        boolean isExpired(long ttlMillis) {
+            return ttlMillis > 0 && System.currentTimeMillis() - createdAt > ttlMillis;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.springboot.MyTodoList.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Parte el texto respetando su estructura y midiendo en tokens.
+ *
+ * Junta párrafos completos (separados por una línea en blanco) hasta llegar a
+ * targetTokens. Un título Markdown ("# ...", también los que genera
+ * {@link DocumentTextExtractor} para .docx) siempre abre un fragmento nuevo y se queda
+ * con el texto que le sigue. Los párrafos de más de maxTokens se parten por oraciones y,
+ * si una oración sola no cabe, por tokens. Ningún fragmento pasa de maxTokens.
+ *
+ * Como los cortes caen en límites de párrafo u oración, no se usa traslape.
+ */
+public class StructuredChunker implements Chunker {
+
+    private static final Pattern HEADING = Pattern.compile("#{1,6}\\s+\\S.*");
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?…:;])\\s+");
+    // Una línea sin saltos se procesa en pedazos para no acumularla entera en memoria.
+    private static final int MAX_PENDING_CHARS = 8192;
+
+    private final int targetTokens;
+    private final int maxTokens;
+    private final Consumer<String> chunks;
+    private final StringBuilder line = new StringBuilder();
+    private final StringBuilder paragraph = new StringBuilder();
+    private final StringBuilder chunk = new StringBuilder();
+    private int chunkTokens;
+    private boolean chunkHasBody;
+    // El párrafo en construcción ya emitió oraciones; lo que sigue se une con un espacio.
+    private boolean paragraphContinues;
+
+    public StructuredChunker(int targetTokens, int maxTokens, Consumer<String> chunks) {
+        if (targetTokens <= 0 || maxTokens < targetTokens) {
+            throw new IllegalArgumentException("El máximo de tokens debe ser mayor o igual al objetivo.");
+        }
+        this.targetTokens = targetTokens;
+        this.maxTokens = maxTokens;
+        this.chunks = chunks;
+    }
+
+    @Override
+    public void append(String block) {
+        for (int i = 0; i < block.length(); i++) {
+            char next = block.charAt(i);
+            if (next == '\r') {
+                continue;
+            }
+            if (next == '\n') {
+                handleLine(line.toString());
+                line.setLength(0);
+            } else {
+                line.append(next);
+            }
+        }
+        if (line.length() >= MAX_PENDING_CHARS) {
+            paragraph.append(line);
+            line.setLength(0);
+            splitOversizedParagraph(true);
+        }
+    }
+
+    @Override
+    public void finish() {
+        if (line.length() > 0) {
+            handleLine(line.toString());
+            line.setLength(0);
+        }
+        endParagraph();
+        flushChunk();
+    }
+
+    private void handleLine(String text) {
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) {
+            endParagraph();
+            return;
+        }
+        if (HEADING.matcher(trimmed).matches()) {
+            endParagraph();
+            flushChunk();
+            addUnit(trimmed, TokenCounter.count(trimmed), "\n\n");
+            chunkHasBody = false;
+            return;
+        }
+        paragraph.append(text).append('\n');
+        splitOversizedParagraph(false);
+    }
+
+    private void endParagraph() {
+        String text = paragraph.toString().trim();
+        String separator = paragraphContinues ? " " : "\n\n";
+        paragraph.setLength(0);
+        paragraphContinues = false;
+        if (text.isEmpty()) {
+            return;
+        }
+        int tokens = TokenCounter.count(text);
+        if (tokens <= maxTokens) {
+            addUnit(text, tokens, separator);
+            return;
+        }
+        List<String> pieces = splitSentences(text);
+        for (int i = 0; i < pieces.size(); i++) {
+            addUnit(pieces.get(i), TokenCounter.count(pieces.get(i)), i == 0 ? separator : " ");
+        }
+    }
+
+    /**
+     * Si el párrafo en construcción ya no cabe en un fragmento, emite sus oraciones
+     * completas y deja en el búfer solo la última, que puede seguir creciendo.
+     */
+    private void splitOversizedParagraph(boolean force) {
+        if (!force && paragraph.length() < maxTokens) {
+            return;
+        }
+        String text = paragraph.toString();
+        if (TokenCounter.count(text) <= maxTokens) {
+            return;
+        }
+        List<String> pieces = splitSentences(text.trim());
+        for (int i = 0; i < pieces.size() - 1; i++) {
+            addUnit(pieces.get(i), TokenCounter.count(pieces.get(i)), i == 0 && !paragraphContinues ? "\n\n" : " ");
+        }
+        // Se conserva el espacio o salto final para no pegar la pieza con la siguiente línea.
+        String retained = pieces.get(pieces.size() - 1);
+        int end = text.length();
+        while (end > 0 && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        paragraph.setLength(0);
+        paragraph.append(retained).append(text, end, text.length());
+        paragraphContinues = true;
+    }
+
+    // Oraciones del párrafo; las que solas pasan de maxTokens se cortan por tokens.
+    private List<String> splitSentences(String text) {
+        List<String> pieces = new ArrayList<>();
+        for (String sentence : SENTENCE_END.split(text)) {
+            String rest = sentence.trim();
+            while (!rest.isEmpty() && TokenCounter.count(rest) > maxTokens) {
+                String head = TokenCounter.truncate(rest, maxTokens);
+                if (head.trim().isEmpty()) {
+                    head = rest.substring(0, Math.min(rest.length(), maxTokens));
+                }
+                pieces.add(head.trim());
+                rest = rest.substring(head.length()).trim();
+            }
+            if (!rest.isEmpty()) {
+                pieces.add(rest);
+            }
+        }
+        return pieces;
+    }
+
+    private void addUnit(String text, int tokens, String separator) {
+        int separatorTokens = chunk.length() > 0 ? TokenCounter.count(separator) : 0;
+        boolean overTarget = chunkTokens + separatorTokens + tokens > targetTokens;
+        boolean overMax = chunkTokens + separatorTokens + tokens > maxTokens;
+        if (chunk.length() > 0 && (overMax || (overTarget && chunkHasBody))) {
+            flushChunk();
+            separatorTokens = 0;
+        }
+        if (chunk.length() > 0) {
+            chunk.append(separator);
+        }
+        chunk.append(text);
+        chunkTokens += separatorTokens + tokens;
+        chunkHasBody = true;
+    }
+
+    private void flushChunk() {
+        String text = chunk.toString().trim();
+        chunk.setLength(0);
+        chunkTokens = 0;
+        chunkHasBody = false;
+        if (!text.isEmpty()) {
+            chunks.accept(text);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.springboot.MyTodoList.util;
+
+import java.util.function.Consumer;
+
+/**
+ * Parte texto en fragmentos de tamaño fijo con traslape conforme va llegando.
+ *
+ * Solo guarda en memoria el fragmento en construcción: cada vez que el búfer rebasa
+ * maxChunkSize se emite un fragmento y se conservan los últimos overlap caracteres.
+ */
+public class TextChunker implements Chunker {
+
+    private final int maxChunkSize;
+    private final int overlap;
+    private final Consumer<String> chunks;
+    private final StringBuilder buffer = new StringBuilder();
+
+    public TextChunker(int maxChunkSize, int overlap, Consumer<String> chunks) {
+        if (overlap < 0 || overlap >= maxChunkSize) {
+            throw new IllegalArgumentException("El traslape debe ser menor que el tamaño del fragmento.");
+        }
+        this.maxChunkSize = maxChunkSize;
+        this.overlap = overlap;
+        this.chunks = chunks;
+    }
+
+    @Override
+    public void append(String text) {
+        buffer.append(text);
+        while (buffer.length() > maxChunkSize) {
+            emit(buffer.substring(0, maxChunkSize));
+            buffer.delete(0, maxChunkSize - overlap);
+        }
+    }
+
+    @Override
+    public void finish() {
+        if (buffer.length() > 0) {
+            emit(buffer.toString());
+            buffer.setLength(0);
+        }
+    }
+
+    private void emit(String raw) {
+        String chunk = raw.trim();
+        if (!chunk.isEmpty()) {
+            chunks.accept(chunk);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.springboot.MyTodoList.util;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Conteo local de tokens para medir prompts sin llamar al proveedor.
+ *
+ * Parte el texto igual que la pre-tokenización de cl100k/o200k (palabras con su espacio
+ * inicial, números de hasta tres cifras, signos de puntuación, espacios) y estima cuántos
+ * tokens BPE ocupa cada pieza: las palabras cortas son un token y las largas se parten
+ * cada ~4 caracteres. Sobreestima un poco en inglés y se acerca bastante en español.
+ */
+public final class TokenCounter {
+
+    private static final Pattern PIECE = Pattern.compile(
+            "[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+");
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private TokenCounter() {
+    }
+
+    public static int count(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int tokens = 0;
+        Matcher matcher = PIECE.matcher(text);
+        while (matcher.find()) {
+            tokens += pieceTokens(matcher.end() - matcher.start());
+        }
+        return tokens;
+    }
+
+    /**
+     * Prefijo más largo del texto que cabe en maxTokens, cortado al final de una pieza.
+     */
+    public static String truncate(String text, int maxTokens) {
+        if (text == null || maxTokens <= 0) {
+            return "";
+        }
+        int tokens = 0;
+        int end = 0;
+        Matcher matcher = PIECE.matcher(text);
+        while (matcher.find()) {
+            tokens += pieceTokens(matcher.end() - matcher.start());
+            if (tokens > maxTokens) {
+                return text.substring(0, end);
+            }
+            end = matcher.end();
+        }
+        return text;
+    }
+
+    private static int pieceTokens(int length) {
+        return (length + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+}
@@ -0,0 +1,131 @@
+package com.springboot.MyTodoList.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Selección de los k mejores puntajes con un min-heap de tamaño fijo sobre arreglos
+ * primitivos: cada candidato cuesta O(log k) y no reserva memoria.
+ *
+ * La raíz del heap es el peor de los k que se llevan, así que un candidato se descarta
+ * con una sola comparación cuando no lo supera.
+ */
+public class TopK {
+
+    private final long[] ids;
+    private final float[] scores;
+    private int size;
+
+    public TopK(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k debe ser mayor que cero.");
+        }
+        this.ids = new long[k];
+        this.scores = new float[k];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Puntaje mínimo que debe superar un candidato para entrar; -infinito si aún hay lugar.
+     */
+    public float threshold() {
+        return size < ids.length ? Float.NEGATIVE_INFINITY : scores[0];
+    }
+
+    /**
+     * Ofrece un candidato. Los puntajes NaN se ignoran.
+     *
+     * @return true si el candidato quedó entre los k mejores
+     */
+    public boolean offer(long id, float score) {
+        if (Float.isNaN(score)) {
+            return false;
+        }
+        if (size < ids.length) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (score <= scores[0]) {
+            return false;
+        }
+        ids[0] = id;
+        scores[0] = score;
+        siftDown(0, size);
+        return true;
+    }
+
+    public void addAll(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.ids[i], other.scores[i]);
+        }
+    }
+
+    /**
+     * Devuelve los resultados ordenados por puntaje descendente.
+     */
+    public List<VectorIndex.Hit> toSortedHits() {
+        long[] sortedIds = ids.clone();
+        float[] sortedScores = scores.clone();
+        // Heapsort sobre las copias: al sacar siempre el mínimo, el arreglo queda descendente.
+        TopK heap = new TopK(sortedIds, sortedScores, size);
+        for (int end = size - 1; end > 0; end--) {
+            heap.swap(0, end);
+            heap.siftDown(0, end);
+        }
+        List<VectorIndex.Hit> hits = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            hits.add(new VectorIndex.Hit(sortedIds[i], sortedScores[i]));
+        }
+        return hits;
+    }
+
+    private TopK(long[] ids, float[] scores, int size) {
+        this.ids = ids;
+        this.scores = scores;
+        this.size = size;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= scores[index]) {
+                return;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index, int limit) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < limit && scores[left] < scores[smallest]) {
+                smallest = left;
+            }
+            if (right < limit && scores[right] < scores[smallest]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(smallest, index);
+            index = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
@@ -0,0 +1,53 @@
+package com.springboot.MyTodoList.util;
+
+import java.util.List;
+
+/**
+ * Índice en memoria de embeddings para buscar los vecinos más parecidos por coseno.
+ *
+ * Las implementaciones normalizan los vectores al insertarlos y deben ser seguras para
+ * varios lectores y un escritor a la vez.
+ */
+public interface VectorIndex {
+
+    /**
+     * Inserta un vector. Si el id ya existía, reemplaza la versión anterior.
+     */
+    void add(long id, float[] vector);
+
+    /**
+     * Inserta el vector solo si el id todavía no está en el índice.
+     */
+    boolean addIfAbsent(long id, float[] vector);
+
+    boolean remove(long id);
+
+    boolean contains(long id);
+
+    int size();
+
+    int getDims();
+
+    /**
+     * Devuelve hasta k ids ordenados por similitud coseno descendente.
+     */
+    List<Hit> search(float[] query, int k);
+
+    class Hit {
+        private final long id;
+        private final float score;
+
+        public Hit(long id, float score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public float getScore() {
+            return score;
+        }
+    }
+}
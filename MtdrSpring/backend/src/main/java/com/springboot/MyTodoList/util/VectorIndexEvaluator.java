@@ -0,0 +1,118 @@
+package com.springboot.MyTodoList.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mide qué tanto se parecen los resultados de un índice aproximado a los exactos.
+ *
+ * Para cada consulta calcula los k vecinos reales con un {@link FlatVectorIndex} y
+ * reporta, por índice candidato, el recall@k promedio (fracción de los k reales que
+ * aparecen en sus k resultados), la latencia media y los bytes por vector.
+ */
+public final class VectorIndexEvaluator {
+
+    private VectorIndexEvaluator() {
+    }
+
+    /**
+     * @param vectors vectores que se cargan en todos los índices
+     * @param queries consultas a evaluar
+     * @param candidates índices vacíos a comparar, por nombre
+     */
+    public static List<Result> evaluate(Map<Long, float[]> vectors, List<float[]> queries, int k,
+            Map<String, VectorIndex> candidates) {
+        FlatVectorIndex exact = new FlatVectorIndex();
+        for (Map.Entry<Long, float[]> entry : vectors.entrySet()) {
+            exact.add(entry.getKey(), entry.getValue());
+            for (VectorIndex candidate : candidates.values()) {
+                candidate.add(entry.getKey(), entry.getValue());
+            }
+        }
+        List<Set<Long>> truth = new ArrayList<>(queries.size());
+        for (float[] query : queries) {
+            truth.add(ids(exact.search(query, k)));
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (Map.Entry<String, VectorIndex> candidate : candidates.entrySet()) {
+            VectorIndex index = candidate.getValue();
+            double recall = 0;
+            long nanos = 0;
+            for (int q = 0; q < queries.size(); q++) {
+                long start = System.nanoTime();
+                List<VectorIndex.Hit> hits = index.search(queries.get(q), k);
+                nanos += System.nanoTime() - start;
+                Set<Long> expected = truth.get(q);
+                if (expected.isEmpty()) {
+                    recall += 1;
+                    continue;
+                }
+                int found = 0;
+                for (VectorIndex.Hit hit : hits) {
+                    if (expected.contains(hit.getId())) {
+                        found++;
+                    }
+                }
+                recall += (double) found / expected.size();
+            }
+            int count = Math.max(queries.size(), 1);
+            int bytes = index instanceof QuantizedVectorIndex
+                    ? ((QuantizedVectorIndex) index).bytesPerVector()
+                    : Math.max(index.getDims(), 0) * Float.BYTES + Long.BYTES;
+            results.add(new Result(candidate.getKey(), recall / count, nanos / 1000.0 / count, bytes));
+        }
+        return results;
+    }
+
+    private static Set<Long> ids(List<VectorIndex.Hit> hits) {
+        Set<Long> ids = new HashSet<>();
+        for (VectorIndex.Hit hit : hits) {
+            ids.add(hit.getId());
+        }
+        return ids;
+    }
+
+    public static class Result {
+        private final String name;
+        private final double recall;
+        private final double averageMicros;
+        private final int bytesPerVector;
+
+        Result(String name, double recall, double averageMicros, int bytesPerVector) {
+            this.name = name;
+            this.recall = recall;
+            this.averageMicros = averageMicros;
+            this.bytesPerVector = bytesPerVector;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getRecall() {
+            return recall;
+        }
+
+        public double getAverageMicros() {
+            return averageMicros;
+        }
+
+        public int getBytesPerVector() {
+            return bytesPerVector;
+        }
+
+        public Map<String, Object> toSummary() {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("name", name);
+            summary.put("recall", recall);
+            summary.put("averageMicros", averageMicros);
+            summary.put("bytesPerVector", bytesPerVector);
+            return summary;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.springboot.MyTodoList.util;
+
+/**
+ * Operaciones básicas sobre embeddings en float32.
+ *
+ * El producto punto está desenrollado con cuatro acumuladores independientes para que
+ * el JIT pueda usar instrucciones SIMD y no quede atado a una sola cadena de sumas.
+ */
+public final class VectorMath {
+
+    private VectorMath() {
+    }
+
+    public static float dot(float[] a, float[] b) {
+        return dot(a, b, 0);
+    }
+
+    /**
+     * Producto punto entre a y el vector que empieza en offset dentro de una matriz plana.
+     */
+    public static float dot(float[] a, float[] matrix, int offset) {
+        int length = a.length;
+        int limit = length - (length % 4);
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int i = 0;
+        for (; i < limit; i += 4) {
+            s0 += a[i] * matrix[offset + i];
+            s1 += a[i + 1] * matrix[offset + i + 1];
+            s2 += a[i + 2] * matrix[offset + i + 2];
+            s3 += a[i + 3] * matrix[offset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[i] * matrix[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    public static float norm(float[] vector) {
+        return (float) Math.sqrt(dot(vector, vector));
+    }
+
+    /**
+     * Devuelve una copia con norma 1, o null si el vector está vacío o es cero.
+     */
+    public static float[] normalize(float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return null;
+        }
+        float norm = norm(vector);
+        if (norm == 0 || Float.isNaN(norm)) {
+            return null;
+        }
+        float inverse = 1 / norm;
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * inverse;
+        }
+        return normalized;
+    }
+}
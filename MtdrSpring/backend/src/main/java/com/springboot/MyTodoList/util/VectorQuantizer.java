@@ -0,0 +1,34 @@
+package com.springboot.MyTodoList.util;
+
+/**
+ * Comprime embeddings normalizados a códigos de bytes y calcula la similitud entre una
+ * consulta en float y un código comprimido (distancia asimétrica): la consulta nunca se
+ * cuantiza, así que el único error es el de los vectores guardados.
+ */
+public interface VectorQuantizer {
+
+    int getDims();
+
+    /**
+     * Bytes que ocupa el código de un vector.
+     */
+    int codeSize();
+
+    /**
+     * Escribe el código del vector en codes a partir de offset.
+     */
+    void encode(float[] vector, byte[] codes, int offset);
+
+    /**
+     * Prepara lo que se pueda calcular una sola vez por consulta. El Scorer resultante es
+     * de solo lectura y se puede usar desde varios hilos.
+     */
+    Scorer scorer(float[] query);
+
+    interface Scorer {
+        /**
+         * Producto punto aproximado entre la consulta y el código que empieza en offset.
+         */
+        float score(byte[] codes, int offset);
+    }
+}
@@ -0,0 +1,58 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.springboot.MyTodoList.util.Bm25Index;
+import com.springboot.MyTodoList.util.RankFusion;
+import com.springboot.MyTodoList.util.VectorIndex;
+
+public class Bm25IndexTest {
+
+    @Test
+    void exactIdentifierRanksFirst() {
+        Bm25Index index = new Bm25Index();
+        index.add(1L, "La tarea PROJ-123 quedó bloqueada por la migración de la base.");
+        index.add(2L, "El sprint de octubre incluye tareas de migración y pruebas.");
+        index.add(3L, "RagService arma el contexto para el chat con los fragmentos.");
+
+        assertThat(index.search("PROJ-123", 3)).extracting(VectorIndex.Hit::getId).containsExactly(1L);
+        assertThat(index.search("ragservice", 3).get(0).getId()).isEqualTo(3L);
+        assertThat(index.search("migracion", 3)).extracting(VectorIndex.Hit::getId).containsOnly(1L, 2L);
+    }
+
+    @Test
+    void tokenizerKeepsCompoundIdentifiersAndParts() {
+        assertThat(Bm25Index.tokenize("Ver RagService.java y PROJ-12"))
+                .contains("ver", "ragservice.java", "ragservice", "java", "rag", "service", "proj-12", "proj", "12");
+    }
+
+    @Test
+    void removedDocumentsAreNotReturned() {
+        Bm25Index index = new Bm25Index();
+        index.add(1L, "despliegue en kubernetes");
+        index.add(2L, "despliegue manual");
+
+        index.remove(1L);
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.search("kubernetes", 5)).isEmpty();
+    }
+
+    @Test
+    void reciprocalRankFusionFavoursDocumentsInBothLists() {
+        List<VectorIndex.Hit> vector = List.of(hit(1), hit(2), hit(3));
+        List<VectorIndex.Hit> lexical = List.of(hit(4), hit(2), hit(5));
+
+        List<VectorIndex.Hit> fused = RankFusion.reciprocalRank(60, 3, List.of(vector, lexical));
+
+        assertThat(fused).extracting(VectorIndex.Hit::getId).startsWith(2L).hasSize(3);
+    }
+
+    private static VectorIndex.Hit hit(long id) {
+        return new VectorIndex.Hit(id, 0);
+    }
+}
@@ -0,0 +1,89 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.springboot.MyTodoList.util.ContextAssembler;
+import com.springboot.MyTodoList.util.TextChunker;
+import com.springboot.MyTodoList.util.TokenCounter;
+
+public class ContextAssemblerTest {
+
+    private static final String DOCUMENT = buildDocument();
+
+    @Test
+    void mergesConsecutiveChunksWithoutRepeatingTheOverlap() {
+        List<String> pieces = new ArrayList<>();
+        TextChunker chunker = new TextChunker(200, 40, pieces::add);
+        chunker.append(DOCUMENT);
+        chunker.finish();
+
+        List<ContextAssembler.Chunk> ranked = List.of(
+                new ContextAssembler.Chunk(12L, "plan.txt", 2, pieces.get(2)),
+                new ContextAssembler.Chunk(50L, "otro.txt", 0, "Notas sueltas de otro archivo."),
+                new ContextAssembler.Chunk(11L, "plan.txt", 1, pieces.get(1)),
+                new ContextAssembler.Chunk(13L, "plan.txt", 3, pieces.get(3)));
+
+        ContextAssembler.Assembled assembled = new ContextAssembler(10_000, 40).assemble(ranked);
+
+        String[] lines = assembled.getText().split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("- Archivo: plan.txt (fragmentos 1-3): ");
+        assertThat(DOCUMENT).contains(lines[0].substring(lines[0].indexOf("): ") + 3));
+        assertThat(lines[1]).isEqualTo("- Archivo: otro.txt (fragmento 0): Notas sueltas de otro archivo.");
+        assertThat(assembled.getChunkIds()).containsExactly(11L, 12L, 13L, 50L);
+        assertThat(assembled.getTokens()).isEqualTo(TokenCounter.count(assembled.getText()));
+    }
+
+    @Test
+    void sameFileNameFromAnotherDocumentIsNotMergedIn() {
+        List<ContextAssembler.Chunk> ranked = List.of(
+                new ContextAssembler.Chunk(1L, "plan.txt", "proyecto-1", 0, "Plan del proyecto uno."),
+                new ContextAssembler.Chunk(2L, "plan.txt", "proyecto-2", 1, "Plan del proyecto dos."));
+
+        ContextAssembler.Assembled assembled = new ContextAssembler(10_000, 40).assemble(ranked);
+
+        assertThat(assembled.getText().split("\n")).containsExactly(
+                "- Archivo: plan.txt (fragmento 0): Plan del proyecto uno.",
+                "- Archivo: plan.txt (fragmento 1): Plan del proyecto dos.");
+        assertThat(assembled.getChunkIds()).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void stopsAtTheTokenBudgetTruncatingTheLastBlock() {
+        List<ContextAssembler.Chunk> ranked = List.of(
+                new ContextAssembler.Chunk(1L, "a.txt", 0, DOCUMENT.substring(0, 400)),
+                new ContextAssembler.Chunk(2L, "b.txt", 0, DOCUMENT.substring(400, 800)),
+                new ContextAssembler.Chunk(3L, "c.txt", 0, DOCUMENT.substring(800, 1200)));
+        int firstBlock = TokenCounter.count("- Archivo: a.txt (fragmento 0): " + DOCUMENT.substring(0, 400));
+
+        ContextAssembler.Assembled assembled = new ContextAssembler(firstBlock + 60, 40).assemble(ranked);
+
+        assertThat(assembled.getTokens()).isLessThanOrEqualTo(firstBlock + 60);
+        assertThat(assembled.getChunkIds()).containsExactly(1L, 2L);
+        assertThat(assembled.getText()).contains("- Archivo: b.txt").endsWith("...").doesNotContain("c.txt");
+    }
+
+    @Test
+    void countsTokensLocally() {
+        assertThat(TokenCounter.count("")).isZero();
+        assertThat(TokenCounter.count("Hola mundo")).isEqualTo(3);
+        assertThat(TokenCounter.count("sprint 2025")).isEqualTo(5);
+        String truncated = TokenCounter.truncate(DOCUMENT, 50);
+        assertThat(DOCUMENT).startsWith(truncated);
+        assertThat(TokenCounter.count(truncated)).isLessThanOrEqualTo(50).isGreaterThan(40);
+    }
+
+    private static String buildDocument() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            text.append("Requisito ").append(i).append(": el equipo entrega la historia ")
+                    .append(i * 7).append(" con pruebas y revisión. ");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.springboot.MyTodoList.util.EmbeddingCodec;
+
+public class EmbeddingCodecTest {
+
+    @Test
+    void roundTripsTheVectorAndItsNorm() {
+        float[] vector = TestVectors.randomVector(new Random(3), 1536);
+
+        byte[] data = EmbeddingCodec.encode(vector);
+
+        assertThat(data).hasSize(EmbeddingCodec.HEADER_BYTES + 1536 * Float.BYTES);
+        assertThat(EmbeddingCodec.decode(data)).containsExactly(vector);
+        assertThat(EmbeddingCodec.dims(data)).isEqualTo(1536);
+        assertThat(EmbeddingCodec.storedNorm(data)).isEqualTo(EmbeddingCodec.norm(vector));
+    }
+
+    @Test
+    void dotReadsTheStoredBytesLikeTheDecodedVector() {
+        Random random = new Random(5);
+        float[] query = TestVectors.randomVector(random, 384);
+        float[] stored = TestVectors.randomVector(random, 384);
+        float expected = 0;
+        for (int i = 0; i < query.length; i++) {
+            expected += query[i] * stored[i];
+        }
+
+        assertThat(EmbeddingCodec.dot(query, EmbeddingCodec.encode(stored))).isEqualTo(expected);
+        assertThat(EmbeddingCodec.dot(new float[] { 1, 0 }, EmbeddingCodec.encode(stored))).isNaN();
+    }
+
+    @Test
+    void rejectsTruncatedOrForeignData() {
+        byte[] data = EmbeddingCodec.encode(new float[] { 0.6f, 0.8f });
+
+        assertThatThrownBy(() -> EmbeddingCodec.dot(new float[] { 1, 0 }, Arrays.copyOf(data, data.length - 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> EmbeddingCodec.decode("[0.6, 0.8]".getBytes()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> EmbeddingCodec.dims(null)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,73 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.springboot.MyTodoList.util.FlatVectorIndex;
+import com.springboot.MyTodoList.util.VectorIndex;
+
+public class FlatVectorIndexTest {
+
+    private static final int DIMS = 30;
+
+    @Test
+    void parallelScanReturnsExactNearestNeighbour() {
+        Random random = new Random(5);
+        FlatVectorIndex index = new FlatVectorIndex();
+        float[][] vectors = new float[10000][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = TestVectors.randomVector(random, DIMS);
+            index.add(i, vectors[i]);
+        }
+
+        for (int q = 0; q < 20; q++) {
+            float[] query = TestVectors.randomVector(random, DIMS);
+            List<VectorIndex.Hit> hits = index.search(query, 5);
+
+            assertThat(hits).hasSize(5);
+            assertThat(hits.get(0).getId()).isEqualTo(bruteForceNearest(vectors, query));
+            assertThat(hits.get(0).getScore()).isGreaterThanOrEqualTo(hits.get(4).getScore());
+        }
+    }
+
+    @Test
+    void removeKeepsRemainingRowsSearchable() {
+        Random random = new Random(9);
+        FlatVectorIndex index = new FlatVectorIndex();
+        float[][] vectors = new float[100][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = TestVectors.randomVector(random, DIMS);
+            index.add(i, vectors[i]);
+        }
+
+        index.remove(10L);
+
+        assertThat(index.size()).isEqualTo(99);
+        assertThat(index.search(vectors[10], 3)).extracting(VectorIndex.Hit::getId).doesNotContain(10L);
+        // La última fila se movió al hueco de la eliminada y debe seguir encontrándose.
+        assertThat(index.search(vectors[99], 1).get(0).getId()).isEqualTo(99L);
+    }
+
+    private static long bruteForceNearest(float[][] vectors, float[] query) {
+        long best = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < vectors.length; i++) {
+            double dot = 0;
+            double norm = 0;
+            for (int d = 0; d < DIMS; d++) {
+                dot += vectors[i][d] * query[d];
+                norm += vectors[i][d] * vectors[i][d];
+            }
+            double score = dot / Math.sqrt(norm);
+            if (score > bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
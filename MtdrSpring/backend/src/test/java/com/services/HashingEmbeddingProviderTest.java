@@ -0,0 +1,53 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.springboot.MyTodoList.service.EmbeddingService;
+import com.springboot.MyTodoList.service.HashingEmbeddingProvider;
+import com.springboot.MyTodoList.util.HashingEmbedder;
+import com.springboot.MyTodoList.util.VectorMath;
+
+public class HashingEmbeddingProviderTest {
+
+    @Test
+    void similarTextsScoreHigherThanUnrelatedOnes() {
+        HashingEmbedder embedder = new HashingEmbedder(384);
+        float[] query = embedder.embed("¿Quién revisa las pruebas de integración del login?");
+        float[] related = embedder.embed("Las pruebas de integracion del módulo de login las revisa QA.");
+        float[] unrelated = embedder.embed("El presupuesto del sprint se aprobó en la junta del lunes.");
+
+        assertThat(VectorMath.norm(query)).isCloseTo(1f, offset(1e-5f));
+        assertThat(VectorMath.dot(query, related)).isGreaterThan(VectorMath.dot(query, unrelated) + 0.2f);
+        assertThat(embedder.embed("Pruebas de Integración")).containsExactly(embedder.embed("pruebas de integracion"));
+    }
+
+    @Test
+    void batchesInParallelKeepingOrderAndCachesQueries() {
+        HashingEmbeddingProvider provider = new HashingEmbeddingProvider(128, 4);
+        try {
+            EmbeddingService service = new EmbeddingService(provider, 10, 60);
+            List<String> texts = new ArrayList<>();
+            for (int i = 0; i < 600; i++) {
+                texts.add("Tarea " + i + " del backlog del equipo " + (i % 7));
+            }
+
+            List<float[]> batch = service.embedBatch(texts);
+
+            assertThat(service.getModel()).isEqualTo("dev-hashing-128");
+            assertThat(batch).hasSize(600);
+            assertThat(batch.get(0)).hasSize(128);
+            assertThat(batch.get(417)).containsExactly(service.embedText(texts.get(417)));
+            float[] first = service.embedQuery("tarea del backlog");
+            assertThat(service.embedQuery("  Tarea del   backlog ")).isSameAs(first);
+            assertThat(service.getQueryCacheStats()).containsEntry("hits", 1L);
+        } finally {
+            provider.shutdown();
+        }
+    }
+}
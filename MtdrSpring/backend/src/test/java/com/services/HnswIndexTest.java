@@ -0,0 +1,132 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.springboot.MyTodoList.util.HnswIndex;
+
+public class HnswIndexTest {
+
+    private static final int DIMS = 32;
+
+    @Test
+    void searchReturnsExactMatchFirst() {
+        Random random = new Random(7);
+        HnswIndex index = new HnswIndex(8, 64, 32);
+        float[][] vectors = new float[500][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = TestVectors.randomVector(random, DIMS);
+            index.add(i, vectors[i]);
+        }
+
+        List<HnswIndex.Hit> hits = index.search(vectors[123], 5);
+
+        assertThat(hits).hasSize(5);
+        assertThat(hits.get(0).getId()).isEqualTo(123L);
+        assertThat(hits.get(0).getScore()).isGreaterThan(0.999f);
+    }
+
+    @Test
+    void removedIdsAreNotReturned() {
+        Random random = new Random(11);
+        HnswIndex index = new HnswIndex(8, 64, 32);
+        float[] target = TestVectors.randomVector(random, DIMS);
+        index.add(1L, target);
+        for (int i = 2; i < 200; i++) {
+            index.add(i, TestVectors.randomVector(random, DIMS));
+        }
+
+        index.remove(1L);
+
+        assertThat(index.contains(1L)).isFalse();
+        assertThat(index.size()).isEqualTo(198);
+        assertThat(index.search(target, 10)).extracting(HnswIndex.Hit::getId).doesNotContain(1L);
+    }
+
+    @Test
+    void highEfSearchRecoversNearestNeighbour() {
+        Random random = new Random(3);
+        HnswIndex index = new HnswIndex(16, 100, 200);
+        float[][] vectors = new float[2000][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = TestVectors.randomVector(random, DIMS);
+            index.add(i, vectors[i]);
+        }
+
+        int found = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = TestVectors.randomVector(random, DIMS);
+            long expected = bruteForceNearest(vectors, query);
+            List<HnswIndex.Hit> hits = index.search(query, 10);
+            if (hits.stream().anyMatch(hit -> hit.getId() == expected)) {
+                found++;
+            }
+        }
+
+        assertThat(found).isGreaterThanOrEqualTo(45);
+    }
+
+    @Test
+    void searchStillFillsKWhenMostNodesAreDeleted() {
+        Random random = new Random(5);
+        HnswIndex index = new HnswIndex(8, 64, 10);
+        for (int i = 0; i < 1000; i++) {
+            index.add(i, TestVectors.randomVector(random, DIMS));
+        }
+        for (int i = 0; i < 1000; i++) {
+            if (i % 5 < 3) {
+                index.remove(i);
+            }
+        }
+
+        for (int q = 0; q < 20; q++) {
+            assertThat(index.search(TestVectors.randomVector(random, DIMS), 10)).hasSize(10);
+        }
+    }
+
+    @Test
+    void compactDropsDeletedNodesAndKeepsTheLiveOnes() {
+        Random random = new Random(13);
+        HnswIndex index = new HnswIndex(8, 64, 32);
+        float[][] vectors = new float[400][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = TestVectors.randomVector(random, DIMS);
+            index.add(i, vectors[i]);
+        }
+        for (int i = 0; i < vectors.length; i += 2) {
+            index.remove(i);
+        }
+        index.add(1L, vectors[0]);
+
+        assertThat(index.compact()).isEqualTo(201);
+
+        assertThat(index.deletedCount()).isZero();
+        assertThat(index.size()).isEqualTo(200);
+        assertThat(index.contains(0L)).isFalse();
+        assertThat(index.search(vectors[0], 1)).extracting(HnswIndex.Hit::getId).containsExactly(1L);
+        assertThat(index.search(vectors[201], 1)).extracting(HnswIndex.Hit::getId).containsExactly(201L);
+    }
+
+    private static long bruteForceNearest(float[][] vectors, float[] query) {
+        long best = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < vectors.length; i++) {
+            double dot = 0;
+            double norm = 0;
+            for (int d = 0; d < DIMS; d++) {
+                dot += vectors[i][d] * query[d];
+                norm += vectors[i][d] * vectors[i][d];
+            }
+            double score = dot / Math.sqrt(norm);
+            if (score > bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,81 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.springboot.MyTodoList.util.EmbeddingCodec;
+import com.springboot.MyTodoList.util.IndexSnapshotFile;
+
+public class IndexSnapshotFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsRecordsAndHighWaterMark() throws IOException {
+        Path file = directory.resolve("snapshot.bin");
+        try (IndexSnapshotFile.Writer writer = IndexSnapshotFile.create(file)) {
+            writer.write(new IndexSnapshotFile.Record(
+                    7L, 1L, null, EmbeddingCodec.encode(new float[] { 0.6f, 0.8f }), "Configurar el pipeline"));
+            writer.write(new IndexSnapshotFile.Record(9L, null, 3L, null, null));
+            writer.commit(12L);
+        }
+
+        List<IndexSnapshotFile.Record> records = new ArrayList<>();
+        long highWaterMark = IndexSnapshotFile.read(file, records::add);
+
+        assertThat(highWaterMark).isEqualTo(12L);
+        assertThat(records).extracting(IndexSnapshotFile.Record::getId).containsExactly(7L, 9L);
+        assertThat(records.get(0).getProyectoId()).isEqualTo(1L);
+        assertThat(records.get(0).getSprintId()).isNull();
+        assertThat(EmbeddingCodec.decode(records.get(0).getEmbedding())).containsExactly(0.6f, 0.8f);
+        assertThat(records.get(0).getText()).isEqualTo("Configurar el pipeline");
+        assertThat(records.get(1).getSprintId()).isEqualTo(3L);
+        assertThat(records.get(1).getEmbedding()).isNull();
+        assertThat(records.get(1).getText()).isNull();
+    }
+
+    @Test
+    void uncommittedWriterKeepsPreviousSnapshotAndTruncatedFileIsRejected() throws IOException {
+        Path file = directory.resolve("snapshot.bin");
+        try (IndexSnapshotFile.Writer writer = IndexSnapshotFile.create(file)) {
+            writer.write(new IndexSnapshotFile.Record(1L, null, null, null, "uno"));
+            writer.commit(1L);
+        }
+        try (IndexSnapshotFile.Writer writer = IndexSnapshotFile.create(file)) {
+            writer.write(new IndexSnapshotFile.Record(2L, null, null, null, "dos"));
+        }
+
+        assertThat(IndexSnapshotFile.read(file, record -> { })).isEqualTo(1L);
+        assertThat(Files.exists(directory.resolve("snapshot.bin.tmp"))).isFalse();
+
+        byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, data.length - 6));
+        assertThatThrownBy(() -> IndexSnapshotFile.read(file, record -> { })).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void snapshotIsReadableOnlyByItsOwner() throws IOException {
+        assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        Path file = directory.resolve("privado").resolve("snapshot.bin");
+        try (IndexSnapshotFile.Writer writer = IndexSnapshotFile.create(file)) {
+            writer.write(new IndexSnapshotFile.Record(1L, null, null, null, "Texto confidencial"));
+            writer.commit(1L);
+        }
+
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file))).isEqualTo("rw-------");
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file.getParent()))).isEqualTo("rwx------");
+    }
+}
@@ -0,0 +1,168 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import com.springboot.MyTodoList.service.LlmCallGuard;
+import com.springboot.MyTodoList.util.CircuitBreaker;
+
+public class LlmCallGuardTest {
+
+    @Test
+    void retriesTransientErrorsUntilSuccess() {
+        LlmCallGuard guard = new LlmCallGuard(true, 3, 1, 5, 1000, 5, 30, 4, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = guard.call("chat", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw error(HttpStatus.SERVICE_UNAVAILABLE, null);
+            }
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts).hasValue(3);
+        assertThat(guard.stats()).containsEntry("retries", 2L);
+    }
+
+    @Test
+    void failsFastWhenRetryAfterExceedsTheLimitAndPropagatesClientErrors() {
+        LlmCallGuard guard = new LlmCallGuard(true, 5, 1, 5, 1000, 10, 30, 4, 0);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> guard.call("chat", () -> {
+            attempts.incrementAndGet();
+            throw error(HttpStatus.TOO_MANY_REQUESTS, "120");
+        })).isInstanceOf(LlmCallGuard.LlmUnavailableException.class).hasMessageContaining("120 s");
+        assertThat(attempts).hasValue(1);
+
+        assertThatThrownBy(() -> guard.call("chat", () -> {
+            attempts.incrementAndGet();
+            throw error(HttpStatus.BAD_REQUEST, null);
+        })).isInstanceOf(HttpClientErrorException.class);
+        assertThat(attempts).hasValue(2);
+
+        // Retry-After en cero se respeta y se reintenta de inmediato.
+        String result = guard.call("chat", () -> {
+            if (attempts.incrementAndGet() == 3) {
+                throw error(HttpStatus.TOO_MANY_REQUESTS, "0");
+            }
+            return "ok";
+        });
+        assertThat(result).isEqualTo("ok");
+    }
+
+    @Test
+    void openCircuitRejectsCallsWithoutReachingTheProvider() {
+        LlmCallGuard guard = new LlmCallGuard(true, 1, 1, 5, 1000, 2, 60, 4, 0);
+        AtomicInteger attempts = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> guard.call("embeddings", () -> {
+                attempts.incrementAndGet();
+                throw error(HttpStatus.BAD_GATEWAY, null);
+            })).isInstanceOf(LlmCallGuard.LlmUnavailableException.class);
+        }
+
+        assertThatThrownBy(() -> guard.call("embeddings", () -> attempts.incrementAndGet()))
+                .isInstanceOf(LlmCallGuard.LlmUnavailableException.class);
+        assertThat(attempts).hasValue(2);
+        // Cada operación tiene su propio circuito.
+        assertThat(guard.call("chat", () -> "ok")).isEqualTo("ok");
+    }
+
+    @Test
+    void halfOpenLetsOneProbeThroughAndClosesOnSuccess() {
+        long[] now = {0};
+        CircuitBreaker breaker = new CircuitBreaker(2, 1000, () -> now[0]);
+        breaker.tryAcquire();
+        breaker.onFailure();
+        breaker.tryAcquire();
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        now[0] = 1000;
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        now[0] = 2000;
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onSuccess();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void bulkheadRejectsCallsBeyondTheLimit() throws Exception {
+        LlmCallGuard guard = new LlmCallGuard(true, 1, 1, 5, 1000, 5, 30, 1, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> guard.call("chat", () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "lento";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> guard.call("chat", () -> "rápido"))
+                .isInstanceOf(LlmCallGuard.LlmUnavailableException.class)
+                .hasMessageContaining("demasiadas llamadas");
+
+        release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo("lento");
+        assertThat(guard.call("chat", () -> "rápido")).isEqualTo("rápido");
+        assertThat(guard.stats()).containsEntry("bulkheadRejected", 1L);
+    }
+
+    @Test
+    void aRetryWaitingForItsBackoffDoesNotHoldTheBulkhead() throws Exception {
+        LlmCallGuard guard = new LlmCallGuard(true, 2, 1, 5, 5000, 5, 30, 1, 0);
+        CountDownLatch failed = new CountDownLatch(1);
+        AtomicInteger attempts = new AtomicInteger();
+        CompletableFuture<String> retrying = CompletableFuture.supplyAsync(() -> guard.call("chat", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                failed.countDown();
+                throw error(HttpStatus.TOO_MANY_REQUESTS, "1");
+            }
+            return "reintento";
+        }));
+        assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(100);
+
+        // Mientras el primero duerme su Retry-After, el único lugar queda libre.
+        assertThat(guard.call("chat", () -> "rápido")).isEqualTo("rápido");
+        assertThat(guard.stats()).containsEntry("inFlight", 0);
+
+        assertThat(retrying.get(5, TimeUnit.SECONDS)).isEqualTo("reintento");
+        assertThat(attempts).hasValue(2);
+        assertThat(guard.stats()).containsEntry("bulkheadRejected", 0L);
+    }
+
+    private static RuntimeException error(HttpStatus status, String retryAfter) {
+        HttpHeaders headers = new HttpHeaders();
+        if (retryAfter != null) {
+            headers.set(HttpHeaders.RETRY_AFTER, retryAfter);
+        }
+        if (status.is5xxServerError()) {
+            return HttpServerErrorException.create(status, status.getReasonPhrase(), headers, null, null);
+        }
+        return HttpClientErrorException.create(status, status.getReasonPhrase(), headers, null, null);
+    }
+}
@@ -0,0 +1,78 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.springboot.MyTodoList.util.MappedVectorIndex;
+import com.springboot.MyTodoList.util.VectorIndex;
+
+public class MappedVectorIndexTest {
+
+    private static final int DIMS = 24;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void searchesAcrossSegmentsAndSurvivesReopen() {
+        Random random = new Random(3);
+        float[][] vectors = new float[500][];
+        try (MappedVectorIndex index = new MappedVectorIndex(directory, 128)) {
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = TestVectors.randomVector(random, DIMS);
+                index.add(i, vectors[i]);
+            }
+            assertThat(index.segmentCount()).isEqualTo(4);
+            assertThat(index.search(vectors[42], 1).get(0).getId()).isEqualTo(42L);
+        }
+
+        try (MappedVectorIndex reopened = new MappedVectorIndex(directory, 128)) {
+            assertThat(reopened.size()).isEqualTo(500);
+            assertThat(reopened.getDims()).isEqualTo(DIMS);
+            List<VectorIndex.Hit> hits = reopened.search(vectors[317], 3);
+            assertThat(hits.get(0).getId()).isEqualTo(317L);
+            assertThat(hits.get(0).getScore()).isCloseTo(1f, offset(1e-5f));
+
+            // Sigue agregando en el segmento que no estaba lleno.
+            reopened.add(1000L, vectors[0]);
+            assertThat(reopened.segmentCount()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void mergeCompactsSegmentsWithDeletedRows() {
+        Random random = new Random(11);
+        float[][] vectors = new float[512][];
+        try (MappedVectorIndex index = new MappedVectorIndex(directory, 128)) {
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = TestVectors.randomVector(random, DIMS);
+                index.add(i, vectors[i]);
+            }
+            // Deja la mitad de las filas de los tres primeros segmentos.
+            for (int i = 0; i < 384; i += 2) {
+                index.remove(i);
+            }
+
+            int merged = index.mergeSegments();
+
+            assertThat(merged).isGreaterThan(1);
+            assertThat(index.segmentCount()).isLessThan(4);
+            assertThat(index.size()).isEqualTo(512 - 192);
+            assertThat(index.search(vectors[10], 5)).extracting(VectorIndex.Hit::getId).doesNotContain(10L);
+            assertThat(index.search(vectors[11], 1).get(0).getId()).isEqualTo(11L);
+            assertThat(index.search(vectors[500], 1).get(0).getId()).isEqualTo(500L);
+        }
+
+        try (MappedVectorIndex reopened = new MappedVectorIndex(directory, 128)) {
+            assertThat(reopened.size()).isEqualTo(512 - 192);
+            assertThat(reopened.search(vectors[201], 1).get(0).getId()).isEqualTo(201L);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.springboot.MyTodoList.util.HashingEmbedder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Servidor local que imita /v1/embeddings y /v1/chat/completions (con y sin stream) de
+ * OpenAI, para probar y medir las rutas de LLM sin red ni costo.
+ *
+ * Las respuestas son deterministas: los embeddings salen de {@link HashingEmbedder} y el
+ * chat responde con chatAnswer aplicado a la última pregunta del usuario. Se pueden
+ * inyectar latencia, errores 500 y 429 (con Retry-After) por probabilidad, o encolar
+ * fallas exactas con {@link #failNext(int, int)}.
+ */
+public class OpenAiStubServer implements AutoCloseable {
+
+    public static final String EMBEDDINGS_PATH = "/v1/embeddings";
+    public static final String CHAT_PATH = "/v1/chat/completions";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final HashingEmbedder embedder;
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Integer> scriptedFailures = new ConcurrentLinkedQueue<>();
+    private final Random random = new Random(7);
+    private final AtomicInteger completedStreams = new AtomicInteger();
+
+    private volatile long latencyMillis;
+    private volatile long streamDelayMillis;
+    private volatile double errorRate;
+    private volatile double rateLimitRate;
+    private volatile int retryAfterSeconds;
+    private volatile String rawStream;
+    private volatile int maxRequestChars = Integer.MAX_VALUE;
+    private volatile Function<String, String> chatAnswer =
+            question -> "Respuesta simulada sobre: " + question.trim() + ". Revisa el contexto del sprint.";
+
+    public OpenAiStubServer(int dims, int threads) throws IOException {
+        this.embedder = new HashingEmbedder(dims);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext(EMBEDDINGS_PATH, exchange -> handle(exchange, this::embeddings));
+        server.createContext(CHAT_PATH, exchange -> handle(exchange, this::chat));
+        server.start();
+    }
+
+    public String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    public OpenAiStubServer latency(long millis) {
+        this.latencyMillis = millis;
+        return this;
+    }
+
+    // Pausa entre fragmentos de una respuesta en stream.
+    public OpenAiStubServer streamDelay(long millis) {
+        this.streamDelayMillis = millis;
+        return this;
+    }
+
+    public OpenAiStubServer errorRate(double rate) {
+        this.errorRate = rate;
+        return this;
+    }
+
+    public OpenAiStubServer rateLimitRate(double rate, int retryAfterSeconds) {
+        this.rateLimitRate = rate;
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    public OpenAiStubServer chatAnswer(Function<String, String> answer) {
+        this.chatAnswer = answer;
+        return this;
+    }
+
+    /**
+     * Las peticiones de embeddings cuyas entradas suman más de maxChars caracteres se
+     * rechazan como lo hace OpenAI al pasar el límite de tokens (400, context_length_exceeded).
+     */
+    public OpenAiStubServer maxRequestChars(int maxChars) {
+        this.maxRequestChars = maxChars;
+        return this;
+    }
+
+    /**
+     * Las respuestas en stream envían este cuerpo SSE tal cual, en lugar de generar eventos.
+     */
+    public OpenAiStubServer rawStream(String body) {
+        this.rawStream = body;
+        return this;
+    }
+
+    /**
+     * Las siguientes count peticiones (a cualquier ruta) responden con el estado indicado.
+     */
+    public OpenAiStubServer failNext(int count, int status) {
+        for (int i = 0; i < count; i++) {
+            scriptedFailures.add(status);
+        }
+        return this;
+    }
+
+    public int requestCount(String path) {
+        AtomicInteger count = requests.get(path);
+        return count != null ? count.get() : 0;
+    }
+
+    // Respuestas en stream que se escribieron completas; las que el cliente cortó no cuentan.
+    public int completedStreams() {
+        return completedStreams.get();
+    }
+
+    public float[] expectedEmbedding(String text) {
+        return embedder.embed(text);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private interface Handler {
+        void respond(HttpExchange exchange, JsonNode request) throws IOException;
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try {
+            requests.computeIfAbsent(exchange.getHttpContext().getPath(), key -> new AtomicInteger()).incrementAndGet();
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            sleep(latencyMillis);
+            Integer scripted = scriptedFailures.poll();
+            if (scripted != null) {
+                sendError(exchange, scripted);
+                return;
+            }
+            double roll;
+            synchronized (random) {
+                roll = random.nextDouble();
+            }
+            if (roll < rateLimitRate) {
+                sendError(exchange, 429);
+            } else if (roll < rateLimitRate + errorRate) {
+                sendError(exchange, 500);
+            } else {
+                handler.respond(exchange, request);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void embeddings(HttpExchange exchange, JsonNode request) throws IOException {
+        JsonNode input = request.path("input");
+        List<String> texts = new ArrayList<>();
+        if (input.isArray()) {
+            input.forEach(item -> texts.add(item.asText()));
+        } else {
+            texts.add(input.asText());
+        }
+        if (texts.stream().mapToInt(String::length).sum() > maxRequestChars) {
+            sendError(exchange, 400, "context_length_exceeded");
+            return;
+        }
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("object", "list");
+        response.put("model", request.path("model").asText());
+        ArrayNode data = response.putArray("data");
+        // Se devuelven en orden inverso para comprobar que el cliente respeta "index".
+        for (int i = texts.size() - 1; i >= 0; i--) {
+            ObjectNode item = data.addObject();
+            item.put("object", "embedding");
+            item.put("index", i);
+            ArrayNode vector = item.putArray("embedding");
+            for (float value : embedder.embed(texts.get(i))) {
+                vector.add(value);
+            }
+        }
+        sendJson(exchange, response);
+    }
+
+    private void chat(HttpExchange exchange, JsonNode request) throws IOException {
+        String question = "";
+        for (JsonNode message : request.path("messages")) {
+            if ("user".equals(message.path("role").asText())) {
+                question = message.path("content").asText();
+            }
+        }
+        int marker = question.lastIndexOf("Pregunta:");
+        String answer = chatAnswer.apply(marker >= 0 ? question.substring(marker + "Pregunta:".length()) : question);
+        if (!request.path("stream").asBoolean(false)) {
+            ObjectNode response = objectMapper.createObjectNode();
+            response.put("object", "chat.completion");
+            response.putArray("choices").addObject()
+                    .put("index", 0)
+                    .put("finish_reason", "stop")
+                    .putObject("message").put("role", "assistant").put("content", answer);
+            sendJson(exchange, response);
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream body = exchange.getResponseBody();
+        if (rawStream != null) {
+            body.write(rawStream.getBytes(StandardCharsets.UTF_8));
+            completedStreams.incrementAndGet();
+            return;
+        }
+        for (String word : answer.split("(?<= )")) {
+            ObjectNode event = objectMapper.createObjectNode();
+            event.put("object", "chat.completion.chunk");
+            event.putArray("choices").addObject().put("index", 0).putObject("delta").put("content", word);
+            body.write(("data: " + objectMapper.writeValueAsString(event) + "\n\n").getBytes(StandardCharsets.UTF_8));
+            body.flush();
+            sleep(streamDelayMillis);
+        }
+        body.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        completedStreams.incrementAndGet();
+    }
+
+    private void sendError(HttpExchange exchange, int status) throws IOException {
+        sendError(exchange, status, null);
+    }
+
+    private void sendError(HttpExchange exchange, int status, String code) throws IOException {
+        if (status == 429) {
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+        }
+        ObjectNode error = objectMapper.createObjectNode();
+        error.putObject("error").put("message", "Error simulado " + status).put("type", "stub_error").put("code", code);
+        byte[] bytes = objectMapper.writeValueAsBytes(error);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private void sendJson(HttpExchange exchange, JsonNode response) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
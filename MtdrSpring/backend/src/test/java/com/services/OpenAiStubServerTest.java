@@ -0,0 +1,314 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.MyTodoList.config.LlmHttpClientConfig;
+import com.springboot.MyTodoList.service.EmbeddingService;
+import com.springboot.MyTodoList.service.LlmCallGuard;
+import com.springboot.MyTodoList.service.OpenAiEmbeddingProvider;
+import com.springboot.MyTodoList.service.RagAnswerCache;
+import com.springboot.MyTodoList.service.RagChatService;
+import com.springboot.MyTodoList.service.RagScope;
+import com.springboot.MyTodoList.service.RagService;
+
+public class OpenAiStubServerTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenAiStubServerTest.class);
+
+    private OpenAiStubServer stub;
+    private HttpComponentsClientHttpRequestFactory requestFactory;
+    private RestTemplate restTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = new OpenAiStubServer(64, 32);
+        requestFactory = (HttpComponentsClientHttpRequestFactory) new LlmHttpClientConfig()
+                .llmRequestFactory("HTTP_1_1", 50, 50, 2000, 5000, 2000, 30, 300);
+        restTemplate = new RestTemplate(requestFactory);
+    }
+
+    @AfterEach
+    void stopStub() throws Exception {
+        requestFactory.destroy();
+        stub.close();
+    }
+
+    @Test
+    void embeddingsAreBatchedOrderedAndRetriedOnRateLimits() {
+        LlmCallGuard guard = new LlmCallGuard(true, 3, 1, 5, 1000, 5, 30, 8, 1000);
+        EmbeddingService service = embeddingService(guard, 10);
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            texts.add("Historia de usuario " + i);
+        }
+
+        List<float[]> embeddings = service.embedBatch(texts);
+
+        assertThat(stub.requestCount(OpenAiStubServer.EMBEDDINGS_PATH)).isEqualTo(3);
+        assertThat(embeddings.get(13)).containsExactly(stub.expectedEmbedding("Historia de usuario 13"));
+
+        stub.rateLimitRate(0, 0).failNext(2, 429);
+        assertThat(service.embedText("Criterios de aceptación")).containsExactly(stub.expectedEmbedding("Criterios de aceptación"));
+        assertThat(guard.stats()).containsEntry("retries", 2L);
+    }
+
+    @Test
+    void embeddingBatchesAreSplitOnlyWhenTheTokenLimitIsExceeded() {
+        LlmCallGuard guard = new LlmCallGuard(true, 3, 1, 5, 1000, 5, 30, 8, 1000);
+        OpenAiEmbeddingProvider provider = embeddingProvider(guard, 100);
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            texts.add(String.format("texto %02d %s", i, "x".repeat(11)));
+        }
+        stub.maxRequestChars(60);
+
+        List<float[]> embeddings = provider.embed(texts);
+
+        // 8 entradas de 20 caracteres: 8 -> 4 + 4 -> 2 + 2 + 2 + 2.
+        assertThat(stub.requestCount(OpenAiStubServer.EMBEDDINGS_PATH)).isEqualTo(7);
+        for (int i = 0; i < texts.size(); i++) {
+            assertThat(embeddings.get(i)).containsExactly(stub.expectedEmbedding(texts.get(i)));
+        }
+        assertThat(guard.stats()).containsEntry("retries", 0L);
+    }
+
+    @Test
+    void otherClientErrorsAreNotSplit() {
+        LlmCallGuard guard = new LlmCallGuard(true, 3, 1, 5, 1000, 5, 30, 8, 1000);
+        OpenAiEmbeddingProvider provider = embeddingProvider(guard, 100);
+        List<String> texts = List.of("uno", "dos", "tres", "cuatro");
+
+        stub.failNext(1, 400);
+        assertThatThrownBy(() -> provider.embed(texts)).isInstanceOf(IllegalStateException.class);
+        assertThat(stub.requestCount(OpenAiStubServer.EMBEDDINGS_PATH)).isEqualTo(1);
+
+        // Una sola entrada que no cabe no se puede dividir más.
+        stub.maxRequestChars(2);
+        assertThatThrownBy(() -> provider.embed(List.of("demasiado largo"))).isInstanceOf(IllegalStateException.class);
+        assertThat(stub.requestCount(OpenAiStubServer.EMBEDDINGS_PATH)).isEqualTo(2);
+    }
+
+    @Test
+    void httpClientLeavesRetriesToTheGuard() {
+        LlmCallGuard guard = new LlmCallGuard(true, 2, 1, 5, 1000, 5, 30, 8, 1000);
+        EmbeddingService service = embeddingService(guard, 10);
+        stub.failNext(1, 503);
+
+        assertThat(service.embedText("Reintento único")).containsExactly(stub.expectedEmbedding("Reintento único"));
+
+        // Si Apache HttpClient reintentara por su cuenta el guard no vería la falla.
+        assertThat(stub.requestCount(OpenAiStubServer.EMBEDDINGS_PATH)).isEqualTo(2);
+        assertThat(guard.stats()).containsEntry("retries", 1L);
+    }
+
+    @Test
+    void chatStreamsTheSameAnswerAndDegradesWhenTheModelFails() throws Exception {
+        LlmCallGuard guard = new LlmCallGuard(true, 2, 1, 5, 1000, 50, 30, 8, 1000);
+        RagChatService chat = chatService(guard);
+        try {
+            String answer = chat.chatWithContext("¿Cómo va el login?", RagScope.ALL);
+            assertThat(answer).isEqualTo("Respuesta simulada sobre: ¿Cómo va el login?. Revisa el contexto del sprint.");
+
+            List<String> deltas = Collections.synchronizedList(new ArrayList<>());
+            String streamed = chat.streamChatWithContext("¿Cómo va el login?", RagScope.ALL, deltas::add)
+                    .get(5, TimeUnit.SECONDS);
+            assertThat(deltas.size()).isGreaterThan(5);
+            assertThat(String.join("", deltas)).isEqualTo(answer);
+            assertThat(streamed).isEqualTo(answer);
+
+            stub.errorRate(1.0);
+            String degraded = chat.chatWithContext("¿Cómo va el login?", RagScope.ALL);
+            assertThat(degraded).startsWith("⚠️ El modelo de lenguaje no está disponible").contains("Login terminado.");
+            assertThat(stub.requestCount(OpenAiStubServer.CHAT_PATH)).isEqualTo(4);
+        } finally {
+            chat.shutdown();
+        }
+    }
+
+    @Test
+    void streamParsingFollowsServerSentEvents() throws Exception {
+        LlmCallGuard guard = new LlmCallGuard(true, 2, 1, 5, 1000, 50, 30, 8, 1000);
+        RagChatService chat = chatService(guard);
+        try {
+            // Un evento partido en dos líneas data:, comentarios de keep-alive, líneas en
+            // blanco de sobra y un campo id que se ignora; lo que sigue a [DONE] no se lee.
+            stub.rawStream(": keep-alive\n\n"
+                    + "data: {\"choices\":[{\"delta\":\n"
+                    + "data: {\"content\":\"Hola\"}}]}\n\n"
+                    + "\n\n"
+                    + "id: 2\n"
+                    + "data:{\"choices\":[{\"delta\":{\"content\":\" equipo\"}}]}\n\n"
+                    + ": keep-alive\n\n"
+                    + "data: {\"choices\":[{\"delta\":{}}]}\n\n"
+                    + "data: [DONE]\n\n"
+                    + "data: {\"choices\":[{\"delta\":{\"content\":\" de más\"}}]}\n\n");
+            List<String> deltas = Collections.synchronizedList(new ArrayList<>());
+
+            String answer = chat.streamChatWithContext("¿Saludo?", RagScope.ALL, deltas::add).get(5, TimeUnit.SECONDS);
+
+            assertThat(deltas).containsExactly("Hola", " equipo");
+            assertThat(answer).isEqualTo("Hola equipo");
+        } finally {
+            chat.shutdown();
+        }
+    }
+
+    @Test
+    void streamStopsOnAnErrorEventAndKeepsThePartialAnswer() throws Exception {
+        LlmCallGuard guard = new LlmCallGuard(true, 2, 1, 5, 1000, 50, 30, 8, 1000);
+        RagChatService chat = chatService(guard);
+        try {
+            stub.rawStream("data: {\"choices\":[{\"delta\":{\"content\":\"Parcial\"}}]}\n\n"
+                    + "data: {\"error\":{\"message\":\"server overloaded\",\"type\":\"server_error\"}}\n\n"
+                    + "data: {\"choices\":[{\"delta\":{\"content\":\" perdido\"}}]}\n\n");
+            List<String> deltas = Collections.synchronizedList(new ArrayList<>());
+
+            String answer = chat.streamChatWithContext("¿Estado?", RagScope.ALL, deltas::add).get(5, TimeUnit.SECONDS);
+
+            assertThat(deltas.get(0)).isEqualTo("Parcial");
+            assertThat(answer).startsWith("Parcial\n⚠️ Error al llamar al modelo: server overloaded").doesNotContain("perdido");
+            assertThat(stub.requestCount(OpenAiStubServer.CHAT_PATH)).isEqualTo(1);
+        } finally {
+            chat.shutdown();
+        }
+    }
+
+    @Test
+    void malformedStreamEventsAreNotRetried() throws Exception {
+        LlmCallGuard guard = new LlmCallGuard(true, 3, 1, 5, 1000, 50, 30, 8, 1000);
+        RagChatService chat = chatService(guard);
+        try {
+            stub.rawStream("data: {\"choices\":[{\"delta\":\n\n");
+
+            String answer = chat.streamChatWithContext("¿Estado?", RagScope.ALL, delta -> { }).get(5, TimeUnit.SECONDS);
+
+            assertThat(answer).startsWith("⚠️ Error al llamar al modelo: el modelo envió un evento que no es JSON válido");
+            assertThat(stub.requestCount(OpenAiStubServer.CHAT_PATH)).isEqualTo(1);
+            assertThat(guard.stats()).containsEntry("retries", 0L);
+        } finally {
+            chat.shutdown();
+        }
+    }
+
+    @Test
+    void cancellingTheStreamClosesTheModelConnection() throws Exception {
+        assertCancellingClosesTheModelConnection(restTemplate);
+    }
+
+    @Test
+    void cancellingOverHttp2ClosesTheModelConnection() throws Exception {
+        // Cliente del JDK (llm.http.version=HTTP_2); contra el stub sin TLS negocia HTTP/1.1.
+        ClientHttpRequestFactory jdkFactory = new LlmHttpClientConfig()
+                .llmRequestFactory("HTTP_2", 50, 50, 2000, 5000, 2000, 30, 300);
+        assertCancellingClosesTheModelConnection(new RestTemplate(jdkFactory));
+    }
+
+    private void assertCancellingClosesTheModelConnection(RestTemplate transport) throws Exception {
+        stub.streamDelay(50).chatAnswer(question -> "palabra ".repeat(60));
+        LlmCallGuard guard = new LlmCallGuard(true, 2, 1, 5, 1000, 50, 30, 8, 1000);
+        RagChatService chat = chatService(guard, transport);
+        try {
+            CountDownLatch firstDelta = new CountDownLatch(1);
+            List<String> deltas = Collections.synchronizedList(new ArrayList<>());
+            CompletableFuture<String> response = chat.streamChatWithContext("¿Largo?", RagScope.ALL, delta -> {
+                deltas.add(delta);
+                firstDelta.countDown();
+            });
+            assertThat(firstDelta.await(5, TimeUnit.SECONDS)).isTrue();
+
+            response.cancel(true);
+
+            // La conexión se cierra sin esperar al siguiente fragmento y el corte no cuenta
+            // como falla del modelo.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (!guard.stats().get("inFlight").equals(0) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(guard.stats()).containsEntry("inFlight", 0).containsEntry("unavailable", 0L);
+            int received = deltas.size();
+            Thread.sleep(300);
+            assertThat(deltas).hasSize(received).hasSizeLessThan(60);
+            assertThat(stub.completedStreams()).isZero();
+        } finally {
+            chat.shutdown();
+        }
+    }
+
+    @Test
+    void concurrentCallsSurviveLatencyAndRateLimits() throws Exception {
+        stub.latency(15).rateLimitRate(0.2, 0);
+        LlmCallGuard guard = new LlmCallGuard(true, 8, 1, 5, 1000, 1000, 30, 16, 10_000);
+        EmbeddingService service = embeddingService(guard, 96);
+        ExecutorService clients = Executors.newFixedThreadPool(32);
+        try {
+            long start = System.nanoTime();
+            List<Future<float[]>> calls = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String text = "Consulta concurrente " + i;
+                calls.add(clients.submit(() -> service.embedQuery(text)));
+            }
+            for (int i = 0; i < calls.size(); i++) {
+                assertThat(calls.get(i).get(30, TimeUnit.SECONDS))
+                        .containsExactly(stub.expectedEmbedding("Consulta concurrente " + i));
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            logger.info("100 embeddings contra el stub en {} ms ({} peticiones, {} reintentos)",
+                    elapsedMillis, stub.requestCount(OpenAiStubServer.EMBEDDINGS_PATH), guard.stats().get("retries"));
+
+            assertThat(stub.requestCount(OpenAiStubServer.EMBEDDINGS_PATH)).isGreaterThan(100);
+            assertThat(guard.stats()).containsEntry("inFlight", 0);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private EmbeddingService embeddingService(LlmCallGuard guard, int batchSize) {
+        return new EmbeddingService(embeddingProvider(guard, batchSize), 1000, 60);
+    }
+
+    private OpenAiEmbeddingProvider embeddingProvider(LlmCallGuard guard, int batchSize) {
+        return new OpenAiEmbeddingProvider(restTemplate, objectMapper, guard, "test-key",
+                "text-embedding-3-small", stub.url(OpenAiStubServer.EMBEDDINGS_PATH), batchSize, 250_000);
+    }
+
+    private RagChatService chatService(LlmCallGuard guard) {
+        return chatService(guard, restTemplate);
+    }
+
+    private RagChatService chatService(LlmCallGuard guard, RestTemplate transport) {
+        RagService.RetrievedContext context = mock(RagService.RetrievedContext.class);
+        when(context.getText()).thenReturn("- Archivo: plan.txt (fragmento 0): Login terminado.");
+        when(context.getChunkIds()).thenReturn(List.of(1L));
+        RagService ragService = mock(RagService.class);
+        when(ragService.retrieveContext(anyString(), anyInt(), any(RagScope.class))).thenReturn(context);
+        return new RagChatService(transport, objectMapper, ragService, new RagAnswerCache(false, 10, 60, 0.95f),
+                guard, "test-key", stub.url(OpenAiStubServer.CHAT_PATH), "gpt-4o-mini", 4, 4);
+    }
+}
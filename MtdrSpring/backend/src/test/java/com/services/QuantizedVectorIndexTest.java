@@ -0,0 +1,84 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.springboot.MyTodoList.util.ProductQuantizer;
+import com.springboot.MyTodoList.util.QuantizedVectorIndex;
+import com.springboot.MyTodoList.util.ScalarQuantizer;
+import com.springboot.MyTodoList.util.VectorIndex;
+import com.springboot.MyTodoList.util.VectorIndexEvaluator;
+
+public class QuantizedVectorIndexTest {
+
+    private static final int DIMS = 32;
+
+    @Test
+    void searchesExactlyUntilTrainedAndThenUsesCodes() {
+        Random random = new Random(2);
+        QuantizedVectorIndex index = new QuantizedVectorIndex(ScalarQuantizer::train, 100, 0, null);
+        float[][] vectors = new float[300][];
+        for (int i = 0; i < 99; i++) {
+            vectors[i] = TestVectors.randomVector(random, DIMS);
+            index.add(i, vectors[i]);
+        }
+        assertThat(index.isTrained()).isFalse();
+        assertThat(index.search(vectors[5], 1).get(0).getId()).isEqualTo(5L);
+
+        for (int i = 99; i < vectors.length; i++) {
+            vectors[i] = TestVectors.randomVector(random, DIMS);
+            index.add(i, vectors[i]);
+        }
+
+        assertThat(index.isTrained()).isTrue();
+        assertThat(index.size()).isEqualTo(300);
+        assertThat(index.bytesPerVector()).isEqualTo(DIMS + Long.BYTES);
+        assertThat(index.search(vectors[250], 1).get(0).getId()).isEqualTo(250L);
+
+        index.remove(250L);
+        assertThat(index.search(vectors[250], 5)).extracting(VectorIndex.Hit::getId).doesNotContain(250L);
+        assertThat(index.search(vectors[299], 1).get(0).getId()).isEqualTo(299L);
+    }
+
+    @Test
+    void rerankRecoversRecallLostByProductQuantization() {
+        Random random = new Random(4);
+        Map<Long, float[]> vectors = new LinkedHashMap<>();
+        for (long i = 0; i < 2000; i++) {
+            vectors.put(i, TestVectors.randomVector(random, DIMS));
+        }
+        List<float[]> queries = new ArrayList<>();
+        for (int q = 0; q < 30; q++) {
+            queries.add(TestVectors.randomVector(random, DIMS));
+        }
+        QuantizedVectorIndex.FullPrecisionSource source = ids -> {
+            Map<Long, float[]> found = new HashMap<>();
+            ids.forEach(id -> found.put(id, vectors.get(id)));
+            return found;
+        };
+        Map<String, VectorIndex> candidates = new LinkedHashMap<>();
+        candidates.put("int8", new QuantizedVectorIndex(ScalarQuantizer::train, 500, 0, null));
+        candidates.put("pq", new QuantizedVectorIndex(
+                samples -> ProductQuantizer.train(samples, 8, 8, 1), 500, 0, null));
+        candidates.put("pq+rerank", new QuantizedVectorIndex(
+                samples -> ProductQuantizer.train(samples, 8, 8, 1), 500, 10, source));
+
+        List<VectorIndexEvaluator.Result> results = VectorIndexEvaluator.evaluate(vectors, queries, 10, candidates);
+
+        VectorIndexEvaluator.Result int8 = results.get(0);
+        VectorIndexEvaluator.Result pq = results.get(1);
+        VectorIndexEvaluator.Result reranked = results.get(2);
+        assertThat(int8.getRecall()).isGreaterThan(0.9);
+        assertThat(pq.getBytesPerVector()).isEqualTo(8 + Long.BYTES);
+        assertThat(reranked.getRecall()).isGreaterThan(pq.getRecall());
+        assertThat(reranked.getRecall()).isGreaterThan(0.8);
+    }
+}
@@ -0,0 +1,46 @@
+package com.services;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.springboot.MyTodoList.controller.RagController;
+import com.springboot.MyTodoList.service.EmbeddingService;
+import com.springboot.MyTodoList.service.LlmCallGuard;
+import com.springboot.MyTodoList.service.RagAnswerCache;
+import com.springboot.MyTodoList.service.RagChatService;
+import com.springboot.MyTodoList.service.RagIndexService;
+import com.springboot.MyTodoList.service.RagIngestionJobService;
+import com.springboot.MyTodoList.service.RagService;
+import com.springboot.MyTodoList.service.SprintPlanCacheService;
+
+public class RagControllerTest {
+
+    @Test
+    void evaluationWithoutMaxVectorsUsesTheConfiguredCap() throws Exception {
+        RagIndexService indexService = mock(RagIndexService.class);
+        when(indexService.getEvaluateMaxVectors()).thenReturn(500);
+        when(indexService.evaluateQuantization(anyInt(), anyInt(), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(List.of()));
+        RagController controller = new RagController(mock(RagService.class), mock(RagChatService.class),
+                mock(RagIngestionJobService.class), indexService, mock(EmbeddingService.class),
+                mock(RagAnswerCache.class), mock(LlmCallGuard.class), mock(SprintPlanCacheService.class));
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        mvc.perform(get("/rag/index/evaluate"));
+
+        mvc.perform(get("/rag/index/evaluate").param("maxVectors", "50"));
+
+        verify(indexService).evaluateQuantization(10, 100, 500);
+        verify(indexService).evaluateQuantization(10, 100, 50);
+    }
+}
@@ -0,0 +1,115 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import com.springboot.MyTodoList.config.RagVectorStore;
+import com.springboot.MyTodoList.model.RagDocumentChunk;
+import com.springboot.MyTodoList.repository.RagDocumentChunkBatchWriter;
+import com.springboot.MyTodoList.util.EmbeddingCodec;
+
+public class RagDocumentChunkBatchWriterTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private final List<Object> bound = new ArrayList<>();
+    private ParameterizedPreparedStatementSetter<Object> setter;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), anyInt())).thenAnswer(invocation -> {
+            List<Long> ids = new ArrayList<>();
+            for (long id = 500; id < 500 + (int) invocation.getArgument(2); id++) {
+                ids.add(id);
+            }
+            return ids;
+        });
+        // Simula executeBatch: un arreglo de conteos por cada lote enviado.
+        when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(), any())).thenAnswer(invocation -> {
+            Collection<Object> rows = invocation.getArgument(1);
+            int batchSize = invocation.getArgument(2);
+            batchSizes.add(batchSize);
+            bound.addAll(rows);
+            setter = invocation.getArgument(3);
+            int batches = (rows.size() + batchSize - 1) / batchSize;
+            return new int[batches][];
+        });
+    }
+
+    @Test
+    void reservesAllIdsInOneQueryAndCountsTheExecutedBatches() {
+        RagDocumentChunkBatchWriter writer = new RagDocumentChunkBatchWriter(jdbcTemplate, 10, new RagVectorStore("memory", jdbcTemplate));
+        List<RagDocumentChunk> chunks = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            chunks.add(chunk(i));
+        }
+
+        int roundTrips = writer.insertAll(chunks);
+
+        verify(jdbcTemplate).queryForList(anyString(), eq(Long.class), eq(25));
+        assertThat(roundTrips).isEqualTo(4);
+        assertThat(batchSizes).containsExactly(10);
+        assertThat(chunks).extracting(RagDocumentChunk::getId).containsExactlyElementsOf(range(500, 25));
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.getCreatedAt()).isNotNull());
+        assertThat(writer.deleteAll(range(500, 25))).isEqualTo(3);
+        assertThat(writer.insertAll(List.of())).isZero();
+    }
+
+    @Test
+    void bindsEveryColumnAndWritesNullScopes() throws Exception {
+        RagDocumentChunkBatchWriter writer = new RagDocumentChunkBatchWriter(jdbcTemplate, 10, new RagVectorStore("memory", jdbcTemplate));
+        RagDocumentChunk chunk = chunk(0);
+        chunk.setSprintId(null);
+
+        writer.insertAll(List.of(chunk));
+        PreparedStatement statement = mock(PreparedStatement.class);
+        setter.setValues(statement, bound.get(0));
+
+        verify(statement).setLong(1, 500L);
+        verify(statement).setString(2, "plan.txt");
+        verify(statement).setBytes(6, chunk.getEmbedding());
+        verify(statement).setInt(7, 2);
+        verify(statement).setLong(12, 3L);
+        verify(statement).setNull(13, Types.NUMERIC);
+    }
+
+    private static RagDocumentChunk chunk(int index) {
+        RagDocumentChunk chunk = new RagDocumentChunk();
+        chunk.setFileName("plan.txt");
+        chunk.setMimeType("text/plain");
+        chunk.setChunkIndex(index);
+        chunk.setChunkText("Fragmento " + index);
+        chunk.setEmbedding(EmbeddingCodec.encode(new float[] { 0.6f, 0.8f }));
+        chunk.setEmbeddingDims(2);
+        chunk.setEmbeddingModel("test-model");
+        chunk.setProyectoId(3L);
+        chunk.setSprintId(4L);
+        return chunk;
+    }
+
+    private static List<Long> range(long from, int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(from + i);
+        }
+        return ids;
+    }
+}
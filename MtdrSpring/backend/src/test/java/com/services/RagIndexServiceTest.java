@@ -0,0 +1,177 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.MyTodoList.config.RagVectorStore;
+import com.springboot.MyTodoList.model.RagDocumentChunk;
+import com.springboot.MyTodoList.repository.RagDocumentChunkRepository;
+import com.springboot.MyTodoList.service.RagIndexService;
+import com.springboot.MyTodoList.service.RagScope;
+import com.springboot.MyTodoList.util.EmbeddingCodec;
+import com.springboot.MyTodoList.util.VectorIndex;
+
+public class RagIndexServiceTest {
+
+    private RagIndexService index;
+    private RagDocumentChunkRepository repository;
+
+    @BeforeEach
+    void buildEmptyIndex() {
+        repository = mock(RagDocumentChunkRepository.class);
+        Page<RagDocumentChunk> empty = new PageImpl<>(List.of());
+        when(repository.findAll(any(Pageable.class))).thenReturn(empty);
+        index = new RagIndexService(repository, new ObjectMapper(), true, new RagVectorStore("memory", null), true, "flat",
+                16, 100, 64, 500, 0.2, 60, "unused", 16384, 60, "none", 2000, 0, 4, 500, false, "unused", 300);
+        index.rebuild();
+
+        // Mismo vector y mismo texto en cuatro particiones: solo el alcance decide quién aparece.
+        index.add(1L, RagScope.of(1L, 10L), new float[] { 1, 0 }, "login del portal");
+        index.add(2L, RagScope.of(1L, 11L), new float[] { 1, 0 }, "login del portal");
+        index.add(3L, RagScope.of(2L, null), new float[] { 1, 0 }, "login del portal");
+        index.add(4L, RagScope.ALL, new float[] { 1, 0 }, "login del portal");
+    }
+
+    @AfterEach
+    void shutdown() {
+        index.shutdown();
+    }
+
+    @Test
+    void rebuildDeletesSegmentDirectoriesOfPartitionsThatNoLongerExist(@TempDir Path mmapDir) throws Exception {
+        Path orphan = Files.createDirectories(mmapDir.resolve("proyecto-9_sprint-all"));
+        Files.write(orphan.resolve("segment-1.vec"), new byte[64]);
+        Path unrelated = Files.createDirectories(mmapDir.resolve("otros"));
+        RagDocumentChunk chunk = new RagDocumentChunk();
+        chunk.setId(1L);
+        chunk.setProyectoId(1L);
+        chunk.setSprintId(10L);
+        chunk.setChunkIndex(0);
+        chunk.setEmbedding(EmbeddingCodec.encode(new float[] { 1, 0 }));
+        RagDocumentChunkRepository mmapRepository = mock(RagDocumentChunkRepository.class);
+        when(mmapRepository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(List.of(chunk)));
+        RagIndexService mmap = new RagIndexService(mmapRepository, new ObjectMapper(), true,
+                new RagVectorStore("memory", null), false, "mmap", 16, 100, 64, 500, 0.2, 60,
+                mmapDir.toString(), 64, 60, "none", 2000, 0, 4, 500, false, "unused", 300);
+        try {
+            mmap.rebuild();
+
+            assertThat(mmap.size()).isEqualTo(1);
+            assertThat(mmapDir.resolve("proyecto-1_sprint-10")).isDirectory();
+            assertThat(orphan).doesNotExist();
+            assertThat(unrelated).isDirectory();
+        } finally {
+            mmap.shutdown();
+        }
+    }
+
+    @Test
+    void searchesOnlyThePartitionsInsideTheScope() {
+        assertThat(index.partitionCount()).isEqualTo(4);
+        assertThat(vectorIds(RagScope.ALL)).containsExactlyInAnyOrder(1L, 2L, 3L, 4L);
+        assertThat(vectorIds(RagScope.of(1L, null))).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(vectorIds(RagScope.of(1L, 11L))).containsExactly(2L);
+        assertThat(vectorIds(RagScope.of(null, 10L))).containsExactly(1L);
+        assertThat(vectorIds(RagScope.of(3L, null))).isEmpty();
+        assertThat(lexicalIds(RagScope.of(2L, null))).containsExactly(3L);
+        // El nombre de archivo no parte los índices: se busca en la partición de su proyecto.
+        assertThat(vectorIds(RagScope.of(2L, null, "plan.txt"))).containsExactly(3L);
+    }
+
+    @Test
+    void removeOnlyTouchesThePartitionOfTheChunk() {
+        index.remove(1L);
+
+        assertThat(vectorIds(RagScope.of(1L, null))).containsExactly(2L);
+        assertThat(lexicalIds(RagScope.of(1L, 10L))).isEmpty();
+        assertThat(vectorIds(RagScope.ALL)).containsExactlyInAnyOrder(2L, 3L, 4L);
+    }
+
+    @Test
+    void scopeNormalizesBlankFilesAndMatchesPartitions() {
+        assertThat(RagScope.of(null, null, "  ")).isSameAs(RagScope.ALL);
+        assertThat(RagScope.of(1L, null, " plan.txt ").getFileName()).isEqualTo("plan.txt");
+        assertThat(RagScope.of(1L, null).includesPartition(1L, 5L)).isTrue();
+        assertThat(RagScope.of(1L, null).includesPartition(null, null)).isFalse();
+        assertThat(RagScope.ALL.includesPartition(null, null)).isTrue();
+    }
+
+    @Test
+    void evaluatesOffTheCallerThreadReadingOnlyEmbeddingsUpToTheCap() throws Exception {
+        List<Object[]> rows = new ArrayList<>();
+        Random random = new Random(3);
+        for (long id = 1; id <= 800; id++) {
+            rows.add(new Object[] { id, EmbeddingCodec.encode(TestVectors.randomVector(random, 16)), null });
+        }
+        AtomicInteger served = new AtomicInteger();
+        when(repository.findEmbeddingsAfterId(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            Pageable page = invocation.getArgument(1);
+            List<Object[]> result = rows.stream().filter(row -> (Long) row[0] > afterId)
+                    .limit(page.getPageSize()).collect(Collectors.toList());
+            served.addAndGet(result.size());
+            return result;
+        });
+
+        List<Map<String, Object>> results = index.evaluateQuantization(5, 20, 300).get(30, TimeUnit.SECONDS);
+
+        assertThat(results).extracting(result -> result.get("name"))
+                .containsExactly("hnsw", "int8", "int8+rerank", "pq", "pq+rerank");
+        assertThat(served.get()).isEqualTo(300);
+        verify(repository, times(1)).findAll(any(Pageable.class));
+        assertThatThrownBy(() -> index.evaluateQuantization(5, 20, 501)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsASecondEvaluationWhileOneIsRunning() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(repository.findEmbeddingsAfterId(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return List.of();
+        });
+
+        CompletableFuture<List<Map<String, Object>>> running = index.evaluateQuantization(5, 5, 100);
+        assertThatThrownBy(() -> index.evaluateQuantization(5, 5, 100)).isInstanceOf(IllegalStateException.class);
+        release.countDown();
+        assertThat(running.get(10, TimeUnit.SECONDS)).isEmpty();
+    }
+
+    private List<Long> vectorIds(RagScope scope) {
+        return ids(index.search(new float[] { 1, 0 }, 10, scope));
+    }
+
+    private List<Long> lexicalIds(RagScope scope) {
+        return ids(index.searchLexical("login", 10, scope));
+    }
+
+    private static List<Long> ids(List<VectorIndex.Hit> hits) {
+        return hits.stream().map(VectorIndex.Hit::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,129 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.springboot.MyTodoList.service.RagIngestionJob;
+import com.springboot.MyTodoList.service.RagIngestionJobService;
+import com.springboot.MyTodoList.service.RagScope;
+import com.springboot.MyTodoList.service.RagService;
+
+public class RagIngestionJobServiceTest {
+
+    private RagService ragService;
+    private RagIngestionJobService jobService;
+    private final List<Path> temps = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ragService = mock(RagService.class);
+        // Los archivos "lento*" se quedan procesando hasta que la prueba los suelte y los
+        // "roto*" fallan como un documento sin texto.
+        when(ragService.ingestFile(any(Path.class), anyString(), any(), any(RagScope.class), any(RagIngestionJob.class)))
+                .thenAnswer(invocation -> {
+                    String fileName = invocation.getArgument(1);
+                    if (fileName.startsWith("lento")) {
+                        release.await(5, TimeUnit.SECONDS);
+                    }
+                    if (fileName.startsWith("roto")) {
+                        throw new IllegalArgumentException("El archivo no tiene texto.");
+                    }
+                    return Map.of("fileName", fileName);
+                });
+        jobService = new RagIngestionJobService(ragService, 1, 1, 60);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        jobService.shutdown();
+    }
+
+    @Test
+    void jobsMoveFromQueuedToRunningToFinishedAndDropTheirTempFile() throws Exception {
+        RagIngestionJob slow = jobService.submit(upload("lento.txt"), RagScope.ALL);
+        RagIngestionJob broken = jobService.submit(upload("roto.txt"), RagScope.ALL);
+
+        awaitStatus(slow, RagIngestionJob.Status.RUNNING);
+        assertThat(broken.getStatus()).isEqualTo(RagIngestionJob.Status.QUEUED);
+        assertThat(broken.isFinished()).isFalse();
+
+        release.countDown();
+        awaitStatus(slow, RagIngestionJob.Status.COMPLETED);
+        awaitStatus(broken, RagIngestionJob.Status.FAILED);
+
+        assertThat(slow.toSummary()).containsEntry("result", Map.of("fileName", "lento.txt"));
+        assertThat(broken.toSummary()).containsEntry("error", "El archivo no tiene texto.").containsKey("finishedAt");
+        assertThat(jobService.find(slow.getId())).containsSame(slow);
+        assertThat(temps).hasSize(2).allMatch(Files::notExists);
+    }
+
+    @Test
+    void failedCopyLeavesNoTempFile() throws Exception {
+        MultipartFile file = upload("plan.txt");
+        doAnswer(invocation -> {
+            temps.add(invocation.getArgument(0));
+            throw new IOException("Se cortó la subida.");
+        }).when(file).transferTo(any(Path.class));
+
+        assertThatThrownBy(() -> jobService.submit(file, RagScope.ALL)).isInstanceOf(IOException.class);
+
+        assertThat(temps).hasSize(1).allMatch(Files::notExists);
+    }
+
+    @Test
+    void fullQueueRejectsTheUploadAndDropsItsTempFile() throws Exception {
+        jobService.submit(upload("lento.txt"), RagScope.ALL);
+        jobService.submit(upload("cola.txt"), RagScope.ALL);
+
+        assertThatThrownBy(() -> jobService.submit(upload("extra.txt"), RagScope.ALL))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(temps).hasSize(3);
+        assertThat(temps.get(2)).doesNotExist();
+    }
+
+    // Archivo subido que copia su contenido al temporal y recuerda dónde quedó.
+    private MultipartFile upload(String fileName) throws IOException {
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.isEmpty()).thenReturn(false);
+        when(file.getOriginalFilename()).thenReturn(fileName);
+        when(file.getContentType()).thenReturn("text/plain");
+        doAnswer(invocation -> {
+            Path target = invocation.getArgument(0);
+            temps.add(target);
+            Files.writeString(target, "Contenido de " + fileName, StandardCharsets.UTF_8);
+            return null;
+        }).when(file).transferTo(any(Path.class));
+        return file;
+    }
+
+    private static void awaitStatus(RagIngestionJob job, RagIngestionJob.Status status) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (job.getStatus() != status && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(job.getStatus()).isEqualTo(status);
+    }
+}
@@ -0,0 +1,271 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.MyTodoList.config.RagVectorStore;
+import com.springboot.MyTodoList.model.RagDocumentChunk;
+import com.springboot.MyTodoList.repository.RagDocumentChunkBatchWriter;
+import com.springboot.MyTodoList.repository.RagDocumentChunkRepository;
+import com.springboot.MyTodoList.service.EmbeddingService;
+import com.springboot.MyTodoList.service.LlmCallGuard;
+import com.springboot.MyTodoList.service.RagAnswerCache;
+import com.springboot.MyTodoList.service.RagIndexService;
+import com.springboot.MyTodoList.service.RagIngestionJob;
+import com.springboot.MyTodoList.service.RagScope;
+import com.springboot.MyTodoList.service.RagService;
+import com.springboot.MyTodoList.util.ContentHash;
+import com.springboot.MyTodoList.util.EmbeddingCodec;
+import com.springboot.MyTodoList.util.VectorIndex;
+
+public class RagServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private RagDocumentChunkRepository repository;
+    private RagDocumentChunkBatchWriter batchWriter;
+    private EmbeddingService embeddingService;
+    private RagIndexService indexService;
+    private RagAnswerCache answerCache;
+    private RagService ragService;
+    private final List<List<String>> embeddedBatches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(RagDocumentChunkRepository.class);
+        batchWriter = mock(RagDocumentChunkBatchWriter.class);
+        embeddingService = mock(EmbeddingService.class);
+        indexService = mock(RagIndexService.class);
+        answerCache = mock(RagAnswerCache.class);
+
+        when(embeddingService.getModel()).thenReturn("test-model");
+        when(embeddingService.getMaxBatchInputs()).thenReturn(100);
+        when(embeddingService.embedBatch(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            embeddedBatches.add(new ArrayList<>(texts));
+            List<float[]> vectors = new ArrayList<>();
+            for (String text : texts) {
+                vectors.add(new float[] { text.length(), 1 });
+            }
+            return vectors;
+        });
+        AtomicLong nextId = new AtomicLong(100);
+        when(batchWriter.insertAll(anyList())).thenAnswer(invocation -> {
+            List<RagDocumentChunk> chunks = invocation.getArgument(0);
+            chunks.forEach(chunk -> chunk.setId(nextId.getAndIncrement()));
+            return 2;
+        });
+
+        ragService = new RagService(repository, batchWriter, embeddingService, indexService, answerCache,
+                new ObjectMapper(), new RagVectorStore("memory", null), true, 60, 1000, "structured", 350, 512);
+    }
+
+    @Test
+    void replacingAFileOnlyDeletesThePreviousVersionInTheSameScope() throws Exception {
+        RagScope projectB = RagScope.of(2L, null);
+        when(repository.findIdsByFileNameAndProyectoIdAndSprintId(eq("plan.txt"), eq(2L), isNull()))
+                .thenReturn(List.of(7L, 8L));
+
+        Map<String, Object> result = ingest("plan.txt", "Nuevo plan del proyecto B.", projectB);
+
+        verify(repository, never()).findIdsByFileNameAndProyectoIdAndSprintId(eq("plan.txt"), eq(1L), any());
+        verify(batchWriter).deleteAll(List.of(7L, 8L));
+        verify(indexService).remove(7L);
+        verify(indexService).remove(8L);
+        verify(indexService, never()).remove(1L);
+        verify(answerCache).invalidateChunks(List.of(7L, 8L));
+        verify(indexService).add(eq(100L), eq(projectB), any(float[].class), anyString());
+        assertThat(result).containsEntry("chunksReplaced", 2).containsEntry("chunksStored", 1);
+    }
+
+    @Test
+    void sameContentInTheSameScopeIsSkipped() throws Exception {
+        when(repository.existsByFileNameAndDocumentHashAndEmbeddingModelAndProyectoIdAndSprintId(
+                eq("plan.txt"), anyString(), eq("test-model"), eq(1L), eq(10L))).thenReturn(true);
+
+        Map<String, Object> result = ingest("plan.txt", "Plan del sprint.", RagScope.of(1L, 10L));
+
+        assertThat(result).containsEntry("unchanged", true);
+        verify(batchWriter, never()).insertAll(anyList());
+        verify(batchWriter, never()).deleteAll(anyList());
+    }
+
+    @Test
+    void concurrentUploadsOfTheSameFileAndScopeRunOneAtATime() throws Exception {
+        AtomicBoolean stored = new AtomicBoolean();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(repository.existsByFileNameAndDocumentHashAndEmbeddingModelAndProyectoIdAndSprintId(
+                eq("plan.txt"), anyString(), eq("test-model"), eq(1L), isNull())).thenAnswer(invocation -> stored.get());
+        when(embeddingService.embedBatch(anyList())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(100);
+            running.decrementAndGet();
+            stored.set(true);
+            List<String> texts = invocation.getArgument(0);
+            List<float[]> vectors = new ArrayList<>();
+            texts.forEach(text -> vectors.add(new float[] { 1, 0 }));
+            return vectors;
+        });
+        Path file = tempDir.resolve("plan.txt");
+        Files.write(file, "Plan del sprint.".getBytes(StandardCharsets.UTF_8));
+        ExecutorService uploads = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Map<String, Object>>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                results.add(uploads.submit(() -> ragService.ingestFile(
+                        file, "plan.txt", "text/plain", RagScope.of(1L, null), new RagIngestionJob("job", "plan.txt"))));
+            }
+
+            // La segunda espera a la primera y encuentra el mismo contenido ya guardado.
+            assertThat(results.get(0).get(5, TimeUnit.SECONDS).containsKey("unchanged")
+                    ^ results.get(1).get(5, TimeUnit.SECONDS).containsKey("unchanged")).isTrue();
+            assertThat(maxRunning).hasValue(1);
+        } finally {
+            uploads.shutdownNow();
+        }
+    }
+
+    @Test
+    void unchangedChunksReuseTheirStoredEmbedding() throws Exception {
+        String known = "# Uno\n\nPrimera parte.";
+        String knownHash = ContentHash.sha256Hex(known);
+        when(repository.findEmbeddingsByContentHash(anyCollection(), eq("test-model"))).thenAnswer(invocation -> {
+            Collection<String> hashes = invocation.getArgument(0);
+            return hashes.contains(knownHash)
+                    ? List.<Object[]>of(new Object[] { knownHash, EmbeddingCodec.encode(new float[] { 0, 2 }) })
+                    : List.<Object[]>of();
+        });
+
+        Map<String, Object> result = ingest("plan.md",
+                known + "\n\n# Dos\n\nSegunda parte.\n\n# Dos\n\nSegunda parte.", RagScope.ALL);
+
+        // Solo el fragmento nuevo va al servicio, una vez aunque se repita en el archivo.
+        assertThat(embeddedBatches).containsExactly(List.of("# Dos\n\nSegunda parte."));
+        assertThat(result).containsEntry("chunksStored", 3).containsEntry("chunksReused", 1);
+        verify(indexService).add(eq(100L), eq(RagScope.ALL), eq(new float[] { 0, 1 }), eq(known));
+    }
+
+    @Test
+    void aFailedIngestionRemovesItsPartialRowsAndKeepsThePreviousVersion() {
+        when(embeddingService.getMaxBatchInputs()).thenReturn(1);
+        when(repository.findIdsByFileNameAndProyectoIdAndSprintId(eq("plan.md"), isNull(), isNull()))
+                .thenReturn(List.of(7L));
+        when(embeddingService.embedBatch(anyList()))
+                .thenReturn(List.<float[]>of(new float[] { 1, 0 }))
+                .thenThrow(new LlmCallGuard.LlmUnavailableException("Sin embeddings", null));
+
+        assertThatThrownBy(() -> ingest("plan.md", "# Uno\n\nPrimera parte.\n\n# Dos\n\nSegunda parte.", RagScope.ALL))
+                .isInstanceOf(LlmCallGuard.LlmUnavailableException.class);
+
+        verify(batchWriter).deleteAll(List.of(100L));
+        verify(indexService).remove(100L);
+        verify(batchWriter, never()).deleteAll(List.of(7L));
+        verify(answerCache, never()).invalidateChunks(anyList());
+    }
+
+    @Test
+    void retrievalHandsBackTheQueryEmbeddingOnlyWhenItComputedOne() {
+        RagDocumentChunk chunk = storedChunk(5L, "Ticket MTDR-42: login con SSO.");
+        when(repository.findAllById(anyList())).thenReturn(List.of(chunk));
+        when(indexService.isLexicalReady()).thenReturn(true);
+        when(indexService.searchLexical(anyString(), anyInt(), any(RagScope.class)))
+                .thenReturn(List.of(new VectorIndex.Hit(5L, 3f)));
+        float[] queryEmbedding = { 0.6f, 0.8f };
+        when(embeddingService.embedQuery(anyString())).thenReturn(queryEmbedding);
+
+        RagService.RetrievedContext keyword = ragService.retrieveContext("MTDR-42", 4, RagScope.ALL);
+        assertThat(keyword.getChunkIds()).containsExactly(5L);
+        assertThat(keyword.getQueryEmbedding()).isNull();
+        verify(embeddingService, never()).embedQuery(anyString());
+
+        RagService.RetrievedContext hybrid = ragService.retrieveContext("¿Cómo se resolvió el login?", 4, RagScope.ALL);
+        assertThat(hybrid.getQueryEmbedding()).isSameAs(queryEmbedding);
+
+        when(embeddingService.embedQuery(anyString()))
+                .thenThrow(new LlmCallGuard.LlmUnavailableException("Sin embeddings", null));
+        RagService.RetrievedContext fallback = ragService.retrieveContext("¿Quién revisa el login?", 4, RagScope.ALL);
+        assertThat(fallback.getChunkIds()).containsExactly(5L);
+        assertThat(fallback.getQueryEmbedding()).isNull();
+    }
+
+    @Test
+    void structuredChunksKeepTextThatRepeatsAcrossTheirBoundary() {
+        RagDocumentChunk first = storedChunk(5L, "Paso 1 de MTDR-42: configurar el login.");
+        RagDocumentChunk second = storedChunk(6L, "configurar el login. Paso 2: probarlo.");
+        second.setChunkIndex(1);
+        when(repository.findAllById(anyList())).thenReturn(List.of(first, second));
+        when(indexService.isLexicalReady()).thenReturn(true);
+        when(indexService.searchLexical(anyString(), anyInt(), any(RagScope.class)))
+                .thenReturn(List.of(new VectorIndex.Hit(5L, 3f), new VectorIndex.Hit(6L, 2f)));
+
+        RagService.RetrievedContext context = ragService.retrieveContext("MTDR-42", 4, RagScope.ALL);
+
+        assertThat(context.getChunkIds()).containsExactly(5L, 6L);
+        assertThat(context.getText())
+                .contains("Paso 1 de MTDR-42: configurar el login. configurar el login. Paso 2: probarlo.");
+    }
+
+    @Test
+    void oracleSearchOnlyComparesRowsOfTheQueryModelAndDimensions() {
+        RagService oracleService = new RagService(repository, batchWriter, embeddingService, indexService, answerCache,
+                new ObjectMapper(), new RagVectorStore("oracle", null), false, 60, 1000, "structured", 350, 512);
+        when(embeddingService.embedQuery(anyString())).thenReturn(new float[] { 0.6f, 0.8f, 0f });
+        when(repository.findNearestByVectorDistance(anyString(), anyInt(), anyString(), anyInt(), any(), any(), any()))
+                .thenReturn(List.<Object[]>of(new Object[] { 5L, 0.25 }));
+        when(repository.findAllById(anyList())).thenReturn(List.of(storedChunk(5L, "Login con SSO.")));
+
+        RagService.RetrievedContext context = oracleService.retrieveContext("¿Cómo se resolvió el login?", 4, RagScope.ALL);
+
+        assertThat(context.getChunkIds()).containsExactly(5L);
+        verify(repository).findNearestByVectorDistance(anyString(), eq(3), eq("test-model"), anyInt(),
+                isNull(), isNull(), isNull());
+    }
+
+    private RagDocumentChunk storedChunk(Long id, String text) {
+        RagDocumentChunk chunk = new RagDocumentChunk();
+        chunk.setId(id);
+        chunk.setFileName("plan.txt");
+        chunk.setChunkIndex(0);
+        chunk.setChunkText(text);
+        return chunk;
+    }
+
+    private Map<String, Object> ingest(String filename, String content, RagScope scope) throws Exception {
+        Path file = tempDir.resolve(filename);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return ragService.ingestFile(file, filename, "text/plain", scope, new RagIngestionJob("job", filename));
+    }
+}
@@ -0,0 +1,126 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.MyTodoList.config.RagVectorStore;
+import com.springboot.MyTodoList.model.RagDocumentChunk;
+import com.springboot.MyTodoList.repository.RagDocumentChunkBatchWriter;
+import com.springboot.MyTodoList.repository.RagDocumentChunkRepository;
+import com.springboot.MyTodoList.service.RagIndexService;
+import com.springboot.MyTodoList.util.EmbeddingCodec;
+
+public class RagVectorStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void keepsOracleWhenTheVectorColumnExists() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class))).thenReturn(1);
+        RagVectorStore store = new RagVectorStore(" Oracle ", jdbcTemplate);
+
+        assertThat(store.checkNativeColumn()).isTrue();
+        assertThat(store.isOracle()).isTrue();
+    }
+
+    @Test
+    void memoryNeverLooksForTheColumn() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        RagVectorStore store = new RagVectorStore("memory", jdbcTemplate);
+
+        assertThat(store.checkNativeColumn()).isFalse();
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void fallsBackToMemoryWhenTheColumnCannotBeChecked() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class)))
+                .thenThrow(new DataAccessResourceFailureException("ORA-00942"));
+        RagVectorStore store = new RagVectorStore("oracle", jdbcTemplate);
+
+        assertThat(store.checkNativeColumn()).isFalse();
+        assertThat(store.isOracle()).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void withoutTheColumnInsertsAndSearchesUseMemory() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class))).thenReturn(0);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), anyInt())).thenReturn(List.of(1L));
+        when(jdbcTemplate.batchUpdate(anyString(), any(Collection.class), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class))).thenReturn(new int[1][]);
+        RagVectorStore store = new RagVectorStore("oracle", jdbcTemplate);
+        RagDocumentChunkRepository repository = mock(RagDocumentChunkRepository.class);
+        when(repository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(List.of()));
+        RagIndexService index = new RagIndexService(repository, new ObjectMapper(), true, store, false, "flat",
+                16, 100, 64, 500, 0.2, 60, "unused", 16384, 60, "none", 2000, 0, 4, 500, false, "unused", 300);
+        try {
+            store.checkNativeColumn();
+            index.rebuild();
+
+            assertThat(index.isReady()).isTrue();
+            RagDocumentChunk chunk = new RagDocumentChunk();
+            chunk.setChunkIndex(0);
+            chunk.setEmbedding(EmbeddingCodec.encode(new float[] { 1, 0 }));
+            new RagDocumentChunkBatchWriter(jdbcTemplate, 10, store).insertAll(List.of(chunk));
+            verify(jdbcTemplate).batchUpdate(
+                    argThat((String sql) -> !sql.contains("TO_VECTOR")),
+                    any(Collection.class), eq(10), any(ParameterizedPreparedStatementSetter.class));
+        } finally {
+            index.shutdown();
+        }
+    }
+
+    @Test
+    void maintenanceFollowsTheStoreLeftAfterTheFallback() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class))).thenReturn(0);
+        RagVectorStore store = new RagVectorStore("oracle", jdbcTemplate);
+        RagDocumentChunkRepository repository = mock(RagDocumentChunkRepository.class);
+        when(repository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(List.of()));
+        when(repository.findByIdGreaterThan(any(), any(Pageable.class))).thenReturn(new PageImpl<>(List.of()));
+        Path snapshot = tempDir.resolve("snapshot.bin");
+        // Con Oracle y sin BM25 no habría copia en disco; al regresar a memoria sí.
+        RagIndexService index = new RagIndexService(repository, new ObjectMapper(), true, store, false, "flat",
+                16, 100, 64, 500, 0.2, 60, "unused", 16384, 60, "none", 2000, 0, 4, 500, true, snapshot.toString(), 300);
+        try {
+            store.checkNativeColumn();
+            index.buildOnStartup();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!Files.exists(snapshot) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(snapshot).exists();
+        } finally {
+            index.shutdown();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.springboot.MyTodoList.util.SemanticAnswerCache;
+
+public class SemanticAnswerCacheTest {
+
+    private static final float[] QUESTION = { 1f, 0.2f, 0f };
+    private static final float[] PARAPHRASE = { 0.98f, 0.22f, 0.01f };
+    private static final float[] UNRELATED = { 0f, 0.1f, 1f };
+
+    @Test
+    void reusesAnswerOnlyForSimilarQuestionWithSameChunks() {
+        SemanticAnswerCache cache = new SemanticAnswerCache(10, 0, 0.95f);
+        cache.put("proyecto-1", List.of(4L, 2L), QUESTION, "Respuesta");
+
+        // El orden en que se recuperaron los fragmentos no importa.
+        assertThat(cache.find("proyecto-1", List.of(2L, 4L), PARAPHRASE)).isEqualTo("Respuesta");
+        assertThat(cache.find("proyecto-1", List.of(2L, 4L), UNRELATED)).isNull();
+        assertThat(cache.find("proyecto-1", List.of(2L, 5L), PARAPHRASE)).isNull();
+        assertThat(cache.find("proyecto-2", List.of(2L, 4L), PARAPHRASE)).isNull();
+        assertThat(cache.stats()).containsEntry("hits", 1L).containsEntry("misses", 3L);
+    }
+
+    @Test
+    void invalidatingAChunkDropsAnswersBuiltFromIt() {
+        SemanticAnswerCache cache = new SemanticAnswerCache(10, 0, 0.95f);
+        cache.put("todo", List.of(1L, 2L), QUESTION, "Con 2");
+        cache.put("todo", List.of(3L), QUESTION, "Con 3");
+
+        cache.invalidateChunks(List.of(2L));
+
+        assertThat(cache.find("todo", List.of(1L, 2L), QUESTION)).isNull();
+        assertThat(cache.find("todo", List.of(3L), QUESTION)).isEqualTo("Con 3");
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedGroupWhenFull() {
+        SemanticAnswerCache cache = new SemanticAnswerCache(2, 0, 0.95f);
+        cache.put("todo", List.of(1L), QUESTION, "uno");
+        cache.put("todo", List.of(2L), QUESTION, "dos");
+        cache.find("todo", List.of(1L), QUESTION);
+
+        cache.put("todo", List.of(3L), QUESTION, "tres");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.find("todo", List.of(2L), QUESTION)).isNull();
+        assertThat(cache.find("todo", List.of(1L), QUESTION)).isEqualTo("uno");
+    }
+}
@@ -0,0 +1,154 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.MyTodoList.config.LlmHttpClientConfig;
+import com.springboot.MyTodoList.dto.TareaDTO;
+import com.springboot.MyTodoList.model.SprintPlanCache;
+import com.springboot.MyTodoList.repository.SprintPlanCacheRepository;
+import com.springboot.MyTodoList.service.LlmCallGuard;
+import com.springboot.MyTodoList.service.RagScope;
+import com.springboot.MyTodoList.service.RagService;
+import com.springboot.MyTodoList.service.SprintPlanCacheService;
+import com.springboot.MyTodoList.service.SprintPlanningService;
+
+public class SprintPlanCacheTest {
+
+    private static final String PLAN = "{\"tareas\": [{\"titulo\": \"Pantalla de login\", "
+            + "\"descripcion\": \"Formulario con validación\", \"prioridad\": 2, "
+            + "\"fechaInicio\": \"2026-10-19\", \"fechaFinEstimada\": null}]}";
+
+    private OpenAiStubServer stub;
+    private HttpComponentsClientHttpRequestFactory requestFactory;
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final Map<String, SprintPlanCache> rows = new ConcurrentHashMap<>();
+    private final List<Long> chunkIds = new ArrayList<>(List.of(4L, 5L));
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = new OpenAiStubServer(64, 4).chatAnswer(question -> PLAN);
+        requestFactory = (HttpComponentsClientHttpRequestFactory) new LlmHttpClientConfig()
+                .llmRequestFactory("HTTP_1_1", 10, 10, 2000, 5000, 2000, 30, 300);
+    }
+
+    @AfterEach
+    void stopStub() throws Exception {
+        requestFactory.destroy();
+        stub.close();
+    }
+
+    @Test
+    void repeatedDescriptionIsServedFromTheCacheUntilRefreshOrNewContext() {
+        SprintPlanningService service = planningService(new SprintPlanCacheService(repository(), objectMapper, true, 24));
+
+        List<TareaDTO> first = service.generarTareas("Implementar el login del portal.");
+        List<TareaDTO> second = service.generarTareas("  Implementar el login\r\n del portal.  ");
+
+        assertThat(stub.requestCount(OpenAiStubServer.CHAT_PATH)).isEqualTo(1);
+        assertThat(second).hasSize(1);
+        assertThat(second.get(0).titulo).isEqualTo(first.get(0).titulo);
+        assertThat(second.get(0).fechaInicio).isEqualTo(LocalDate.of(2026, 10, 19));
+        assertThat(rows.values().iterator().next().getHitCount()).isEqualTo(1);
+
+        SprintPlanCache cached = rows.values().iterator().next();
+        LocalDateTime createdAt = cached.getCreatedAt();
+        LocalDateTime expiresAt = cached.getExpiresAt();
+        service.generarTareas("Implementar el login del portal.", true);
+        assertThat(stub.requestCount(OpenAiStubServer.CHAT_PATH)).isEqualTo(2);
+        // Refrescar actualiza la fila existente sin perder su historia.
+        SprintPlanCache refreshed = rows.values().iterator().next();
+        assertThat(refreshed.getCreatedAt()).isEqualTo(createdAt);
+        assertThat(refreshed.getHitCount()).isEqualTo(1);
+        assertThat(refreshed.getExpiresAt()).isAfterOrEqualTo(expiresAt);
+
+        // Un documento nuevo cambia los fragmentos recuperados y con ellos la llave.
+        chunkIds.add(9L);
+        service.generarTareas("Implementar el login del portal.");
+        assertThat(stub.requestCount(OpenAiStubServer.CHAT_PATH)).isEqualTo(3);
+        assertThat(rows).hasSize(2);
+    }
+
+    @Test
+    void expiredEntriesAndDisabledCacheCallTheModel() {
+        SprintPlanningService service = planningService(new SprintPlanCacheService(repository(), objectMapper, true, 24));
+        service.generarTareas("Migrar reportes a la nueva base.");
+        rows.values().forEach(row -> row.setExpiresAt(LocalDateTime.now().minusMinutes(1)));
+        service.generarTareas("Migrar reportes a la nueva base.");
+        assertThat(stub.requestCount(OpenAiStubServer.CHAT_PATH)).isEqualTo(2);
+
+        SprintPlanCacheService disabled = new SprintPlanCacheService(repository(), objectMapper, false, 24);
+        SprintPlanningService uncached = planningService(disabled);
+        uncached.generarTareas("Migrar reportes a la nueva base.");
+        assertThat(stub.requestCount(OpenAiStubServer.CHAT_PATH)).isEqualTo(3);
+        assertThat(disabled.stats()).containsEntry("hits", 0L);
+    }
+
+    private SprintPlanningService planningService(SprintPlanCacheService cache) {
+        RagService.RetrievedContext context = mock(RagService.RetrievedContext.class);
+        when(context.getText()).thenReturn("- Archivo: portal.txt (fragmento 4): El portal usa SSO.");
+        when(context.getChunkIds()).thenAnswer(invocation -> List.copyOf(chunkIds));
+        RagService ragService = mock(RagService.class);
+        when(ragService.retrieveContext(anyString(), anyInt(), any(RagScope.class))).thenReturn(context);
+        return new SprintPlanningService(new RestTemplate(requestFactory), objectMapper, "test-key",
+                stub.url(OpenAiStubServer.CHAT_PATH), "gpt-4o-mini", ragService,
+                new LlmCallGuard(true, 2, 1, 5, 1000, 5, 30, 4, 1000), cache);
+    }
+
+    // Repositorio en memoria con lo que usa SprintPlanCacheService.
+    private SprintPlanCacheRepository repository() {
+        SprintPlanCacheRepository repository = mock(SprintPlanCacheRepository.class);
+        when(repository.findById(anyString())).thenAnswer(invocation ->
+                Optional.ofNullable(rows.get(invocation.<String>getArgument(0))));
+        // Como merge de JPA: una entidad nueva con una llave existente pisa todas las
+        // columnas de la fila, incluidas las nulas, y @PrePersist no corre.
+        when(repository.save(any(SprintPlanCache.class))).thenAnswer(invocation -> {
+            SprintPlanCache row = invocation.getArgument(0);
+            SprintPlanCache existing = rows.get(row.getCacheKey());
+            if (existing == null) {
+                row.prePersist();
+                rows.put(row.getCacheKey(), row);
+                return row;
+            }
+            if (existing != row) {
+                existing.setModel(row.getModel());
+                existing.setResultJson(row.getResultJson());
+                existing.setHitCount(row.getHitCount());
+                existing.setCreatedAt(row.getCreatedAt());
+                existing.setExpiresAt(row.getExpiresAt());
+            }
+            return existing;
+        });
+        when(repository.incrementHits(anyString())).thenAnswer(invocation -> {
+            SprintPlanCache row = rows.get(invocation.<String>getArgument(0));
+            row.setHitCount(row.getHitCount() + 1);
+            return 1;
+        });
+        when(repository.deleteExpired(any(LocalDateTime.class))).thenAnswer(invocation -> {
+            LocalDateTime now = invocation.getArgument(0);
+            int before = rows.size();
+            rows.values().removeIf(row -> row.getExpiresAt().isBefore(now));
+            return before - rows.size();
+        });
+        return repository;
+    }
+}
@@ -0,0 +1,93 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.springboot.MyTodoList.util.StructuredChunker;
+import com.springboot.MyTodoList.util.TextChunker;
+import com.springboot.MyTodoList.util.TokenCounter;
+
+public class StructuredChunkerTest {
+
+    @Test
+    void packsParagraphsUnderHeadingsWithinTheTokenLimits() {
+        StringBuilder markdown = new StringBuilder();
+        for (int section = 1; section <= 3; section++) {
+            markdown.append("## Sección ").append(section).append("\n\n");
+            for (int paragraph = 0; paragraph < 4; paragraph++) {
+                markdown.append(paragraph(section * 10 + paragraph, 6)).append("\n\n");
+            }
+        }
+        List<String> chunks = new ArrayList<>();
+        StructuredChunker chunker = new StructuredChunker(350, 512, chunks::add);
+        chunker.append(markdown.toString());
+        chunker.finish();
+
+        assertThat(chunks).allSatisfy(chunk -> assertThat(TokenCounter.count(chunk)).isLessThanOrEqualTo(512));
+        assertThat(chunks).filteredOn(chunk -> chunk.startsWith("## Sección")).hasSize(3);
+        assertThat(chunks).noneMatch(chunk -> chunk.indexOf("## Sección") > 0);
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk).endsWith("."));
+        assertThat(String.join(" ", chunks).split("Oración").length)
+                .isEqualTo(markdown.toString().split("Oración").length);
+
+        List<String> fixed = new ArrayList<>();
+        TextChunker textChunker = new TextChunker(800, 120, fixed::add);
+        textChunker.append(markdown.toString());
+        textChunker.finish();
+        assertThat(chunks.size()).isLessThan(fixed.size());
+    }
+
+    @Test
+    void splitsLongParagraphsAndUnbrokenLinesAtSentenceBoundaries() {
+        List<String> chunks = new ArrayList<>();
+        StructuredChunker chunker = new StructuredChunker(100, 150, chunks::add);
+        String longParagraph = paragraph(1, 80);
+        // Llega en pedazos sin salto de línea, como una línea muy larga de un .txt.
+        for (int i = 0; i < longParagraph.length(); i += 1000) {
+            chunker.append(longParagraph.substring(i, Math.min(longParagraph.length(), i + 1000)));
+        }
+        chunker.finish();
+
+        assertThat(chunks.size()).isGreaterThan(5);
+        assertThat(chunks).allSatisfy(chunk -> {
+            assertThat(TokenCounter.count(chunk)).isLessThanOrEqualTo(150);
+            assertThat(chunk).startsWith("Oración").endsWith(".");
+        });
+        assertThat(String.join(" ", chunks)).isEqualTo(longParagraph);
+    }
+
+    @Test
+    void keepsWordsApartWhenAHardWrappedParagraphIsSplit() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= 40; i++) {
+            text.append("Linea numero ").append(i).append(" del requisito palabra").append(i).append('\n');
+        }
+        List<String> chunks = new ArrayList<>();
+        StructuredChunker chunker = new StructuredChunker(20, 30, chunks::add);
+        chunker.append(text.toString());
+        chunker.finish();
+
+        assertThat(chunks.size()).isGreaterThan(3);
+        assertThat(chunks).allSatisfy(chunk -> {
+            assertThat(TokenCounter.count(chunk)).isLessThanOrEqualTo(30);
+            assertThat(chunk).doesNotContainPattern("palabra\\d+Linea");
+        });
+        assertThat(String.join(" ", chunks).split("\\s+")).containsExactly(text.toString().trim().split("\\s+"));
+    }
+
+    private static String paragraph(int id, int sentences) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < sentences; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append("Oración ").append(id).append('-').append(i)
+                    .append(" describe una tarea del equipo con criterios de aceptación y estimación.");
+        }
+        return text.toString();
+    }
+}
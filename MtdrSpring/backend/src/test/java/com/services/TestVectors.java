@@ -0,0 +1,21 @@
+package com.services;
+
+import java.util.Random;
+
+/**
+ * Vectores de prueba compartidos por los tests de índices vectoriales.
+ */
+final class TestVectors {
+
+    private TestVectors() {
+    }
+
+    // Componentes gaussianas: direcciones uniformes sobre la esfera, sin normalizar.
+    static float[] randomVector(Random random, int dims) {
+        float[] vector = new float[dims];
+        for (int i = 0; i < dims; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,69 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.springboot.MyTodoList.util.TextChunker;
+
+public class TextChunkerTest {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxy";
+
+    @Test
+    void consecutiveChunksShareTheOverlap() {
+        List<String> chunks = chunk(ALPHABET, 10, 3, ALPHABET.length());
+
+        assertThat(chunks).containsExactly("abcdefghij", "hijklmnopq", "opqrstuvwx", "vwxy");
+        for (int i = 1; i < chunks.size(); i++) {
+            String previous = chunks.get(i - 1);
+            assertThat(chunks.get(i)).startsWith(previous.substring(previous.length() - 3));
+        }
+    }
+
+    @Test
+    void chunksDoNotDependOnHowTheTextArrives() {
+        List<String> whole = chunk(ALPHABET, 10, 3, ALPHABET.length());
+
+        assertThat(chunk(ALPHABET, 10, 3, 1)).isEqualTo(whole);
+        assertThat(chunk(ALPHABET, 10, 3, 7)).isEqualTo(whole);
+        assertThat(chunk(ALPHABET, 10, 3, 10)).isEqualTo(whole);
+    }
+
+    @Test
+    void textThatFitsInOneChunkIsNotSplit() {
+        assertThat(chunk("abcdefghij", 10, 3, 4)).containsExactly("abcdefghij");
+        assertThat(chunk("abcdefghijk", 10, 3, 4)).containsExactly("abcdefghij", "hijk");
+        assertThat(chunk("abcdefghij", 10, 0, 10)).containsExactly("abcdefghij");
+    }
+
+    @Test
+    void blankChunksAreDroppedAndEdgesTrimmed() {
+        assertThat(chunk("", 10, 3, 1)).isEmpty();
+        assertThat(chunk("   \n\n   ", 10, 3, 2)).isEmpty();
+        assertThat(chunk("  hola            mundo ", 10, 2, 24)).containsExactly("hola", "mundo");
+    }
+
+    @Test
+    void overlapMustBeSmallerThanTheChunk() {
+        assertThatThrownBy(() -> new TextChunker(10, 10, chunk -> { }))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TextChunker(10, -1, chunk -> { }))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Entrega el texto en bloques de blockSize caracteres, como lo hace el extractor.
+    private static List<String> chunk(String text, int maxChunkSize, int overlap, int blockSize) {
+        List<String> chunks = new ArrayList<>();
+        TextChunker chunker = new TextChunker(maxChunkSize, overlap, chunks::add);
+        for (int start = 0; start < text.length(); start += blockSize) {
+            chunker.append(text.substring(start, Math.min(text.length(), start + blockSize)));
+        }
+        chunker.finish();
+        return chunks;
+    }
+}
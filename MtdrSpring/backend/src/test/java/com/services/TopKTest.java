@@ -0,0 +1,48 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.springboot.MyTodoList.util.TopK;
+import com.springboot.MyTodoList.util.VectorIndex;
+
+public class TopKTest {
+
+    @Test
+    void keepsBestScoresInDescendingOrder() {
+        TopK topK = new TopK(3);
+        float[] scores = {0.1f, 0.9f, 0.4f, Float.NaN, 0.7f, 0.2f, 0.8f};
+        for (int i = 0; i < scores.length; i++) {
+            topK.offer(i, scores[i]);
+        }
+
+        assertThat(topK.toSortedHits()).extracting(VectorIndex.Hit::getId).containsExactly(1L, 6L, 4L);
+        assertThat(topK.threshold()).isEqualTo(0.7f);
+    }
+
+    @Test
+    void mergedHeapsMatchSingleHeap() {
+        Random random = new Random(1);
+        TopK all = new TopK(10);
+        TopK left = new TopK(10);
+        TopK right = new TopK(10);
+        for (int i = 0; i < 1000; i++) {
+            float score = random.nextFloat();
+            all.offer(i, score);
+            (i % 2 == 0 ? left : right).offer(i, score);
+        }
+        left.addAll(right);
+
+        assertThat(left.toSortedHits()).extracting(VectorIndex.Hit::getId)
+                .containsExactlyElementsOf(ids(all.toSortedHits()));
+    }
+
+    private static List<Long> ids(List<VectorIndex.Hit> hits) {
+        return hits.stream().map(VectorIndex.Hit::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,76 @@
+package com.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.springboot.MyTodoList.service.EmbeddingService;
+import com.springboot.MyTodoList.service.HashingEmbeddingProvider;
+import com.springboot.MyTodoList.util.TtlLruCache;
+
+public class TtlLruCacheTest {
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntryWhenFull() {
+        TtlLruCache<String, Integer> cache = new TtlLruCache<>(2, 0);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        // Leer "a" la vuelve la más reciente; al llenarse sale "b".
+        assertThat(cache.get("a")).isEqualTo(1);
+
+        cache.put("c", 3);
+
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isEqualTo(1);
+        assertThat(cache.get("c")).isEqualTo(3);
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.stats()).containsEntry("evictions", 1L).containsEntry("hits", 3L).containsEntry("misses", 1L);
+    }
+
+    @Test
+    void expiredEntriesCountAsMissesAndAreDropped() throws Exception {
+        TtlLruCache<String, Integer> cache = new TtlLruCache<>(10, 40);
+        cache.put("a", 1);
+        assertThat(cache.get("a")).isEqualTo(1);
+
+        Thread.sleep(80);
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.stats()).containsEntry("hits", 1L).containsEntry("misses", 1L).containsEntry("hitRate", 0.5);
+    }
+
+    @Test
+    void computeIfAbsentLoadsOnceAndDoesNotCacheNull() {
+        TtlLruCache<String, Integer> cache = new TtlLruCache<>(10, 0);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.computeIfAbsent("a", key -> loads.incrementAndGet())).isEqualTo(1);
+        assertThat(cache.computeIfAbsent("a", key -> loads.incrementAndGet())).isEqualTo(1);
+        assertThat(cache.computeIfAbsent("vacío", key -> null)).isNull();
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void repeatedQueriesReuseTheEmbeddingIgnoringCaseAndSpaces() {
+        HashingEmbeddingProvider provider = new HashingEmbeddingProvider(64, 1);
+        try {
+            EmbeddingService service = new EmbeddingService(provider, 10, 60);
+
+            float[] first = service.embedQuery("¿Cómo va el login?");
+            float[] repeated = service.embedQuery("  ¿cómo   VA el login? ");
+            float[] other = service.embedQuery("¿Quién revisa el login?");
+
+            assertThat(repeated).isSameAs(first);
+            assertThat(other).isNotSameAs(first);
+            assertThat(service.getQueryCacheStats()).containsEntry("hits", 1L).containsEntry("misses", 2L)
+                    .containsEntry("size", 2);
+        } finally {
+            provider.shutdown();
+        }
+    }
+}